@@ -11,9 +11,24 @@ import java.util.function.Consumer;
  */
 public final class NMShortPath<A> {
     private final ShortPath<A> [] mShortPathArray;
+    private final boolean mApproximate;//是否为束剪枝等近似求解的结果
 
     NMShortPath(ShortPath<A> [] aShortPathArray) {
+        this( aShortPathArray, false );
+    }
+
+    NMShortPath(ShortPath<A> [] aShortPathArray, boolean aApproximate) {
         this.mShortPathArray = aShortPathArray;
+        this.mApproximate = aApproximate;
+    }
+
+    /**
+     * 是否为近似结果：束剪枝求解过程中实际发生了剪枝的话为true，精确求解的结果永远为false
+     * @return true 表示近似结果
+     * @see NMShortPathBeam
+     */
+    public boolean isApproximate() {
+        return this.mApproximate;
     }
 
     /**
@@ -53,6 +68,13 @@ public final class NMShortPath<A> {
         Arrays.stream( this.mShortPathArray ).forEach( aAction );
     }
 
+    /**
+     * 内部调用，只保留前 aNShortPathCount 个ShortPath，各ShortPath本身直接共享
+     */
+    NMShortPath<A> truncate(int aNShortPathCount) {
+        return aNShortPathCount >= this.mShortPathArray.length ? this : new NMShortPath<A>( Arrays.copyOf( this.mShortPathArray, aNShortPathCount ), this.mApproximate );
+    }
+
     /**
      * 从起始顶点到当前顶点的 i-短路径，每个ShortPath 可能包含一条或多条OnePath, 它们具有相同的累计距离值
      */
@@ -85,16 +107,17 @@ public final class NMShortPath<A> {
     }
 
     /**
-     * 从起始顶点到终止顶点的的某一路径序列,主要记录一条具体路径的顶点序列,累计的路径距离在ShortPath中
+     * 从起始顶点到终止顶点的的某一路径序列,主要记录一条具体路径的顶点序列,累计的路径距离在ShortPath中。
+     * 子图查询时就是从查询的from顶点到to顶点的路径序列
      */
-    public static final class VertexPath<A> {
+    public static class VertexPath<A> {
         final NMShortPathVertex<A> mCurrentVertex;//当前顶点的ID或下标索引
 
         final VertexPath<A> mPreviousVertexPath;//前向顶点的对应VertexPath
 
         final double mDistanceFromPreviousVertex;//从前向顶点到当前顶点的距离(相邻两顶点距离)
 
-        ArrayList<VertexPath<A>> mCacheFromStartToEndVertexList = null;
+        volatile ArrayList<VertexPath<A>> mCacheFromStartToEndVertexList = null;//结果可能由多个线程共享读取
 
         VertexPath(NMShortPathVertex<A> aStartVertex) {//起始顶点的VertexPath特殊处理下
             this.mCurrentVertex = aStartVertex;
@@ -157,15 +180,22 @@ public final class NMShortPath<A> {
             VertexPath<A> currentPathSegment = this;
             while (true) {
                 aAction.accept( currentPathSegment.mCurrentVertex );
-                if (currentPathSegment.mCurrentVertex.mGraphVertexIndex == 0) {
+                if (currentPathSegment.mPreviousVertexPath == currentPathSegment) {//起始段的前向段就是其自身,子图查询时起始段不一定是0号顶点
                     break;
                 }
                 else {
-                    currentPathSegment = currentPathSegment.mPreviousVertexPath;
+                    currentPathSegment = currentPathSegment.previousVertexPath();
                 }
             }
         }
 
+        /**
+         * 内部调用，前向顶点的VertexPath，遍历路径必须通过此方法而不是直接访问 mPreviousVertexPath
+         */
+        VertexPath<A> previousVertexPath() {
+            return this.mPreviousVertexPath;
+        }
+
         private ArrayList<VertexPath<A>> ensureCache() {
             ArrayList<VertexPath<A>> cacheList = this.mCacheFromStartToEndVertexList;
             if (cacheList == null) {
@@ -173,11 +203,11 @@ public final class NMShortPath<A> {
                 VertexPath<A> currentPathSegment = this;
                 while (true) {
                     fromStartToEndVertexPath.addFirst( currentPathSegment );
-                    if (currentPathSegment.mCurrentVertex.mGraphVertexIndex == 0) {
+                    if (currentPathSegment.mPreviousVertexPath == currentPathSegment) {
                         break;
                     }
                     else {
-                        currentPathSegment = currentPathSegment.mPreviousVertexPath;
+                        currentPathSegment = currentPathSegment.previousVertexPath();
                     }
                 }
                 cacheList = new ArrayList<VertexPath<A>>( fromStartToEndVertexPath );
@@ -186,4 +216,40 @@ public final class NMShortPath<A> {
             return cacheList;
         }
     }
+
+    /**
+     * 线性链收缩求解时跨过一条线性链的VertexPath：mPreviousVertexPath 是链首顶点的VertexPath，链上被收缩的各顶点
+     * 只在遍历此路径时才沿 aLastContractedVertex 的唯一前向边回溯展开，展开的结果缓存下来
+     * @see NMShortPathGraph#contractLinearChains()
+     */
+    static final class ContractedVertexPath<A> extends VertexPath<A> {
+        private final NMShortPathVertex<A> mLastContractedVertex;//链上最后一个被收缩的顶点，即当前顶点真正的前向顶点
+
+        private volatile VertexPath<A> mExpandedPreviousVertexPath;//展开后 mLastContractedVertex 的VertexPath
+
+        ContractedVertexPath(NMShortPathVertex<A> aCurrentVertex, VertexPath<A> aChainHeadVertexPath, double aDistanceFromPreviousVertex, NMShortPathVertex<A> aLastContractedVertex) {
+            super( aCurrentVertex, aChainHeadVertexPath, aDistanceFromPreviousVertex );
+            this.mLastContractedVertex = aLastContractedVertex;
+        }
+
+        @Override
+        VertexPath<A> previousVertexPath() {
+            VertexPath<A> expanded = this.mExpandedPreviousVertexPath;
+            if (expanded == null) {
+                //从最后一个被收缩的顶点沿唯一前向边回溯到链首，再从链首起依次创建各顶点的VertexPath
+                NMShortPathVertex<A> chainHeadVertex = this.mPreviousVertexPath.mCurrentVertex;
+                ArrayList<NMShortPathVertex<A>> contractedVertexes = new ArrayList<NMShortPathVertex<A>>();
+                for (NMShortPathVertex<A> vertex = this.mLastContractedVertex; vertex != chainHeadVertex; vertex = vertex.mPreviousEdges[ 0 ].mPreviousVertex) {
+                    contractedVertexes.add( vertex );
+                }
+                expanded = this.mPreviousVertexPath;
+                for (int i = contractedVertexes.size() - 1; i >= 0; --i) {
+                    NMShortPathVertex<A> vertex = contractedVertexes.get( i );
+                    expanded = new VertexPath<A>( vertex, expanded, vertex.mPreviousEdges[ 0 ].mDistanceBetweenVertexes );
+                }
+                this.mExpandedPreviousVertexPath = expanded;//并发展开也无妨,结果相同
+            }
+            return expanded;
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package org.langzhaozhi.nmshortpath;
+
+/**
+ * 求解准入策略：求解前先按 {@link NMShortPathEstimate} 估算，超出限额的图按指定的处置方式处理，
+ * 使得共享同一个JVM的众多求解中，一个病态的输入不至于把内存耗尽拖垮所有的求解。处置方式：<ol>
+ *     <li>REJECT: 拒绝求解，抛出 IllegalStateException</li>
+ *     <li>CLAMP: 压低N和M到限额之内后精确求解，结果是较小N和M的精确结果</li>
+ *     <li>APPROXIMATE: N和M不变，以限额之内最宽的束宽度W束剪枝近似求解，见 {@link NMShortPathBeam}</li>
+ * </ol>
+ * 估算的都是上界，实际代价一般远小于此，因此限额可以适当放宽。不可变，线程安全
+ *
+ * @see NMShortPathGraph#calculateNMShortPath(NMShortPathAdmissionPolicy)
+ */
+public final class NMShortPathAdmissionPolicy {
+    /**
+     * 超出限额时的处置方式
+     */
+    public static enum Action {
+        REJECT, CLAMP, APPROXIMATE
+    }
+
+    private final long mMaxEstimatedBytes;
+    private final long mMaxMergeWork;
+    private final Action mAction;
+
+    /**
+     * @param aMaxEstimatedBytes 估算字节数的限额，见 {@link NMShortPathEstimate#getEstimatedBytes()}
+     * @param aMaxMergeWork 归并工作量的限额，见 {@link NMShortPathEstimate#getMergeWorkBound()}，Long.MAX_VALUE表示不限制
+     * @param aAction 超出限额时的处置方式
+     */
+    public NMShortPathAdmissionPolicy(long aMaxEstimatedBytes, long aMaxMergeWork, Action aAction) {
+        if (aMaxEstimatedBytes <= 0 || aMaxMergeWork <= 0 || aAction == null) {
+            throw new IllegalArgumentException( "MaxEstimatedBytes(" + aMaxEstimatedBytes + ") or MaxMergeWork(" + aMaxMergeWork + ") or Action not valid" );
+        }
+        this.mMaxEstimatedBytes = aMaxEstimatedBytes;
+        this.mMaxMergeWork = aMaxMergeWork;
+        this.mAction = aAction;
+    }
+
+    public long getMaxEstimatedBytes() {
+        return this.mMaxEstimatedBytes;
+    }
+
+    public long getMaxMergeWork() {
+        return this.mMaxMergeWork;
+    }
+
+    public Action getAction() {
+        return this.mAction;
+    }
+
+    /**
+     * 估算结果是否在限额之内
+     */
+    public boolean admits(NMShortPathEstimate aEstimate) {
+        return aEstimate.getEstimatedBytes() <= this.mMaxEstimatedBytes && aEstimate.getMergeWorkBound() <= this.mMaxMergeWork;
+    }
+
+    /**
+     * 内部调用，按策略求解
+     */
+    <A> NMShortPath<A> calculate(NMShortPathGraph<A> aGraph) {
+        int nShortPathCount = aGraph.getNShortPathCount();
+        int mVertexPathCount = aGraph.getMVertexPathCount();
+        NMShortPathEstimate estimate = aGraph.estimate( nShortPathCount, mVertexPathCount );
+        if (this.admits( estimate )) {
+            return aGraph.calculateNMShortPath();
+        }
+        if (this.mAction != Action.REJECT) {
+            //估算随M单调不减，二分找出限额之内最大的M(CLAMP)或者束宽度W(APPROXIMATE)，两者对估算的效果相同
+            int low = 0;
+            int high = mVertexPathCount - 1;//M本身已经超出了
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (this.admits( aGraph.estimate( Math.min( nShortPathCount, middle ), middle ) )) {
+                    low = middle;
+                }
+                else {
+                    high = middle - 1;
+                }
+            }
+            if (low > 0) {
+                return this.mAction == Action.CLAMP ? aGraph.calculateNMShortPath( Math.min( nShortPathCount, low ), low ) : aGraph.calculateNMShortPath( new NMShortPathBeam( low ) );
+            }
+        }
+        throw new IllegalStateException( "Graph Rejected By Admission Policy: " + estimate );
+    }
+}
@@ -0,0 +1,46 @@
+package org.langzhaozhi.nmshortpath;
+
+/**
+ * NM-最短路径的束(Beam)剪枝参数，用于近似求解超大规模的图。精确求解时每个顶点要对其所有前向边进行排序归并，
+ * 当前向边极多(扇入爆炸)或者距离大量相同(组合爆炸)时，即使有M的压制代价也可能太大。束剪枝以牺牲精确性为代价换取有界的求解代价：<ol>
+ *     <li>束宽度W：每个顶点至多只有累计距离最短的W个前向边参与归并，并且每个顶点至多保留W条VertexPath(同M取小者)，
+ *     因此每个顶点的归并代价只同W有关，不再受前向边数目和相同距离数目的影响</li>
+ *     <li>距离阈值T：每个顶点只保留累计距离不超过此顶点最短累计距离加上T的那些ShortPath，超过的直接剪枝掉</li>
+ * </ol>
+ * 只要求解过程中实际丢弃了精确求解会保留的ShortPath或者VertexPath(只是达到M的限制的不算)，求解结果 {@link NMShortPath#isApproximate()} 即为true，
+ * 否则结果同精确求解完全一致。
+ *
+ * @see NMShortPathGraph#calculateNMShortPath(NMShortPathBeam)
+ */
+public final class NMShortPathBeam {
+    final int mBeamWidth;//束宽度W
+    final double mScoreThreshold;//相对本顶点最短累计距离的阈值T,Double.POSITIVE_INFINITY表示不限制
+
+    /**
+     * 只限制束宽度，不限制距离阈值
+     * @param aBeamWidth 束宽度W,至少为1
+     */
+    public NMShortPathBeam(int aBeamWidth) {
+        this( aBeamWidth, Double.POSITIVE_INFINITY );
+    }
+
+    /**
+     * @param aBeamWidth 束宽度W,至少为1
+     * @param aScoreThreshold 相对本顶点最短累计距离的阈值T,不能为负值，Double.POSITIVE_INFINITY表示不限制
+     */
+    public NMShortPathBeam(int aBeamWidth, double aScoreThreshold) {
+        if (aBeamWidth <= 0 || !(aScoreThreshold >= 0)) {//!(>=0)同时排除NaN
+            throw new IllegalArgumentException( "BeamWidth(" + aBeamWidth + ") or ScoreThreshold(" + aScoreThreshold + ") not valid" );
+        }
+        this.mBeamWidth = aBeamWidth;
+        this.mScoreThreshold = aScoreThreshold;
+    }
+
+    public int getBeamWidth() {
+        return this.mBeamWidth;
+    }
+
+    public double getScoreThreshold() {
+        return this.mScoreThreshold;
+    }
+}
@@ -0,0 +1,280 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * 分词词图的二元语法(bigram)边代价模型。词图中一条边 (前一个词, 当前词) 的距离就是两词的转移代价(通常为 -log P)，
+ * 逐边在装箱的 HashMap&lt;String, ...&gt; 中查找转移统计往往比求解本身还慢。这里词用整数ID表示，
+ * 二元代价放在以 (前一个词ID, 当前词ID) 为键的基本类型开放寻址表中(线性探测，long 键 double 值，不产生任何装箱对象)，
+ * 没有二元统计的词对按一元回退：前一个词的回退代价 + 当前词的一元代价。<br/>
+ * 模型可以直接创建整个词图({@link #buildLattice})，也可以为已有的图按图边下标直接填写权重矩阵({@link #fillEdgeWeights})，
+ * 供 {@link NMShortPathGraph#calculateNMShortPath(double[], int)} 一次求解多个模型。<br/>
+ * 添加二元代价非线程安全；添加完毕后只读查询线程安全
+ */
+public final class NMShortPathBigramCostModel {
+    private static final long EMPTY_KEY = -1L;//词ID不为负，正常的键不可能为-1
+    private static final int MIN_CAPACITY = 16;
+
+    private final double [] mUnigramCosts;//下标为词ID
+    private final double [] mBackoffCosts;//下标为词ID
+    private final int mBeginWordId;//起始顶点对应的词ID,如"<s>"
+    private final int mEndWordId;//终止顶点对应的词ID,如"</s>"
+    private long [] mBigramKeys;
+    private double [] mBigramCosts;
+    private int mBigramCount;
+
+    /**
+     * @param aUnigramCosts 各词的一元代价，下标为词ID，词ID的范围即 [0, aUnigramCosts.length)
+     * @param aBackoffCosts 各词作为前一个词时的回退代价，null 表示都为0
+     * @param aBeginWordId 起始顶点对应的词ID
+     * @param aEndWordId 终止顶点对应的词ID
+     */
+    public NMShortPathBigramCostModel(double [] aUnigramCosts, double [] aBackoffCosts, int aBeginWordId, int aEndWordId) {
+        if (aUnigramCosts == null || (aBackoffCosts != null && aBackoffCosts.length != aUnigramCosts.length)) {
+            throw new IllegalArgumentException( "UnigramCosts or BackoffCosts not valid" );
+        }
+        this.mUnigramCosts = aUnigramCosts;
+        this.mBackoffCosts = aBackoffCosts != null ? aBackoffCosts : new double [ aUnigramCosts.length ];
+        this.mBeginWordId = aBeginWordId;
+        this.mEndWordId = aEndWordId;
+        this.checkWordId( aBeginWordId );
+        this.checkWordId( aEndWordId );
+        this.mBigramKeys = new long [ NMShortPathBigramCostModel.MIN_CAPACITY ];
+        this.mBigramCosts = new double [ NMShortPathBigramCostModel.MIN_CAPACITY ];
+        Arrays.fill( this.mBigramKeys, NMShortPathBigramCostModel.EMPTY_KEY );
+    }
+
+    /**
+     * 添加或替换一个二元代价
+     * @param aPreviousWordId 前一个词ID
+     * @param aWordId 当前词ID
+     * @param aCost 转移代价
+     */
+    public void putBigram(int aPreviousWordId, int aWordId, double aCost) {
+        this.checkWordId( aPreviousWordId );
+        this.checkWordId( aWordId );
+        if ((this.mBigramCount + 1) << 1 > this.mBigramKeys.length) {//装载因子不超过1/2
+            this.rehash( this.mBigramKeys.length << 1 );
+        }
+        long key = NMShortPathBigramCostModel.keyOf( aPreviousWordId, aWordId );
+        long [] keys = this.mBigramKeys;
+        int mask = keys.length - 1;
+        int slot = NMShortPathBigramCostModel.slotOf( key, mask );
+        while (keys[ slot ] != NMShortPathBigramCostModel.EMPTY_KEY && keys[ slot ] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[ slot ] == NMShortPathBigramCostModel.EMPTY_KEY) {
+            keys[ slot ] = key;
+            ++this.mBigramCount;
+        }
+        this.mBigramCosts[ slot ] = aCost;
+    }
+
+    /**
+     * 二元代价的个数
+     */
+    public int getBigramCount() {
+        return this.mBigramCount;
+    }
+
+    /**
+     * 转移代价：有二元统计的取二元代价，否则按一元回退
+     * @param aPreviousWordId 前一个词ID
+     * @param aWordId 当前词ID
+     * @return 代价，即词图中两词之间边的距离
+     */
+    public double cost(int aPreviousWordId, int aWordId) {
+        long key = NMShortPathBigramCostModel.keyOf( aPreviousWordId, aWordId );
+        long [] keys = this.mBigramKeys;
+        int mask = keys.length - 1;
+        for (int slot = NMShortPathBigramCostModel.slotOf( key, mask );; slot = (slot + 1) & mask) {
+            long slotKey = keys[ slot ];
+            if (slotKey == key) {
+                return this.mBigramCosts[ slot ];
+            }
+            else if (slotKey == NMShortPathBigramCostModel.EMPTY_KEY) {
+                return this.mBackoffCosts[ aPreviousWordId ] + this.mUnigramCosts[ aWordId ];
+            }
+        }
+    }
+
+    /**
+     * 直接创建分词词图：每个候选词一个顶点，候选词 u 的结束位置等于候选词 v 的开始位置时连一条 u--&gt;v 的边，距离为 cost(u, v)；
+     * 开始位置为0的词连自起始顶点，结束位置为 aTextLength 的词连到终止顶点。从起始顶点到不了或者到不了终止顶点的候选词不创建顶点。
+     * 全程按位置分桶(计数排序)，只用基本类型数组，候选词不需要事先排序
+     * @param aNShortPathCount N值
+     * @param aMVertexPathCount M值
+     * @param aStartAttachment 起始顶点的绑定数据
+     * @param aEndAttachment 终止顶点的绑定数据
+     * @param aTextLength 文本长度
+     * @param aWordStarts 各候选词在文本中的开始位置
+     * @param aWordEnds 各候选词在文本中的结束位置(不包括)
+     * @param aWordIds 各候选词的词ID
+     * @param aWordAttachments 各候选词顶点的绑定数据
+     * @return 已经准备就绪的词图
+     * @throws IllegalArgumentException 参数不合法，或者候选词不能覆盖整个文本
+     */
+    public <A> NMShortPathGraph<A> buildLattice(int aNShortPathCount, int aMVertexPathCount, A aStartAttachment, A aEndAttachment, int aTextLength, int [] aWordStarts, int [] aWordEnds, int [] aWordIds, A [] aWordAttachments) {
+        int wordCount = aWordIds.length;
+        if (aTextLength <= 0 || aWordStarts.length != wordCount || aWordEnds.length != wordCount || aWordAttachments.length != wordCount) {
+            throw new IllegalArgumentException( "TextLength(" + aTextLength + ") or Word Arrays Length not valid" );
+        }
+        //按开始位置、结束位置分别分桶
+        int [] startOffsets = new int [ aTextLength + 3 ];
+        int [] endOffsets = new int [ aTextLength + 3 ];
+        for (int i = 0; i < wordCount; ++i) {
+            int start = aWordStarts[ i ];
+            int end = aWordEnds[ i ];
+            if (start < 0 || start >= end || end > aTextLength) {
+                throw new IllegalArgumentException( "Word(" + i + ") Range [" + start + ", " + end + ") not valid" );
+            }
+            this.checkWordId( aWordIds[ i ] );
+            ++startOffsets[ start + 2 ];
+            ++endOffsets[ end + 2 ];
+        }
+        for (int p = 2; p < startOffsets.length; ++p) {
+            startOffsets[ p ] += startOffsets[ p - 1 ];
+            endOffsets[ p ] += endOffsets[ p - 1 ];
+        }
+        int [] wordsByStart = new int [ wordCount ];
+        int [] wordsByEnd = new int [ wordCount ];
+        for (int i = 0; i < wordCount; ++i) {
+            wordsByStart[ startOffsets[ aWordStarts[ i ] + 1 ]++ ] = i;
+            wordsByEnd[ endOffsets[ aWordEnds[ i ] + 1 ]++ ] = i;
+        }
+        //此时开始位置为p的词为 wordsByStart[startOffsets[p], startOffsets[p+1])，结束位置同样
+        //正向可达和反向可达的位置，开始位置比结束位置小，因此分别按开始位置正序、逆序一遍即可
+        boolean [] reachable = new boolean [ aTextLength + 1 ];
+        boolean [] coReachable = new boolean [ aTextLength + 1 ];
+        reachable[ 0 ] = true;
+        coReachable[ aTextLength ] = true;
+        for (int i = 0; i < wordCount; ++i) {
+            int word = wordsByStart[ i ];
+            reachable[ aWordEnds[ word ] ] |= reachable[ aWordStarts[ word ] ];
+        }
+        for (int i = wordCount - 1; i >= 0; --i) {
+            int word = wordsByStart[ i ];
+            coReachable[ aWordStarts[ word ] ] |= coReachable[ aWordEnds[ word ] ];
+        }
+        if (!coReachable[ 0 ]) {
+            throw new IllegalArgumentException( "No Segmentation Covers The Text" );
+        }
+
+        NMShortPathGraph<A> graph = new NMShortPathGraph<A>( aNShortPathCount, aMVertexPathCount, aStartAttachment, aEndAttachment );
+        NMShortPathVertex<A> startVertex = graph.getStartVertex();
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<A> [] vertexOfWords = new NMShortPathVertex [ wordCount ];
+        for (int i = 0; i < wordCount; ++i) {//按开始位置依次创建，前向顶点(结束于其开始位置的词)都已经创建好了
+            int word = wordsByStart[ i ];
+            int start = aWordStarts[ word ];
+            if (!reachable[ start ] || !coReachable[ aWordEnds[ word ] ]) {
+                continue;
+            }
+            int wordId = aWordIds[ word ];
+            NMShortPathEdge<A> [] previousEdges;
+            if (start == 0) {
+                previousEdges = NMShortPathBigramCostModel.newEdges( 1 );
+                previousEdges[ 0 ] = new NMShortPathEdge<A>( startVertex, this.cost( this.mBeginWordId, wordId ) );
+            }
+            else {
+                int previousCount = 0;
+                for (int j = endOffsets[ start ], jlast = endOffsets[ start + 1 ]; j < jlast; ++j) {
+                    previousCount += vertexOfWords[ wordsByEnd[ j ] ] != null ? 1 : 0;
+                }
+                previousEdges = NMShortPathBigramCostModel.newEdges( previousCount );
+                for (int j = endOffsets[ start ], jlast = endOffsets[ start + 1 ], k = 0; j < jlast; ++j) {
+                    int previousWord = wordsByEnd[ j ];
+                    NMShortPathVertex<A> previousVertex = vertexOfWords[ previousWord ];
+                    if (previousVertex != null) {
+                        previousEdges[ k++ ] = new NMShortPathEdge<A>( previousVertex, this.cost( aWordIds[ previousWord ], wordId ) );
+                    }
+                }
+            }
+            vertexOfWords[ word ] = new NMShortPathVertex<A>( graph, aWordAttachments[ word ], previousEdges );
+        }
+        for (int j = endOffsets[ aTextLength ], jlast = endOffsets[ aTextLength + 1 ]; j < jlast; ++j) {
+            int word = wordsByEnd[ j ];
+            NMShortPathVertex<A> vertex = vertexOfWords[ word ];
+            if (vertex != null) {
+                graph.connectToEndVertex( vertex, this.cost( aWordIds[ word ], this.mEndWordId ) );
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * 按图边下标(见 {@link NMShortPathGraph#getEdgeIndex(NMShortPathVertex, NMShortPathEdge)})直接填写权重矩阵的第 aWeightProfile 列，
+     * 同一个词图可以用多个模型分别填写各自的列后一次求解。图必须已经准备就绪
+     * @param aGraph 词图
+     * @param aWordIdOfAttachment 从顶点绑定数据得到词ID，起始顶点和终止顶点不调用
+     * @param aEdgeWeights 权重矩阵，长度为 getEdgeCount()*K
+     * @param aWeightProfileCount K
+     * @param aWeightProfile 填写的列，[0, K)
+     */
+    public <A> void fillEdgeWeights(NMShortPathGraph<A> aGraph, ToIntFunction<? super A> aWordIdOfAttachment, double [] aEdgeWeights, int aWeightProfileCount, int aWeightProfile) {
+        int [] edgeIndexOffsets = aGraph.edgeIndexOffsets();
+        int vertexCount = edgeIndexOffsets.length - 2;
+        if (aWeightProfile < 0 || aWeightProfile >= aWeightProfileCount || aEdgeWeights.length != (long) edgeIndexOffsets[ vertexCount + 1 ] * aWeightProfileCount) {
+            throw new IllegalArgumentException( "WeightProfile(" + aWeightProfile + ") or EdgeWeights Length(" + aEdgeWeights.length + ") not valid" );
+        }
+        //各顶点的词ID只求一次，起始顶点在最前，终止顶点在最后
+        int [] wordIds = new int [ vertexCount + 1 ];
+        wordIds[ 0 ] = this.mBeginWordId;
+        for (int i = 1; i < vertexCount; ++i) {
+            wordIds[ i ] = aWordIdOfAttachment.applyAsInt( aGraph.getVertexAt( i ).mAttachment );
+        }
+        wordIds[ vertexCount ] = this.mEndWordId;
+        int e = aWeightProfile;
+        for (int i = 1; i <= vertexCount; ++i) {
+            NMShortPathVertex<A> currentVertex = i < vertexCount ? aGraph.getVertexAt( i ) : aGraph.getEndVertex();
+            int wordId = wordIds[ i ];
+            for (NMShortPathEdge<A> previousEdge : currentVertex.mPreviousEdges) {
+                aEdgeWeights[ e ] = this.cost( wordIds[ previousEdge.mPreviousVertex.mGraphVertexIndex ], wordId );
+                e += aWeightProfileCount;
+            }
+        }
+    }
+
+    private void checkWordId(int aWordId) {
+        if (aWordId < 0 || aWordId >= this.mUnigramCosts.length) {
+            throw new IllegalArgumentException( "WordId(" + aWordId + ") not valid" );
+        }
+    }
+
+    private void rehash(int aCapacity) {
+        long [] oldKeys = this.mBigramKeys;
+        double [] oldCosts = this.mBigramCosts;
+        long [] keys = new long [ aCapacity ];
+        double [] costs = new double [ aCapacity ];
+        Arrays.fill( keys, NMShortPathBigramCostModel.EMPTY_KEY );
+        int mask = aCapacity - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            long key = oldKeys[ i ];
+            if (key != NMShortPathBigramCostModel.EMPTY_KEY) {
+                int slot = NMShortPathBigramCostModel.slotOf( key, mask );
+                while (keys[ slot ] != NMShortPathBigramCostModel.EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[ slot ] = key;
+                costs[ slot ] = oldCosts[ i ];
+            }
+        }
+        this.mBigramKeys = keys;
+        this.mBigramCosts = costs;
+    }
+
+    private static long keyOf(int aPreviousWordId, int aWordId) {
+        return ((long) aPreviousWordId << 32) | aWordId;
+    }
+
+    private static int slotOf(long aKey, int aMask) {
+        long hash = aKey * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & aMask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> NMShortPathEdge<A> [] newEdges(int aCount) {
+        return new NMShortPathEdge [ aCount ];
+    }
+}
@@ -0,0 +1,162 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * NM-最短路径求解结果的有界LRU缓存，以图的规范结构指纹 {@link NMShortPathFingerprint} 为键。
+ * 实际应用中大量重复的句子和重复的子图，每次都要重新创建图并重新求解，缓存后直接命中即可。<br/>
+ * 缓存容量按权重计算，每个结果的权重由 aWeigher 给出(缺省每个结果权重为1，即按条数限制)，总权重超过容量时淘汰最久未访问的结果。
+ * 线程安全：多个线程可同时查询，求解过程在锁外进行，同一个指纹并发未命中时可能重复求解，但只保留一份结果。<br/>
+ * 注意两点：<ol>
+ *     <li>命中时返回的是最先求解的那个图的结果本身，其中各VertexPath的顶点都是那个图的顶点，绑定数据也是那个图的。
+ *     指纹只包含绑定数据的应用哈希值，两个图的绑定数据哈希相同而实际不同(或者绑定数据可变)时，得到的是那个图的绑定数据，
+ *     需要本图的顶点时按顶点下标 {@link NMShortPathVertex#getGraphVertexIndex()} 对应回来即可</li>
+ *     <li>结果经由其顶点引用着整个源图，每个缓存的结果都使其源图不能回收。缺省权重1只限制条数，不限制内存，
+ *     需要按内存限制时用 {@link #graphSizeWeigher()} 按源图的顶点数目和边数目计权重</li>
+ * </ol>
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ */
+public final class NMShortPathCache<A> {
+    private final long mMaxWeight;
+    private final ToLongFunction<? super NMShortPath<A>> mWeigher;
+    private final ToLongFunction<? super A> mAttachmentHasher;
+    private final LinkedHashMap<NMShortPathFingerprint, WeightedResult<A>> mResultMap;//access-order,即LRU顺序
+    private long mTotalWeight;//由 mResultMap 的锁保护
+
+    private final LongAdder mHitCount = new LongAdder();
+    private final LongAdder mMissCount = new LongAdder();
+    private final LongAdder mEvictionCount = new LongAdder();
+
+    /**
+     * 按条数限制容量，顶点绑定数据的哈希值采用 Objects.hashCode
+     * @param aMaxSize 最多缓存的结果条数
+     */
+    public NMShortPathCache(int aMaxSize) {
+        this( aMaxSize, (aResult) -> 1, Objects::hashCode );
+    }
+
+    /**
+     * @param aMaxWeight 缓存的最大总权重
+     * @param aWeigher 每个结果的权重，例如 NMShortPath::getVertexPathCount，不能为负值
+     * @param aAttachmentHasher 顶点绑定数据的哈希函数，参与图指纹的计算
+     */
+    public NMShortPathCache(long aMaxWeight, ToLongFunction<? super NMShortPath<A>> aWeigher, ToLongFunction<? super A> aAttachmentHasher) {
+        if (aMaxWeight <= 0 || aWeigher == null || aAttachmentHasher == null) {
+            throw new IllegalArgumentException( "MaxWeight(" + aMaxWeight + ") or Weigher or AttachmentHasher not valid" );
+        }
+        this.mMaxWeight = aMaxWeight;
+        this.mWeigher = aWeigher;
+        this.mAttachmentHasher = aAttachmentHasher;
+        this.mResultMap = new LinkedHashMap<NMShortPathFingerprint, WeightedResult<A>>( 16, 0.75f, true );
+    }
+
+    /**
+     * 命中则直接返回缓存的结果，否则求解并缓存之
+     * @param aGraph 已经准备就绪的图
+     * @return NM-最短路径
+     */
+    public NMShortPath<A> calculateNMShortPath(NMShortPathGraph<A> aGraph) {
+        return this.computeIfAbsent( aGraph.fingerprint( this.mAttachmentHasher ), aGraph::calculateNMShortPath );
+    }
+
+    /**
+     * 按结果所引用的源图的规模(顶点数目加上边数目)计权重，这样缓存的总权重同缓存实际占用的内存大致成正比
+     */
+    public static <A> ToLongFunction<NMShortPath<A>> graphSizeWeigher() {
+        return (aResult) -> {
+            NMShortPathGraph<A> sourceGraph = aResult.getMostShortPath().getVertexPathAt( 0 ).mCurrentVertex.mOwnerGraph;
+            return sourceGraph.getGraphVertexCount() + sourceGraph.getEdgeCount();
+        };
+    }
+
+    ToLongFunction<? super A> getAttachmentHasher() {
+        return this.mAttachmentHasher;
+    }
+
+    NMShortPath<A> computeIfAbsent(NMShortPathFingerprint aFingerprint, Supplier<NMShortPath<A>> aCalculator) {
+        LinkedHashMap<NMShortPathFingerprint, WeightedResult<A>> resultMap = this.mResultMap;
+        synchronized (resultMap) {
+            WeightedResult<A> cached = resultMap.get( aFingerprint );
+            if (cached != null) {
+                this.mHitCount.increment();
+                return cached.mResult;
+            }
+        }
+        this.mMissCount.increment();
+        //锁外求解，不阻塞其他查询
+        NMShortPath<A> result = aCalculator.get();
+        long weight = this.mWeigher.applyAsLong( result );
+        if (weight < 0) {
+            throw new IllegalStateException( "Weight(" + weight + ") must not be negative" );
+        }
+        if (weight <= this.mMaxWeight) {
+            synchronized (resultMap) {
+                WeightedResult<A> old = resultMap.put( aFingerprint, new WeightedResult<A>( result, weight ) );
+                this.mTotalWeight += old == null ? weight : weight - old.mWeight;
+                //从最久未访问的开始淘汰,直到总权重不超过容量
+                for (Iterator<WeightedResult<A>> it = resultMap.values().iterator(); this.mTotalWeight > this.mMaxWeight && it.hasNext();) {
+                    this.mTotalWeight -= it.next().mWeight;
+                    it.remove();
+                    this.mEvictionCount.increment();
+                }
+            }
+        }
+        return result;
+    }
+
+    public long getHitCount() {
+        return this.mHitCount.sum();
+    }
+
+    public long getMissCount() {
+        return this.mMissCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.mEvictionCount.sum();
+    }
+
+    /**
+     * 命中率，还没有查询过时为0
+     */
+    public double getHitRate() {
+        long hitCount = this.getHitCount();
+        long requestCount = hitCount + this.getMissCount();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    public int size() {
+        synchronized (this.mResultMap) {
+            return this.mResultMap.size();
+        }
+    }
+
+    public long getTotalWeight() {
+        synchronized (this.mResultMap) {
+            return this.mTotalWeight;
+        }
+    }
+
+    public void clear() {
+        synchronized (this.mResultMap) {
+            this.mResultMap.clear();
+            this.mTotalWeight = 0;
+        }
+    }
+
+    private static final class WeightedResult<A> {
+        final NMShortPath<A> mResult;
+        final long mWeight;
+
+        WeightedResult(NMShortPath<A> aResult, long aWeight) {
+            this.mResult = aResult;
+            this.mWeight = aWeight;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 并发构建超大规模的NM-最短路径图。直接创建 NMShortPathVertex 时顶点下标由 NMShortPathGraph 逐个顺序生成，
+ * 顶点列表也没有同步保护，只能单线程构建。本构建器按区块预留顶点下标：{@link #reserveRegion(int)} 按拓扑顺序依次预留一段连续的下标，
+ * 之后各个区块 {@link Region} 就可以分别由不同的线程同时填充顶点和边，区块内部只以原始数组记录，互不干扰；
+ * 各顶点是否已经有后向顶点由一个无锁的位图记录。全部填充完毕后 {@link #seal()} 并行创建出所有顶点对象，得到可以求解的图。
+ * <p>约束：一个顶点的前向顶点的下标必须小于其自身的下标，即只能是本区块之前添加的顶点、之前预留的区块中的顶点或起始顶点(0号)，
+ * 因此应该按拓扑顺序预留区块，例如篱笆型图按列、长文本按段落预留。</p>
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ */
+public final class NMShortPathConcurrentGraphBuilder<A> {
+    private final int mNShortPathCount;
+    private final int mMVertexPathCount;
+    private final A mStartAttachment;
+    private final A mEndAttachment;
+    private final int mVertexCapacity;
+    private final AtomicInteger mVertexIndexGenerator = new AtomicInteger( 1 );//0号是起始顶点
+    private final AtomicLongArray mHasPostVertexBits;//各顶点是否已经有后向顶点(包括终止顶点)的位图
+    private final ArrayList<Region<A>> mRegions = new ArrayList<Region<A>>();//按预留顺序,由自身的锁保护
+    private volatile boolean mSealed;
+
+    /**
+     * @param aNShortPathCount N值
+     * @param aMVertexPathCount M值
+     * @param aStartAttachment 起始顶点绑定的数据
+     * @param aEndAttachment 终止顶点绑定的数据
+     * @param aVertexCapacity 最多的顶点数目(包括起始顶点但不包括终止顶点)，用于预先分配无锁位图
+     */
+    public NMShortPathConcurrentGraphBuilder(int aNShortPathCount, int aMVertexPathCount, A aStartAttachment, A aEndAttachment, int aVertexCapacity) {
+        NMShortPathGraph.checkNM( aNShortPathCount, aMVertexPathCount );
+        if (aVertexCapacity <= 1) {
+            throw new IllegalArgumentException( "VertexCapacity(" + aVertexCapacity + ") not valid" );
+        }
+        this.mNShortPathCount = aNShortPathCount;
+        this.mMVertexPathCount = aMVertexPathCount;
+        this.mStartAttachment = aStartAttachment;
+        this.mEndAttachment = aEndAttachment;
+        this.mVertexCapacity = aVertexCapacity;
+        this.mHasPostVertexBits = new AtomicLongArray( (aVertexCapacity + 63) >>> 6 );
+    }
+
+    /**
+     * 起始顶点的下标，永远是0
+     */
+    public int getStartVertexIndex() {
+        return 0;
+    }
+
+    /**
+     * 按拓扑顺序预留一段连续的顶点下标，线程安全
+     * @param aVertexCount 此区块的顶点数目
+     * @return 区块，由一个线程填充
+     */
+    public Region<A> reserveRegion(int aVertexCount) {
+        if (aVertexCount <= 0) {
+            throw new IllegalArgumentException( "VertexCount(" + aVertexCount + ") not valid" );
+        }
+        synchronized (this.mRegions) {//预留本身很轻，同步保证区块列表同下标顺序一致
+            this.checkNotSealed();
+            int firstIndex = this.mVertexIndexGenerator.get();
+            if (firstIndex + (long) aVertexCount > this.mVertexCapacity) {
+                throw new IllegalStateException( "VertexCapacity(" + this.mVertexCapacity + ") Exceeded" );
+            }
+            this.mVertexIndexGenerator.set( firstIndex + aVertexCount );
+            Region<A> region = new Region<A>( this, firstIndex, aVertexCount );
+            this.mRegions.add( region );
+            return region;
+        }
+    }
+
+    private void checkNotSealed() {
+        if (this.mSealed) {
+            throw new IllegalStateException( "The Builder Has Been Sealed" );
+        }
+    }
+
+    //无锁置位
+    void markHasPostVertex(int aGraphVertexIndex) {
+        long bit = 1L << aGraphVertexIndex;//移位只取低6位
+        int word = aGraphVertexIndex >>> 6;
+        AtomicLongArray bits = this.mHasPostVertexBits;
+        long oldBits = bits.get( word );
+        while ((oldBits & bit) == 0 && !bits.compareAndSet( word, oldBits, oldBits | bit )) {
+            oldBits = bits.get( word );
+        }
+    }
+
+    /**
+     * 是否所有预留的区块都已经填满，并且除终止顶点外的所有顶点都已经有后向顶点
+     */
+    public boolean isReady() {
+        synchronized (this.mRegions) {
+            for (Region<A> region : this.mRegions) {
+                if (region.mAddedVertexCount != region.mVertexCount) {
+                    return false;
+                }
+            }
+        }
+        AtomicLongArray bits = this.mHasPostVertexBits;
+        int vertexCount = this.mVertexIndexGenerator.get();
+        for (int word = 0, wordCount = vertexCount >>> 6; word < wordCount; ++word) {
+            if (bits.get( word ) != -1L) {
+                return false;
+            }
+        }
+        long lastBits = (1L << (vertexCount & 63)) - 1;
+        return (vertexCount & 63) == 0 || (bits.get( vertexCount >>> 6 ) & lastBits) == lastBits;
+    }
+
+    /**
+     * 封装成可以求解的图：各区块并行创建顶点对象，再并行建立各顶点的前向边。调用时所有填充线程都必须已经结束，之后本构建器不能再使用
+     * @return 已经准备就绪的图
+     * @throws IllegalStateException 还有区块没有填满，或者存在没有后向顶点的顶点
+     */
+    public NMShortPathGraph<A> seal() {
+        ArrayList<Region<A>> regions;
+        synchronized (this.mRegions) {
+            this.checkNotSealed();
+            if (!this.isReady()) {
+                throw new IllegalStateException( "The NShortPathGraph Model Is NOT Ready: There Are Unfilled Regions Or Vertexes Which Has No Post Vertexes" );
+            }
+            this.mSealed = true;
+            regions = this.mRegions;
+        }
+        NMShortPathGraph<A> graphModel = new NMShortPathGraph<A>( this.mNShortPathCount, this.mMVertexPathCount, this.mStartAttachment, this.mEndAttachment );
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<A> [] vertexes = new NMShortPathVertex [ this.mVertexIndexGenerator.get() ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        //第一遍并行：创建各顶点对象，此时前向顶点可能在其他区块中还没有创建，因此先不设置前向边
+        regions.parallelStream().forEach( (aRegion) -> aRegion.createVertexes( graphModel, vertexes ) );
+        //第二遍并行：所有顶点对象都已经存在，建立前向边
+        regions.parallelStream().forEach( (aRegion) -> aRegion.createPreviousEdges( vertexes ) );
+
+        ArrayList<NMShortPathEdge<A>> endVertexPreviousEdges = new ArrayList<NMShortPathEdge<A>>();
+        for (Region<A> region : regions) {
+            for (int i = 0; i < region.mEndEdgeCount; ++i) {
+                endVertexPreviousEdges.add( new NMShortPathEdge<A>( vertexes[ region.mEndPreviousVertexes[ i ] ], region.mEndDistances[ i ] ) );
+            }
+        }
+        @SuppressWarnings("unchecked")
+        NMShortPathEdge<A> [] endEdges = endVertexPreviousEdges.toArray( new NMShortPathEdge [ endVertexPreviousEdges.size() ] );
+        graphModel.installVertexes( vertexes, endEdges );
+        return graphModel;
+    }
+
+    /**
+     * 预留的一段连续下标的顶点区块，只能由一个线程填充(不同的区块可以由不同的线程同时填充)，必须按下标顺序依次添加顶点
+     */
+    public static final class Region<A> {
+        private final NMShortPathConcurrentGraphBuilder<A> mBuilder;
+        final int mFirstGraphVertexIndex;
+        final int mVertexCount;
+        volatile int mAddedVertexCount;//isReady() 可能在其他线程中读取，volatile 写在最后，保证此前添加的顶点数据对读到此值的线程可见
+
+        private final Object [] mAttachments;
+        private final int [] mPreviousOffsets;//第i个顶点的前向边为 [mPreviousOffsets[i], mPreviousOffsets[i+1])
+        private int [] mPreviousVertexes = new int [ 16 ];
+        private double [] mPreviousDistances = new double [ 16 ];
+
+        int [] mEndPreviousVertexes = new int [ 4 ];
+        double [] mEndDistances = new double [ 4 ];
+        int mEndEdgeCount;
+
+        Region(NMShortPathConcurrentGraphBuilder<A> aBuilder, int aFirstGraphVertexIndex, int aVertexCount) {
+            this.mBuilder = aBuilder;
+            this.mFirstGraphVertexIndex = aFirstGraphVertexIndex;
+            this.mVertexCount = aVertexCount;
+            this.mAttachments = new Object [ aVertexCount ];
+            this.mPreviousOffsets = new int [ aVertexCount + 1 ];
+        }
+
+        public int getFirstGraphVertexIndex() {
+            return this.mFirstGraphVertexIndex;
+        }
+
+        public int getVertexCount() {
+            return this.mVertexCount;
+        }
+
+        /**
+         * 添加下一个顶点
+         * @param aAttachment 此顶点绑定的数据
+         * @param aPreviousGraphVertexIndexes 各前向顶点的下标，至少一个，都必须小于此顶点的下标
+         * @param aDistances 各前向边的距离
+         * @return 此顶点的下标
+         */
+        public int addVertex(A aAttachment, int [] aPreviousGraphVertexIndexes, double [] aDistances) {
+            this.mBuilder.checkNotSealed();
+            int position = this.mAddedVertexCount;
+            int graphVertexIndex = this.mFirstGraphVertexIndex + position;
+            int previousEdgeCount = aPreviousGraphVertexIndexes.length;
+            if (position == this.mVertexCount || previousEdgeCount == 0 || previousEdgeCount != aDistances.length) {
+                throw new IllegalArgumentException( "Region Is Full Or AtLeast Pass One Previous Edge With One Distance" );
+            }
+            for (int i = 0; i < previousEdgeCount; ++i) {
+                if (aPreviousGraphVertexIndexes[ i ] < 0 || aPreviousGraphVertexIndexes[ i ] >= graphVertexIndex) {
+                    throw new IllegalArgumentException( "Previous Vertex[" + i + "](" + aPreviousGraphVertexIndexes[ i ] + ") not valid" );
+                }
+            }
+            int previousOffset = this.mPreviousOffsets[ position ];
+            if (previousOffset + previousEdgeCount > this.mPreviousVertexes.length) {
+                int newCapacity = Math.max( previousOffset + previousEdgeCount, this.mPreviousVertexes.length + (this.mPreviousVertexes.length >> 1) );
+                this.mPreviousVertexes = Arrays.copyOf( this.mPreviousVertexes, newCapacity );
+                this.mPreviousDistances = Arrays.copyOf( this.mPreviousDistances, newCapacity );
+            }
+            System.arraycopy( aPreviousGraphVertexIndexes, 0, this.mPreviousVertexes, previousOffset, previousEdgeCount );
+            System.arraycopy( aDistances, 0, this.mPreviousDistances, previousOffset, previousEdgeCount );
+            for (int i = 0; i < previousEdgeCount; ++i) {
+                this.mBuilder.markHasPostVertex( aPreviousGraphVertexIndexes[ i ] );
+            }
+            this.mAttachments[ position ] = aAttachment;
+            this.mPreviousOffsets[ position + 1 ] = previousOffset + previousEdgeCount;
+            this.mAddedVertexCount = position + 1;
+            return graphVertexIndex;
+        }
+
+        /**
+         * 令一个顶点连接到终止顶点，此顶点可以是任何已经添加了的顶点(不限于本区块)
+         */
+        public void connectToEndVertex(int aGraphVertexIndex, double aDistanceToEndVertex) {
+            this.mBuilder.checkNotSealed();
+            if (aGraphVertexIndex < 0 || aGraphVertexIndex >= this.mFirstGraphVertexIndex + this.mAddedVertexCount) {
+                throw new IllegalArgumentException( "Vertex(" + aGraphVertexIndex + ") not valid" );
+            }
+            int endEdgeCount = this.mEndEdgeCount;
+            if (endEdgeCount == this.mEndPreviousVertexes.length) {
+                this.mEndPreviousVertexes = Arrays.copyOf( this.mEndPreviousVertexes, endEdgeCount << 1 );
+                this.mEndDistances = Arrays.copyOf( this.mEndDistances, endEdgeCount << 1 );
+            }
+            this.mEndPreviousVertexes[ endEdgeCount ] = aGraphVertexIndex;
+            this.mEndDistances[ endEdgeCount ] = aDistanceToEndVertex;
+            this.mEndEdgeCount = endEdgeCount + 1;
+            this.mBuilder.markHasPostVertex( aGraphVertexIndex );
+        }
+
+        @SuppressWarnings("unchecked")
+        void createVertexes(NMShortPathGraph<A> aGraphModel, NMShortPathVertex<A> [] aVertexes) {
+            for (int i = 0; i < this.mVertexCount; ++i) {
+                aVertexes[ this.mFirstGraphVertexIndex + i ] = new NMShortPathVertex<A>( (A) this.mAttachments[ i ], aGraphModel, this.mFirstGraphVertexIndex + i );
+            }
+        }
+
+        void createPreviousEdges(NMShortPathVertex<A> [] aVertexes) {
+            for (int i = 0; i < this.mVertexCount; ++i) {
+                int previousOffset = this.mPreviousOffsets[ i ];
+                @SuppressWarnings("unchecked")
+                NMShortPathEdge<A> [] previousEdges = new NMShortPathEdge [ this.mPreviousOffsets[ i + 1 ] - previousOffset ];
+                for (int j = 0; j < previousEdges.length; ++j) {
+                    previousEdges[ j ] = new NMShortPathEdge<A>( aVertexes[ this.mPreviousVertexes[ previousOffset + j ] ], this.mPreviousDistances[ previousOffset + j ] );
+                }
+                NMShortPathVertex.sortPreviousEdges( previousEdges );
+                aVertexes[ this.mFirstGraphVertexIndex + i ].mPreviousEdges = previousEdges;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.langzhaozhi.nmshortpath;
+
+/**
+ * 求解前的代价估算，只根据图结构(各顶点的前向边数目)和N、M，代价 O(V+E)，不进行任何求解。
+ * 一个顶点保留的VertexPath不会多于其各前向顶点保留的VertexPath之和，也不会多于M；保留的ShortPath不会多于其各前向顶点保留的ShortPath之和，
+ * 也不会多于N和其自身的VertexPath数目。按拓扑顺序逐个顶点递推即得出整个求解保留的ShortPath、VertexPath数目的上界，
+ * 所有边距离都相等等组合爆炸的情况在这里就能看出来，而不必等到求解把内存耗尽。
+ * 字节数按64位JVM压缩指针时各对象的大致大小换算，只是估算
+ *
+ * @see NMShortPathGraph#estimate(int, int)
+ * @see NMShortPathAdmissionPolicy
+ */
+public final class NMShortPathEstimate {
+    private static final long VERTEX_PATH_BYTES = 36;//VertexPath对象32字节,加上ShortPath中数组的一个元素
+    private static final long SHORT_PATH_BYTES = 44;//ShortPath对象24字节,其VertexPath数组头16字节,加上顶点结果数组的一个元素
+    private static final long VERTEX_BYTES = 20;//每个顶点结果数组的数组头,加上求解表中的一个元素
+
+    private final int mNShortPathCount;
+    private final int mMVertexPathCount;
+    private final int mVertexCount;
+    private final long mEdgeCount;
+    private final long mShortPathBound;
+    private final long mVertexPathBound;
+    private final long mMergeWorkBound;
+    private final long mEstimatedBytes;
+
+    private NMShortPathEstimate(int aNShortPathCount, int aMVertexPathCount, int aVertexCount, long aEdgeCount, long aShortPathBound, long aVertexPathBound, long aMergeWorkBound) {
+        this.mNShortPathCount = aNShortPathCount;
+        this.mMVertexPathCount = aMVertexPathCount;
+        this.mVertexCount = aVertexCount;
+        this.mEdgeCount = aEdgeCount;
+        this.mShortPathBound = aShortPathBound;
+        this.mVertexPathBound = aVertexPathBound;
+        this.mMergeWorkBound = aMergeWorkBound;
+        //上界可能高达 V*M，防止溢出
+        double estimatedBytes = (double) aVertexPathBound * NMShortPathEstimate.VERTEX_PATH_BYTES + (double) aShortPathBound * NMShortPathEstimate.SHORT_PATH_BYTES + (double) aVertexCount * NMShortPathEstimate.VERTEX_BYTES;
+        this.mEstimatedBytes = estimatedBytes >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) estimatedBytes;
+    }
+
+    /**
+     * 内部调用，图必须已经准备就绪
+     */
+    static <A> NMShortPathEstimate estimate(NMShortPathGraph<A> aGraph, int aNShortPathCount, int aMVertexPathCount) {
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        long [] shortPathCounts = new long [ graphVertexCount ];//按位置,终止顶点在最后
+        long [] vertexPathCounts = new long [ graphVertexCount ];
+        shortPathCounts[ 0 ] = 1;
+        vertexPathCounts[ 0 ] = 1;
+        long edgeCount = 0;
+        long shortPathBound = 1;
+        long vertexPathBound = 1;
+        long mergeWorkBound = 0;
+        for (int i = 1; i < graphVertexCount; ++i) {
+            NMShortPathVertex<A> currentVertex = i < graphVertexCount - 1 ? aGraph.getVertexAt( i ) : aGraph.getEndVertex();
+            NMShortPathEdge<A> [] previousEdges = currentVertex.mPreviousEdges;
+            long shortPathCount = 0;
+            long vertexPathCount = 0;
+            for (NMShortPathEdge<A> previousEdge : previousEdges) {
+                int previousIndex = previousEdge.mPreviousVertex.mGraphVertexIndex;
+                shortPathCount = Math.min( aNShortPathCount, shortPathCount + shortPathCounts[ previousIndex ] );
+                vertexPathCount = Math.min( aMVertexPathCount, vertexPathCount + vertexPathCounts[ previousIndex ] );
+            }
+            shortPathCount = Math.min( shortPathCount, vertexPathCount );
+            shortPathCounts[ i ] = shortPathCount;
+            vertexPathCounts[ i ] = vertexPathCount;
+            edgeCount += previousEdges.length;
+            shortPathBound += shortPathCount;
+            vertexPathBound += vertexPathCount;
+            //扫描各前向边一遍，每取出一条VertexPath做一次堆调整
+            mergeWorkBound += previousEdges.length + vertexPathCount * (32 - Integer.numberOfLeadingZeros( previousEdges.length ));
+        }
+        return new NMShortPathEstimate( aNShortPathCount, aMVertexPathCount, graphVertexCount, edgeCount, shortPathBound, vertexPathBound, mergeWorkBound );
+    }
+
+    /**
+     * 估算所用的N值
+     */
+    public int getNShortPathCount() {
+        return this.mNShortPathCount;
+    }
+
+    /**
+     * 估算所用的M值
+     */
+    public int getMVertexPathCount() {
+        return this.mMVertexPathCount;
+    }
+
+    /**
+     * 顶点数目，包括起始顶点和终止顶点
+     */
+    public int getVertexCount() {
+        return this.mVertexCount;
+    }
+
+    /**
+     * 边数目，包括连接到终止顶点的边
+     */
+    public long getEdgeCount() {
+        return this.mEdgeCount;
+    }
+
+    /**
+     * 求解过程中所有顶点保留的ShortPath总数的上界
+     */
+    public long getShortPathBound() {
+        return this.mShortPathBound;
+    }
+
+    /**
+     * 求解过程中所有顶点保留的VertexPath总数的上界
+     */
+    public long getVertexPathBound() {
+        return this.mVertexPathBound;
+    }
+
+    /**
+     * 归并工作量的上界：前向边扫描次数加上取出VertexPath时的堆调整次数
+     */
+    public long getMergeWorkBound() {
+        return this.mMergeWorkBound;
+    }
+
+    /**
+     * 求解结果占用内存的估算字节数(按上界)，不包括图本身
+     */
+    public long getEstimatedBytes() {
+        return this.mEstimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "NMShortPathEstimate[N=" + this.mNShortPathCount + ", M=" + this.mMVertexPathCount + ", vertexes=" + this.mVertexCount + ", edges=" + this.mEdgeCount + ", shortPaths<=" + this.mShortPathBound + ", vertexPaths<=" + this.mVertexPathBound + ", mergeWork<=" + this.mMergeWorkBound + ", bytes~" + this.mEstimatedBytes + "]";
+    }
+}
@@ -0,0 +1,97 @@
+package org.langzhaozhi.nmshortpath;
+
+/**
+ * NM-最短路径图的规范结构指纹(128位)，由N、M、各顶点下标、顶点绑定数据的应用哈希值、各前向边的前向顶点下标及距离共同决定。
+ * 一个顶点的各前向边按照与顺序无关的方式累加，因此相同距离前向边传递的先后顺序不影响指纹；
+ * 顶点下标本身就是创建顺序，按相同顺序创建的相同结构的图具有相同的指纹，不管是直接创建的还是通过 NMShortPathGraphWrapper 创建的。
+ *
+ * @see NMShortPathGraph#fingerprint(java.util.function.ToLongFunction)
+ * @see NMShortPathGraphWrapper#fingerprint(java.util.function.ToLongFunction)
+ * @see NMShortPathCache
+ */
+public final class NMShortPathFingerprint {
+    private final long mHigh;
+    private final long mLow;
+
+    NMShortPathFingerprint(long aHigh, long aLow) {
+        this.mHigh = aHigh;
+        this.mLow = aLow;
+    }
+
+    public long getHigh() {
+        return this.mHigh;
+    }
+
+    public long getLow() {
+        return this.mLow;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.mLow ^ (this.mLow >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object aOther) {
+        if (aOther == this) {
+            return true;
+        }
+        else if (aOther instanceof NMShortPathFingerprint) {
+            NMShortPathFingerprint other = (NMShortPathFingerprint) aOther;
+            return this.mHigh == other.mHigh && this.mLow == other.mLow;
+        }
+        else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%016x%016x", this.mHigh, this.mLow );
+    }
+
+    //SplitMix64 的混淆函数
+    static long mix(long aValue) {
+        aValue = (aValue ^ (aValue >>> 30)) * 0xBF58476D1CE4E5B9L;
+        aValue = (aValue ^ (aValue >>> 27)) * 0x94D049BB133111EBL;
+        return aValue ^ (aValue >>> 31);
+    }
+
+    /**
+     * 内部用途，按顶点下标顺序依次累加各顶点及其前向边，图和包装器都通过它计算指纹以保证两者一致
+     */
+    static final class Hasher {
+        private long mHigh;
+        private long mLow;
+        private long mEdgeHigh;//当前顶点各前向边的与顺序无关的累加和
+        private long mEdgeLow;
+
+        Hasher(int aNShortPathCount, int aMVertexPathCount) {
+            this.mHigh = NMShortPathFingerprint.mix( aNShortPathCount * 0x9E3779B97F4A7C15L + aMVertexPathCount );
+            this.mLow = NMShortPathFingerprint.mix( aMVertexPathCount * 0xC2B2AE3D27D4EB4FL + aNShortPathCount );
+        }
+
+        void addEdge(int aPreviousGraphVertexIndex, double aDistanceBetweenVertexes) {
+            long edgeBits = Double.doubleToLongBits( aDistanceBetweenVertexes ) * 0x9E3779B97F4A7C15L + aPreviousGraphVertexIndex;
+            this.mEdgeHigh += NMShortPathFingerprint.mix( edgeBits );
+            this.mEdgeLow += NMShortPathFingerprint.mix( edgeBits ^ 0x632BE59BD9B4E019L );
+        }
+
+        /**
+         * 结束一个顶点：之前 addEdge 的都是此顶点的前向边
+         * @param aGraphVertexIndex 顶点下标,终止顶点也是其实际下标(0xFFFFFFFF)
+         * @param aAttachmentHash 顶点绑定数据的应用哈希值
+         */
+        void addVertex(int aGraphVertexIndex, long aAttachmentHash) {
+            long vertexBits = NMShortPathFingerprint.mix( aGraphVertexIndex * 0xC2B2AE3D27D4EB4FL + aAttachmentHash );
+            this.mHigh = NMShortPathFingerprint.mix( this.mHigh * 31 + (vertexBits ^ this.mEdgeHigh) );
+            this.mLow = NMShortPathFingerprint.mix( this.mLow * 37 + (vertexBits + this.mEdgeLow) );
+            this.mEdgeHigh = 0;
+            this.mEdgeLow = 0;
+        }
+
+        NMShortPathFingerprint toFingerprint() {
+            return new NMShortPathFingerprint( this.mHigh, this.mLow );
+        }
+    }
+}
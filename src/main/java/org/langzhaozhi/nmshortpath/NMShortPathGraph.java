@@ -1,13 +1,14 @@
 package org.langzhaozhi.nmshortpath;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.List;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.function.ToLongFunction;
 
 import org.langzhaozhi.common.graph.GraphStrictOnewayWithStartEndVerteies;
 import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
-import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
 
 /**
  * NM-最短路径图，(N <= M)，带明确定义起点终点的严格单向图，对每个顶点存在至少一条通向终点的路径。
@@ -17,16 +18,33 @@ import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
  * @see README.md 中有关N和M的说明
  */
 public final class NMShortPathGraph<A> implements GraphStrictOnewayWithStartEndVerteies<A, NMShortPathVertex<A>> {
-    private static final int END_VERTEX_INDEX = 0xFFFFFFFF;
+    static final int END_VERTEX_INDEX = 0xFFFFFFFF;
     private final NMShortPathVertex<A> mStartVertex;
     private final NMShortPathVertex<A> mEndVertex;
     private final int mNShortPathCount;//N值
     private final int mMVertexPathCount;//M值
     private int mVertexIndexGenerator = 0;
 
-    //各顶点包括startVertex但不包括endVertex，如果一个顶点暂时没有后向顶点，就在其index上设置为null
-    private ArrayList<NMShortPathVertex<A>> mVertexesWithPostVertexes = new ArrayList<NMShortPathVertex<A>>();
-    boolean mReady;
+    //各顶点包括startVertex但不包括endVertex，下标即顶点下标。分支图只记录自身的顶点，位置为 index - mVertexIndexBase
+    private ArrayList<NMShortPathVertex<A>> mVertexes = new ArrayList<NMShortPathVertex<A>>();
+    //各顶点是否已经有后向顶点，按顶点下标(分支图也包括共享的前缀顶点)，以及还没有后向顶点的顶点数目，为0时即准备就绪
+    private BitSet mHasPostVertexes = new BitSet();
+    private int mMissingPostVertexCount;
+    //分支图：共享的前缀快照、自身顶点的下标起点
+    private final NMShortPathSnapshot<A> mSnapshot;
+    private final int mVertexIndexBase;
+    //各顶点第一条前向边的图边下标，按位置(终止顶点在最后)，最后多一个为边总数。延迟计算，结构改变时作废
+    private volatile int [] mEdgeIndexOffsets;
+    //按调用指定N和M求解时记忆的最大(N, M)的求解结果，结构改变时作废
+    private volatile SolveMemo<A> mSolveMemo;
+    //是否收缩线性链，见 contractLinearChains()
+    private volatile boolean mContractLinearChains;
+    //各顶点所在线性链的链首顶点下标，不在线性链上的为-1，结构改变时作废，需要时重新计算
+    private volatile int [] mLinearChainHeads;
+    //做过快照的顶点数目，下标小于它的本图顶点为各分支图共享，不能再从前向边推断新顶点所属的图
+    private volatile int mSnapshotVertexCount;
+    //边创建边求解的流水线，null表示没有。cancel() 可能在其他线程中调用并清除
+    private volatile NMShortPathPipeline<A> mPipeline;
 
     public NMShortPathGraph() {
         this( 1, 1 );
@@ -37,14 +55,40 @@ public final class NMShortPathGraph<A> implements GraphStrictOnewayWithStartEndV
     }
 
     public NMShortPathGraph(int aNShortPathCount, int aMVertexPathCount, A aStartAttachment, A aEndAttachment) {
-        if (aNShortPathCount <= 0 || aMVertexPathCount < aNShortPathCount) {//N > 0 && N <= M
-            throw new IllegalArgumentException( "N(" + aNShortPathCount + ") or M(" + aMVertexPathCount + ") not valid" );
-        }
+        NMShortPathGraph.checkNM( aNShortPathCount, aMVertexPathCount );
         this.mStartVertex = new NMShortPathVertex<A>( aStartAttachment, this, this.generateVertexIndex() );//startVertex永远是0号
         this.mEndVertex = new NMShortPathVertex<A>( aEndAttachment, this, NMShortPathGraph.END_VERTEX_INDEX );
         this.mNShortPathCount = aNShortPathCount;
         this.mMVertexPathCount = aMVertexPathCount;
-        this.mVertexesWithPostVertexes.add( null );//mStartVertex 对应的占位
+        this.mVertexes.add( this.mStartVertex );
+        this.mMissingPostVertexCount = 1;//mStartVertex 还没有后向顶点
+        this.mSnapshot = null;
+        this.mVertexIndexBase = 0;
+    }
+
+    /**
+     * 内部调用，从快照创建分支图：前缀的各顶点及其求解结果都直接共享，本图只有自身的终止顶点和之后添加的顶点
+     */
+    NMShortPathGraph(NMShortPathSnapshot<A> aSnapshot) {
+        this.mStartVertex = aSnapshot.mVertexes[ 0 ];
+        this.mEndVertex = new NMShortPathVertex<A>( aSnapshot.mEndAttachment, this, NMShortPathGraph.END_VERTEX_INDEX );
+        this.mNShortPathCount = aSnapshot.mNShortPathCount;
+        this.mMVertexPathCount = aSnapshot.mMVertexPathCount;
+        this.mSnapshot = aSnapshot;
+        this.mVertexIndexBase = aSnapshot.mVertexes.length;
+        this.mVertexIndexGenerator = this.mVertexIndexBase;
+        //前缀顶点在快照中已经有后向顶点的，在本分支图中也同样有；没有的则须在本分支图中连上后向顶点
+        this.mHasPostVertexes.set( 0, this.mVertexIndexBase );
+        for (int danglingIndex : aSnapshot.mDanglingIndexes) {
+            this.mHasPostVertexes.clear( danglingIndex );
+        }
+        this.mMissingPostVertexCount = aSnapshot.mDanglingIndexes.length;
+    }
+
+    static void checkNM(int aNShortPathCount, int aMVertexPathCount) {
+        if (aNShortPathCount <= 0 || aMVertexPathCount < aNShortPathCount) {//N > 0 && N <= M
+            throw new IllegalArgumentException( "N(" + aNShortPathCount + ") or M(" + aMVertexPathCount + ") not valid" );
+        }
     }
 
     @Override
@@ -57,12 +101,12 @@ public final class NMShortPathGraph<A> implements GraphStrictOnewayWithStartEndV
         return this.mEndVertex;
     }
 
-    //N值
+    //N值, 即 calculateNMShortPath() 等没有指定N值时的缺省N值
     public int getNShortPathCount() {
         return this.mNShortPathCount;
     }
 
-    //M值
+    //M值, 即 calculateNMShortPath() 等没有指定M值时的缺省M值
     public int getMVertexPathCount() {
         return this.mMVertexPathCount;
     }
@@ -73,7 +117,7 @@ public final class NMShortPathGraph<A> implements GraphStrictOnewayWithStartEndV
     }
 
     public void connectToEndVertex(NMShortPathVertex<A> aPreviousVertex, double aDistanceToEndVertex) {
-        if (aPreviousVertex.mOwnerGraph != this) {
+        if (!this.owns( aPreviousVertex )) {
             throw new IllegalArgumentException();
         }
         NMShortPathVertex<A> endVertex = this.mEndVertex;
@@ -90,264 +134,504 @@ public final class NMShortPathGraph<A> implements GraphStrictOnewayWithStartEndV
             endVertex.mPreviousEdges[ oldPreviousVertexCount ] = new NMShortPathEdge<A>( aPreviousVertex, aDistanceToEndVertex );
         }
         //此 aPreviousVertex 顶点此时有自己的前向顶点和后向顶点了
-        this.mVertexesWithPostVertexes.set( aPreviousVertex.mGraphVertexIndex, aPreviousVertex );
+        this.markHasPostVertex( aPreviousVertex );
+        this.mEdgeIndexOffsets = null;
+        this.mSolveMemo = null;
+        this.mLinearChainHeads = null;
     }
 
-    public boolean isReady() {
-        if (!this.mReady) {
-            //除了endVertex顶点外，所有其他顶点都存在至少一个后向顶点
-            this.mReady = this.mVertexesWithPostVertexes.stream().allMatch( (aNext) -> aNext != null );
+    /**
+     * 内部调用，一次性把多个顶点连接到终止顶点，避免逐个 connectToEndVertex 时反复拷贝终止顶点的前向边数组
+     * @param aPreviousEdges 终止顶点的各前向边
+     */
+    void connectAllToEndVertex(NMShortPathEdge<A> [] aPreviousEdges) {
+        for (NMShortPathEdge<A> previousEdge : aPreviousEdges) {
+            if (!this.owns( previousEdge.mPreviousVertex ) || previousEdge.mPreviousVertex == this.mEndVertex) {
+                throw new IllegalArgumentException();
+            }
         }
-        return this.mReady;
+        NMShortPathVertex<A> endVertex = this.mEndVertex;
+        if (endVertex.mPreviousEdges == null) {
+            endVertex.mPreviousEdges = aPreviousEdges;
+        }
+        else {
+            int oldPreviousVertexCount = endVertex.mPreviousEdges.length;
+            endVertex.mPreviousEdges = Arrays.copyOf( endVertex.mPreviousEdges, oldPreviousVertexCount + aPreviousEdges.length );
+            System.arraycopy( aPreviousEdges, 0, endVertex.mPreviousEdges, oldPreviousVertexCount, aPreviousEdges.length );
+        }
+        for (NMShortPathEdge<A> previousEdge : aPreviousEdges) {
+            this.markHasPostVertex( previousEdge.mPreviousVertex );
+        }
+        this.mEdgeIndexOffsets = null;
+        this.mSolveMemo = null;
+        this.mLinearChainHeads = null;
     }
 
-    public NMShortPath<A> calculateNMShortPath() {
-        if (!this.isReady()) {
-            //图模型还未准备就绪：存在没有后向顶点的顶点
-            throw new IllegalStateException( "The NShortPathGraph Model Is NOT Ready: There Are Invalid Vertex Which Has No Post Vertexes" );
+    /**
+     * 内部调用，并发构建完成后一次性安装所有顶点，各顶点的前向边都已经设置好了
+     * @param aVertexes 下标即顶点下标，0号是起始顶点本身
+     * @param aEndVertexPreviousEdges 终止顶点的各前向边
+     */
+    void installVertexes(NMShortPathVertex<A> [] aVertexes, NMShortPathEdge<A> [] aEndVertexPreviousEdges) {
+        if (this.mSnapshot != null || this.mPipeline != null || this.mVertexIndexGenerator != 1 || aVertexes[ 0 ] != this.mStartVertex) {
+            throw new IllegalStateException( "Vertexes Can Only Be Installed Into A New Created Graph" );
         }
+        this.mVertexIndexGenerator = aVertexes.length;
+        this.mVertexes = new ArrayList<NMShortPathVertex<A>>( Arrays.asList( aVertexes ) );
+        this.mHasPostVertexes.set( 0, aVertexes.length );//并发构建时已经检查过了,每个顶点都有后向顶点
+        this.mMissingPostVertexCount = 0;
+        this.connectAllToEndVertex( aEndVertexPreviousEdges );
+    }
 
-        ArrayList<NMShortPathVertex<A>> vertexes = this.mVertexesWithPostVertexes;
-        int nshortPathCount = this.mNShortPathCount;
-        int mvertexPathCount = this.mMVertexPathCount;
+    public boolean isReady() {
+        //除了endVertex顶点外，所有其他顶点都存在至少一个后向顶点
+        return this.mMissingPostVertexCount == 0;
+    }
 
-        //每个顶点都有从起始顶点到它的最多N条(可能小于N) ShortPath,由下标对应，如0对应起始顶点本身的
-        ArrayList<ShortPath<A> []> shortPathsOfVertexes = new ArrayList<ShortPath<A> []>( vertexes.size() + 1 );
-        @SuppressWarnings("unchecked")
-        ShortPath<A> [] startPathArray = new ShortPath [ 1 ];
+    public NMShortPath<A> calculateNMShortPath() {
+        this.ensureReady();
+        if (this.mSnapshot != null) {
+            //分支图只需要求解自身的顶点，前缀直接用快照中的求解结果
+            return new NMShortPathSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, null ).solve( this, this.mSnapshot );
+        }
+        return new NMShortPathSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, null ).solve( this );
+    }
+
+    /**
+     * 对本图当前的所有顶点(不包括终止顶点)连同其求解结果做一个快照，之后可以从快照 {@link NMShortPathSnapshot#fork()} 出多个分支图，
+     * 各自在这个共享的前缀之后添加不同的顶点，求解时只需要求解分支自身的部分。本图不需要准备就绪，之后本图可以继续添加顶点，不影响快照。
+     * 分支图本身也可以再做快照。快照之后前缀顶点为本图和各分支图共享，以前缀顶点为前向顶点的新顶点(无论加入本图还是分支图)都必须用
+     * {@link NMShortPathVertex#NMShortPathVertex(NMShortPathGraph, Object, NMShortPathEdge...)} 明确指定所属的图，前缀顶点连接到终止顶点也必须用图的
+     * {@link #connectToEndVertex(NMShortPathVertex, double)}
+     * @param aEndAttachment 各分支图的终止顶点绑定的数据
+     * @return 快照
+     */
+    public NMShortPathSnapshot<A> snapshot(A aEndAttachment) {
+        int vertexCount = this.mVertexIndexGenerator;
         @SuppressWarnings("unchecked")
-        VertexPath<A> [] startVertexPathArray = new VertexPath [] {
-            new VertexPath<A>( this.mStartVertex )
-        };
-        startPathArray[ 0 ] = new ShortPath<A>( 0.0, startVertexPathArray );//起始顶点特殊处理下其前向累计段，累计距离初始成0
-        shortPathsOfVertexes.add( startPathArray );
-
-        ArrayList<ShortPath<A>> cacheShortPathArray = new ArrayList<ShortPath<A>>( nshortPathCount );//cache use: 当前顶点的至多N条ShortPath
-        ArrayList<VertexPath<A>> cacheVertexPathArray = new ArrayList<VertexPath<A>>( nshortPathCount );
-        ArrayList<PreviousEdgeShortPathGroup<A>> cachePreviousEdgeShortPathGroupList = new ArrayList<PreviousEdgeShortPathGroup<A>>( nshortPathCount );//cache use: 当前顶点前向边最短路径组
-        ArrayList<PreviousEdgeShortPathGroup<A>> cacheInsertGroupList = new ArrayList<PreviousEdgeShortPathGroup<A>>( nshortPathCount );//cache use: 当前顶点前向边最短路径组,用于下一轮排序插入
-        GroupCache<A> groupCache = new GroupCache<A>( nshortPathCount );//小优化：避免大量 PreviousEdgeShortPathGroup 临时用途的垃圾产生，重复利用实例
-
-        for (int i = 1, ilast = vertexes.size(); i <= ilast; ++i) {
-            NMShortPathVertex<A> currentVertex = i < ilast ? vertexes.get( i ) : this.mEndVertex;//当前顶点,i==ilast表示endVertex
-            NMShortPathEdge<A> [] previousEdgeArray = currentVertex.mPreviousEdges;
-            int previousEdgeCount = previousEdgeArray.length;
-
-            if (previousEdgeCount == 1) {
-                //只有一条前向边，直接累加,此前向顶点已经排序过了，一步直接合并即可，而且必定同时满足N的限制和M的限制
-                NMShortPathVertex<A> previousVertex = previousEdgeArray[ 0 ].mPreviousVertex;//此前向边对应的前向顶点
-                double distanceBetweenVertexes = previousEdgeArray[ 0 ].mDistanceBetweenVertexes;//两顶点相邻距离
-                ShortPath<A> [] previousShortPathArray = shortPathsOfVertexes.get( previousVertex.mGraphVertexIndex );
-
-                @SuppressWarnings("unchecked")
-                ShortPath<A> [] currentShortPaths = new ShortPath [ previousShortPathArray.length ];
-                for (int j = 0, jsize = previousShortPathArray.length; j < jsize; ++j) {
-                    ShortPath<A> previousShortPath = previousShortPathArray[ j ];
-                    VertexPath<A> [] previousVertexPathArray = previousShortPath.mSameTotalDistanceVertexPathArray;
-                    int vertextPathCount = previousVertexPathArray.length;
-                    double thisTotalDistance = previousShortPath.mTotalDistance + distanceBetweenVertexes;
-                    @SuppressWarnings("unchecked")
-                    VertexPath<A> [] currentVertexSameTotalDistanceVertextPathArray = new VertexPath [ vertextPathCount ];
-                    for (int k = 0; k < vertextPathCount; ++k) {
-                        currentVertexSameTotalDistanceVertextPathArray[ k ] = new VertexPath<A>( currentVertex, previousVertexPathArray[ k ], distanceBetweenVertexes );
-                    }
-                    ShortPath<A> thisShortPath = new ShortPath<A>( thisTotalDistance, currentVertexSameTotalDistanceVertextPathArray );
-                    currentShortPaths[ j ] = thisShortPath;
-                }
-                shortPathsOfVertexes.add( i, currentShortPaths );
-            }
-            else {
-                cacheShortPathArray.clear();//clear ready for currentVertex use
-                cachePreviousEdgeShortPathGroupList.clear();//clear ready for currentVertex use
-                groupCache.reset();//reset ready for currentVertex use
-                ArrayList<ShortPath<A>> currentShortPathArray = cacheShortPathArray;
-                List<PreviousEdgeShortPathGroup<A>> previousEdgeShortPathGroupList = cachePreviousEdgeShortPathGroupList;
-
-                //核心算法：对当前顶点的各前向边进行分组成<前向边的最短路径组>，每个前向顶点之前已经计算好并排序好了其自身的NM-最短距离，
-                //对当前顶点只需要从各个前向组中依次取出排好序的第一个来比较即可
-                for (int j = 0; j < previousEdgeCount; ++j) {
-                    NMShortPathEdge<A> previousEdge = previousEdgeArray[ j ];
-                    NMShortPathVertex<A> previousVertex = previousEdge.mPreviousVertex;//此前向边对应的前向顶点
-                    ShortPath<A> [] previousShortPathArray = shortPathsOfVertexes.get( previousVertex.mGraphVertexIndex );
-                    previousEdgeShortPathGroupList.add( groupCache.fromCache( previousEdge, previousShortPathArray ) );
-                }
-                //初始组数目同前向边数目相同
-                int groupCount = previousEdgeCount;
-                //多个不同的前向顶点，虽然每个前向顶点自身已经排过序了，但这些前向顶点到本顶点的累积最短距离还需要再次排序看哪些更短距离
-                previousEdgeShortPathGroupList.sort( NMShortPathGraph.mGroupComparator );
-                //每个顶点最多N条ShortPath并且最多M条不同顶点路径组合数目(下面的循环分别用n和m表示N的迭代限制和M的迭代限制,注意应该是 m < mlast 而非 m <= mlast 条件,没有++m)
-                for (int n = 0, nlast = nshortPathCount - 1, m = 0, mlast = mvertexPathCount - 1; n <= nlast && m < mlast && groupCount > 0; ++n) {
-                    //每一轮直接从0开始依次找前面若干个相同的 minDistance 合并即可: previousEdgeShortPathGroupList已经排序好了的
-                    double minDistance = previousEdgeShortPathGroupList.get( 0 ).mCurrentTotalDistance;
-                    cacheVertexPathArray.clear();//clear ready for current ShortPath use
-                    ArrayList<VertexPath<A>> thisVertexPathArray = cacheVertexPathArray;
-                    int minDistanceGroupCount = groupCount;
-                    cacheInsertGroupList.clear();//clear ready for currentVertex use
-                    ArrayList<PreviousEdgeShortPathGroup<A>> currentInsertGroupList = cacheInsertGroupList;
-                    for (int k = 0; k < groupCount; ++k) {
-                        //从0开始合并直到第一个不是 minDistance 最短距离的
-                        PreviousEdgeShortPathGroup<A> nextMinGroup = previousEdgeShortPathGroupList.get( k );
-                        if (nextMinGroup.mCurrentTotalDistance == minDistance) {
-                            //匹配 minDistance 了的嘛，合并之
-                            double distanceBetweenVertexes = nextMinGroup.mPreviousEdge.mDistanceBetweenVertexes;//两相邻顶点距离
-                            ShortPath<A> nextFirst = nextMinGroup.getCurrentFirstShortPath();
-                            VertexPath<A> [] nextFirstVertexPathArray = nextFirst.mSameTotalDistanceVertexPathArray;
-                            for (int l = 0, lsize = nextFirstVertexPathArray.length; l < lsize && m <= mlast; ++l, ++m) {
-                                thisVertexPathArray.add( new VertexPath<A>( currentVertex, nextFirstVertexPathArray[ l ], distanceBetweenVertexes ) );
-                            }
-                            if (nextMinGroup.changeToNextCurrentFirstShortPath()) {//游标下移为下一轮的第一个ShortPath准备
-                                //说明还有其他ShortPath,先记录下来,后面用于排序插入
-                                currentInsertGroupList.add( nextMinGroup );
-                            }
-                            else {
-                                //说明此group所有ShortPath都是NM-最短路径的前段了，消耗完毕了，移除之
-                            }
-                        }
-                        else {
-                            //前面 minDistanceGroupCount 个组到本顶点都是最短距离为 minDistance 的N最短路径之一
-                            minDistanceGroupCount = k;
-                            break;
-                        }
-                    }
-                    @SuppressWarnings("unchecked")
-                    VertexPath<A> [] thisVertexPaths = thisVertexPathArray.toArray( new VertexPath [ thisVertexPathArray.size() ] );
-                    ShortPath<A> thisShortPath = new ShortPath<A>( minDistance, thisVertexPaths );
-                    //记录下当前顶点的这个ShortPath
-                    currentShortPathArray.add( thisShortPath );
-                    if (n < nlast && m < mlast) {//小优化: 如果 n==nlast 表示已经达到N条最短路径了，如果 m == mlast 表示已经达到M条不同顶点路径组合数目了，那么最后剩余的部分也没有必要继续排序归并了
-                        //关键点1：(Zero-Copy技术,ArrayList::subList代替 remove,彻底消除 remove 的拷贝过程)
-                        //关键点2: (这 minDistanceGroupCount 后面遗留的那些 group 已经是排好序的：核心在于要充分利用这个已经排序好的结果嘛)
-                        previousEdgeShortPathGroupList = previousEdgeShortPathGroupList.subList( minDistanceGroupCount, groupCount );
-                        int needInsertSize = currentInsertGroupList.size();
-                        if (needInsertSize > 0) {
-                            //关键点3：只把之前记录的没有消耗完的 currentInsertGroupList 排下序：它们已经的状态已经变迁了，需要单独排序比较
-                            currentInsertGroupList.sort( NMShortPathGraph.mGroupComparator );
-                            //关键点4：最后按排序结果合并即可：扫描一遍依次插入到排序位置即可，本质就是两个已经排好序的集合的归并：算法简单直接做即可
-                            for (int k = 0, nextInsertPosition = 0, remainingSize = groupCount - minDistanceGroupCount; k < needInsertSize; ++k) {
-                                PreviousEdgeShortPathGroup<A> nextInsertGroup = currentInsertGroupList.get( k );
-                                double currentInsertFirstTotalDistance = nextInsertGroup.mCurrentTotalDistance;
-                                for (; nextInsertPosition < remainingSize; ++nextInsertPosition) {
-                                    PreviousEdgeShortPathGroup<A> nextRemainingGroup = previousEdgeShortPathGroupList.get( nextInsertPosition );
-                                    if (nextRemainingGroup.mCurrentTotalDistance >= currentInsertFirstTotalDistance) {
-                                        //找到插入位置了。假如果一直找不到，就说明 nextInsertGroup 就应该排序在最后，因此在最末尾插入即可
-                                        break;
-                                    }
-                                }
-                                //在 nextInsertPosition 位置上插入：可能在中间插入，也可能在末尾插入
-                                previousEdgeShortPathGroupList.add( nextInsertPosition, nextInsertGroup );
-                                ++remainingSize;
-                                ++nextInsertPosition;
-                            }
-                        }
-                        //到此 previousEdgeShortPathGroupList 又变成排序好的了，下一轮即从0开始依次找前面若干个相同的 minDistance 即可
-                        //可能前面有移除的，因此得重新看下其当前group个数还有剩余否
-                        groupCount = previousEdgeShortPathGroupList.size();
-                    }
+        NMShortPathVertex<A> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        vertexes[ 0 ] = this.mStartVertex;
+        for (int i = 1; i < vertexCount; ++i) {
+            vertexes[ i ] = this.getVertexAt( i );
+        }
+        ShortPath<A> [][] shortPathsOfVertexes = new NMShortPathSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, null ).solvePrefix( this, vertexes );
+        this.mSnapshotVertexCount = Math.max( this.mSnapshotVertexCount, vertexCount );
+        return new NMShortPathSnapshot<A>( this.mNShortPathCount, this.mMVertexPathCount, aEndAttachment, vertexes, shortPathsOfVertexes );
+    }
+
+    /**
+     * 顶点是否属于本图：本图自身的顶点，或者分支图共享的前缀顶点
+     */
+    public boolean owns(NMShortPathVertex<A> aVertex) {
+        return aVertex.mOwnerGraph == this || (this.mSnapshot != null && this.mSnapshot.contains( aVertex ));
+    }
+
+    /**
+     * 按调用指定的N和M求解，同一个图可以同时服务于对N和M有不同要求的多个调用者，不需要为每种N和M各自创建一个图。
+     * 图上记忆着至今请求过的最大的(N, M)的求解结果，N和M都不超过它的请求在语义允许时直接截取其前n个ShortPath即可：
+     * m同所记忆的M相同；或者所记忆的求解过程中没有任何顶点受到M的限制，并且m不小于各顶点VertexPath数目的最大值。
+     * 不能截取的请求单独求解，超过所记忆的N或M的请求则按两者中的较大者重新求解并记忆之。
+     * 线程安全(图结构不再改变时)：多个线程可以同时调用，共享同一个记忆结果，记忆结果被替换前并发的请求可能重复求解
+     * @param aNShortPathCount 本次求解的N值
+     * @param aMVertexPathCount 本次求解的M值
+     * @return NM-最短路径，可能同其他调用者共享，不能修改
+     */
+    public NMShortPath<A> calculateNMShortPath(int aNShortPathCount, int aMVertexPathCount) {
+        NMShortPathGraph.checkNM( aNShortPathCount, aMVertexPathCount );
+        this.ensureReady();
+        SolveMemo<A> memo = this.mSolveMemo;
+        if (memo == null || aNShortPathCount > memo.mNShortPathCount || aMVertexPathCount > memo.mMVertexPathCount) {
+            int memoNShortPathCount = memo == null ? aNShortPathCount : Math.max( aNShortPathCount, memo.mNShortPathCount );
+            int memoMVertexPathCount = memo == null ? aMVertexPathCount : Math.max( aMVertexPathCount, memo.mMVertexPathCount );
+            NMShortPathSolver<A> solver = new NMShortPathSolver<A>( memoNShortPathCount, memoMVertexPathCount, null );
+            memo = new SolveMemo<A>( memoNShortPathCount, memoMVertexPathCount, solver.solve( this ), solver.isVertexPathLimited(), solver.getPeakVertexPathCount() );
+            synchronized (this) {
+                SolveMemo<A> installed = this.mSolveMemo;
+                if (installed == null || (installed.mNShortPathCount <= memoNShortPathCount && installed.mMVertexPathCount <= memoMVertexPathCount)) {
+                    this.mSolveMemo = memo;
                 }
-                @SuppressWarnings("unchecked")
-                ShortPath<A> [] currentShortPaths = currentShortPathArray.toArray( new ShortPath [ currentShortPathArray.size() ] );
-                shortPathsOfVertexes.add( i, currentShortPaths );
             }
         }
-        //最终结果的NMShortPath 就是终止顶点的至多N条ShortPath并且至多M条VertexPath
-        ShortPath<A> [] endVertexShortPathArray = shortPathsOfVertexes.get( shortPathsOfVertexes.size() - 1 );
-        NMShortPath<A> finalNShortPath = new NMShortPath<A>( endVertexShortPathArray );
-        return finalNShortPath;
+        NMShortPath<A> truncated = memo.truncate( aNShortPathCount, aMVertexPathCount );
+        return truncated != null ? truncated : new NMShortPathSolver<A>( aNShortPathCount, aMVertexPathCount, null ).solve( this );
     }
 
-    int generateVertexIndex() {
-        return this.mVertexIndexGenerator++;
+    /**
+     * 开始边创建边求解：此后创建的每个顶点立即交给流水线的求解线程求解，创建完毕后调用 {@link NMShortPathPipeline#finish()} 即得到结果，
+     * 只剩终止顶点需要求解。已经创建了的顶点也会先交给求解线程。分支图不支持流水求解。
+     * 流水线有自己的求解线程，之后必须调用 {@link NMShortPathPipeline#finish()} 或 {@link NMShortPathPipeline#cancel()} 之一，否则求解线程一直等待新顶点而不会结束
+     * @param aQueueCapacity 已创建还未求解的顶点数目上限，超过时创建顶点的线程阻塞等待
+     * @return 流水线
+     * @throws IllegalStateException 分支图，或者已经有流水线了
+     * @see NMShortPathPipeline
+     */
+    public NMShortPathPipeline<A> startPipelinedSolve(int aQueueCapacity) {
+        if (this.mSnapshot != null || this.mPipeline != null) {
+            throw new IllegalStateException( "Pipelined Solve Not Supported For Fork Graph Or Already Started" );
+        }
+        NMShortPathPipeline<A> pipeline = new NMShortPathPipeline<A>( this, aQueueCapacity );
+        for (int i = 1, ilast = this.mVertexIndexGenerator; i < ilast; ++i) {
+            pipeline.offer( this.getVertexAt( i ) );
+        }
+        this.mPipeline = pipeline;
+        return pipeline;
     }
 
     /**
-     * 内部调用,从 NMShortPathVertex 构造函数而来
-     * @param aNewVertex 刚创建的顶点
+     * 内部调用，流水线结束时与本图脱离
      */
-    void addNewCreatedVertex(NMShortPathVertex<A> aNewVertex) {
-        ArrayList<NMShortPathVertex<A>> vertexes = this.mVertexesWithPostVertexes;
-        //此新创建的顶点尚未有 "to" 顶点，还未成为完备顶点，因此在其所在位置设置null占位
-        vertexes.add( aNewVertex.mGraphVertexIndex, null );
-        for (NMShortPathEdge<A> previousEdge : aNewVertex.mPreviousEdges) {
-            //此 previousVertex 此刻已经有自己的 "from" 顶点和自己的 "to" 顶点了，即使不再连接到其他顶点也已经完备
-            vertexes.set( previousEdge.mPreviousVertex.mGraphVertexIndex, previousEdge.mPreviousVertex );
+    void detachPipeline(NMShortPathPipeline<A> aPipeline) {
+        if (this.mPipeline == aPipeline) {
+            this.mPipeline = null;
+        }
+    }
+
+    /**
+     * 束剪枝近似求解，每个顶点的归并代价只同束宽度W有关，不再受扇入爆炸和相同距离组合爆炸的影响。
+     * 求解过程中实际发生了剪枝的话，结果的 {@link NMShortPath#isApproximate()} 为true
+     * @param aBeam 束剪枝参数
+     * @return 近似的NM-最短路径
+     * @see NMShortPathBeam
+     */
+    public NMShortPath<A> calculateNMShortPath(NMShortPathBeam aBeam) {
+        if (aBeam == null) {
+            throw new IllegalArgumentException( "Beam can not be null" );
+        }
+        this.ensureReady();
+        return new NMShortPathSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, aBeam ).solve( this );
+    }
+
+    /**
+     * 按准入策略求解：先估算求解代价，在限额之内的正常求解，超出的按策略拒绝、压低N和M或者束剪枝近似求解
+     * @param aPolicy 准入策略
+     * @return NM-最短路径
+     * @throws IllegalStateException 策略拒绝求解
+     * @see NMShortPathAdmissionPolicy
+     */
+    public NMShortPath<A> calculateNMShortPath(NMShortPathAdmissionPolicy aPolicy) {
+        if (aPolicy == null) {
+            throw new IllegalArgumentException( "AdmissionPolicy can not be null" );
         }
-        this.mReady = false;
+        return aPolicy.calculate( this );
+    }
+
+    /**
+     * 按本图的N和M估算求解代价，见 {@link #estimate(int, int)}
+     */
+    public NMShortPathEstimate estimate() {
+        return this.estimate( this.mNShortPathCount, this.mMVertexPathCount );
     }
 
-    //<前向边的最短路径组>
-    private static final class PreviousEdgeShortPathGroup<A> {
-        //前向边
-        NMShortPathEdge<A> mPreviousEdge;
+    /**
+     * 求解前估算求解代价的上界，代价 O(V+E)，不进行任何求解。图必须已经准备就绪
+     * @param aNShortPathCount 估算用的N值
+     * @param aMVertexPathCount 估算用的M值
+     * @return 估算结果
+     */
+    public NMShortPathEstimate estimate(int aNShortPathCount, int aMVertexPathCount) {
+        NMShortPathGraph.checkNM( aNShortPathCount, aMVertexPathCount );
+        this.ensureReady();
+        return NMShortPathEstimate.estimate( this, aNShortPathCount, aMVertexPathCount );
+    }
 
-        //已经按照最短路径排好序的ShortPath
-        ShortPath<A> [] mPreviousShortPathArray;
+    /**
+     * 限定内存预算的精确求解，用于各顶点的求解结果无法全部驻留内存的超大规模的图：各顶点的求解结果以紧凑的原始数组表示，
+     * 驻留内存的总字节数超过预算时，把最久未访问的写入临时溢出文件，需要时再读回来，求解完毕即删除溢出文件。
+     * 内存足够时同 {@link #calculateNMShortPath()} 的结果完全一致，只是不足时变慢而不是 OutOfMemoryError
+     * @param aMemoryBudgetBytes 各顶点求解结果驻留内存的字节数上限，不包括图本身
+     * @param aSpillDirectory 溢出文件所在目录，null表示系统临时目录
+     * @return NM-最短路径
+     * @throws java.io.UncheckedIOException 读写溢出文件出错
+     */
+    public NMShortPath<A> calculateNMShortPath(long aMemoryBudgetBytes, Path aSpillDirectory) {
+        if (aMemoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException( "MemoryBudgetBytes(" + aMemoryBudgetBytes + ") not valid" );
+        }
+        this.ensureReady();
+        if (this.mNShortPathCount == 1 && this.mMVertexPathCount == 1) {
+            //N==M==1 本身就只需要两个原始数组,不需要溢出
+            return NMShortPathSolver.solveSingleShortPath( this );
+        }
+        return new NMShortPathSpillSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, aMemoryBudgetBytes, aSpillDirectory ).solve( this );
+    }
 
-        //此前向边最短路径组的当前第一个最短路径到本"this"顶点的累积距离
-        double mCurrentTotalDistance;
+    /**
+     * 子图查询：在已经准备就绪的图上求解任意两顶点之间的NM-最短路径，不需要重新创建图。
+     * 只有既能从 aFromVertex 到达、又能到达 aToVertex 的顶点参与求解，它们的下标必定在两者之间(顶点下标就是拓扑顺序)，
+     * 因此求解代价只同这两个顶点之间的下标跨度成正比。所得各VertexPath都是从 aFromVertex 开始到 aToVertex 结束
+     * @param aFromVertex 查询的起点，可以是起始顶点，不能是终止顶点
+     * @param aToVertex 查询的终点，可以是终止顶点，不能是起始顶点
+     * @param aNShortPathCount 本次查询的N值
+     * @param aMVertexPathCount 本次查询的M值
+     * @return NM-最短路径
+     * @throws IllegalArgumentException 顶点不属于本图、顺序不对或者 aToVertex 不能从 aFromVertex 到达
+     */
+    public NMShortPath<A> calculateNMShortPath(NMShortPathVertex<A> aFromVertex, NMShortPathVertex<A> aToVertex, int aNShortPathCount, int aMVertexPathCount) {
+        NMShortPathGraph.checkNM( aNShortPathCount, aMVertexPathCount );
+        if (!this.owns( aFromVertex ) || !this.owns( aToVertex ) || aFromVertex == this.mEndVertex || aToVertex == this.mStartVertex || (aToVertex != this.mEndVertex && aFromVertex.mGraphVertexIndex >= aToVertex.mGraphVertexIndex)) {
+            throw new IllegalArgumentException( "FromVertex(" + aFromVertex.mGraphVertexIndex + ") or ToVertex(" + aToVertex.mGraphVertexIndex + ") not valid" );
+        }
+        this.ensureReady();
+        NMShortPath<A> result = new NMShortPathSolver<A>( aNShortPathCount, aMVertexPathCount, null ).solve( this, aFromVertex, aToVertex );
+        if (result == null) {
+            throw new IllegalArgumentException( "ToVertex(" + aToVertex.mGraphVertexIndex + ") Is Not Reachable From FromVertex(" + aFromVertex.mGraphVertexIndex + ")" );
+        }
+        return result;
+    }
 
-        //mPreviousShortPathArray 对应的下标
-        int mCurrentFirstPreviousShortPathIndex;
+    /**
+     * 带约束的求解：禁用若干条边、禁用若干个顶点、要求必须经过若干个顶点，约束在归并过程中直接生效，图本身不做任何改变，
+     * 因此多个不同约束的查询可以共享同一个已经准备就绪的图并发进行，不需要重新创建或者拷贝图。<br/>
+     * 必经顶点按下标(拓扑顺序)依次经过，求解时跳过某个必经顶点的边(前向顶点下标小于它而本顶点下标大于它)都视作禁用
+     * @param aDisabledEdges 禁用的边，按 {@link #getEdgeIndex(NMShortPathVertex, NMShortPathEdge)} 的图边下标置位，null表示没有
+     * @param aDisabledVertexes 禁用的顶点，按顶点下标 {@link NMShortPathVertex#getGraphVertexIndex()} 置位，不能包括起始顶点，null表示没有
+     * @param aRequiredVertexes 必须经过的顶点，不需要有序，null表示没有
+     * @return 满足约束的NM-最短路径
+     * @throws IllegalArgumentException 顶点不属于本图、必经顶点被禁用了或者没有满足约束的路径
+     */
+    public NMShortPath<A> calculateNMShortPath(BitSet aDisabledEdges, BitSet aDisabledVertexes, Collection<NMShortPathVertex<A>> aRequiredVertexes) {
+        this.ensureReady();
+        if (aDisabledVertexes != null && aDisabledVertexes.get( 0 )) {
+            throw new IllegalArgumentException( "The Start Vertex Can Not Be Disabled" );
+        }
+        int [] requiredIndexes = aRequiredVertexes == null ? new int [ 0 ] : aRequiredVertexes.stream().filter( (aRequired) -> {
+            if (!this.owns( aRequired ) || (aDisabledVertexes != null && aRequired.mGraphVertexIndex >= 0 && aDisabledVertexes.get( aRequired.mGraphVertexIndex ))) {
+                throw new IllegalArgumentException( "Required Vertex(" + aRequired.mGraphVertexIndex + ") not valid" );
+            }
+            return aRequired != this.mStartVertex && aRequired != this.mEndVertex;//起始和终止顶点本来就必经
+        } ).mapToInt( (aRequired) -> aRequired.mGraphVertexIndex ).sorted().distinct().toArray();
+        NMShortPath<A> result = new NMShortPathSolver<A>( this.mNShortPathCount, this.mMVertexPathCount, null ).solve( this, this.edgeIndexOffsets(), aDisabledEdges, aDisabledVertexes, requiredIndexes );
+        if (result == null) {
+            throw new IllegalArgumentException( "No Path Satisfies The Constraints" );
+        }
+        return result;
+    }
 
-        //重置：重复临时实例利用
-        PreviousEdgeShortPathGroup<A> reset(NMShortPathEdge<A> aPreviousEdge, ShortPath<A> [] aPreviousShortPathArray) {
-            this.mPreviousEdge = aPreviousEdge;
-            this.mPreviousShortPathArray = aPreviousShortPathArray;
-            this.mCurrentTotalDistance = aPreviousShortPathArray[ 0 ].mTotalDistance + aPreviousEdge.mDistanceBetweenVertexes;
-            this.mCurrentFirstPreviousShortPathIndex = 0;
-            return this;
+    /**
+     * 多权重批量求解：同一个图结构(如同一个词图)用K个不同的模型打分，各边的K个权重按图边下标对齐成一个K列的权重矩阵，
+     * 一次调用即得出K个结果。N==M==1 时拓扑遍历、前向边及前向顶点的读取只进行一遍，由K列权重共享；
+     * 其他N和M时只省去了重复的就绪检查和边下标计算，各顶点仍按K次独立的归并求解，代价同分别求解K次相当。
+     * 边本身的距离不参与求解，只决定创建时前向边的顺序，因此相同距离的各VertexPath的顺序同单独求解时可能不同
+     * @param aEdgeWeights 按行存放的权重矩阵，第e条边(见 {@link #getEdgeIndex(NMShortPathVertex, NMShortPathEdge)})的第k个权重为 aEdgeWeights[e*K+k]，长度必须为 getEdgeCount()*K
+     * @param aWeightProfileCount K
+     * @return K个NM-最短路径，第k个对应权重矩阵的第k列
+     */
+    public NMShortPath<A> [] calculateNMShortPath(double [] aEdgeWeights, int aWeightProfileCount) {
+        int [] edgeIndexOffsets = this.edgeIndexOffsets();
+        if (aWeightProfileCount <= 0 || aEdgeWeights.length != (long) edgeIndexOffsets[ edgeIndexOffsets.length - 1 ] * aWeightProfileCount) {
+            throw new IllegalArgumentException( "WeightProfileCount(" + aWeightProfileCount + ") or EdgeWeights Length(" + aEdgeWeights.length + ") not valid" );
         }
+        return NMShortPathSolver.solveWeightProfiles( this, this.mNShortPathCount, this.mMVertexPathCount, edgeIndexOffsets, aEdgeWeights, aWeightProfileCount );
+    }
 
-        //此前向边最短路径组的当前第一个最短路径
-        ShortPath<A> getCurrentFirstShortPath() {
-            return this.mPreviousShortPathArray[ this.mCurrentFirstPreviousShortPathIndex ];
+    /**
+     * 线性链收缩：只有一条前向边并且只有一个后向顶点(包括终止顶点)的顶点称为线性链上的顶点，词图以及很多DAG中都有很长的这种链。
+     * 链上的每个顶点只是把其前向顶点的ShortPath原样累加一段距离，却要为每条VertexPath各自创建新的对象。
+     * 调用本方法后，求解时直接跳过链上的顶点，链末端的后向顶点直接从链首顶点累加(仍按各边依次累加，结果同不收缩时完全一致)，
+     * 被跳过的顶点只在遍历VertexPath时才展开。只作用于 {@link #calculateNMShortPath()}、{@link #calculateNMShortPath(int, int)} 这样的普通精确求解，
+     * 束剪枝、约束、多权重、子图查询、限定内存以及分支图的求解都不收缩。之后图结构改变的话，下次求解时自动重新收缩。图必须已经准备就绪
+     * @return 被收缩(求解时跳过)的顶点数目
+     */
+    public int contractLinearChains() {
+        this.mContractLinearChains = true;
+        int contractedCount = 0;
+        for (int chainHead : this.linearChainHeads()) {
+            contractedCount += chainHead >= 0 ? 1 : 0;
         }
+        return contractedCount;
+    }
 
-        public boolean changeToNextCurrentFirstShortPath() {
-            //移动到下一个作为本Group的当前最短累积距离
-            if (++this.mCurrentFirstPreviousShortPathIndex == this.mPreviousShortPathArray.length) {
-                return false;//完毕,本group所有ShortPath 都是当前"this"顶点的前NMShortPath路径段
+    /**
+     * 内部调用，没有调用过 contractLinearChains() 的话返回null，否则返回按顶点下标的链首顶点下标，不在线性链上的为-1
+     */
+    int [] linearChainHeads() {
+        if (!this.mContractLinearChains) {
+            return null;
+        }
+        int [] linearChainHeads = this.mLinearChainHeads;
+        if (linearChainHeads == null) {
+            this.ensureReady();
+            int vertexCount = this.mVertexIndexGenerator;
+            int [] postVertexCounts = new int [ vertexCount ];
+            for (int i = 1; i <= vertexCount; ++i) {
+                NMShortPathVertex<A> currentVertex = i < vertexCount ? this.getVertexAt( i ) : this.mEndVertex;
+                for (NMShortPathEdge<A> previousEdge : currentVertex.mPreviousEdges) {
+                    ++postVertexCounts[ previousEdge.mPreviousVertex.mGraphVertexIndex ];
+                }
             }
-            else {
-                //游标下移后把到"this"顶点的最短距离累加起来以便下一轮进行比较
-                this.mCurrentTotalDistance = this.mPreviousShortPathArray[ this.mCurrentFirstPreviousShortPathIndex ].mTotalDistance + this.mPreviousEdge.mDistanceBetweenVertexes;
-                return true;//continue
+            linearChainHeads = new int [ vertexCount ];
+            linearChainHeads[ 0 ] = -1;
+            for (int i = 1; i < vertexCount; ++i) {
+                NMShortPathEdge<A> [] previousEdges = this.getVertexAt( i ).mPreviousEdges;
+                if (previousEdges.length == 1 && postVertexCounts[ i ] == 1) {
+                    int previousIndex = previousEdges[ 0 ].mPreviousVertex.mGraphVertexIndex;
+                    linearChainHeads[ i ] = linearChainHeads[ previousIndex ] >= 0 ? linearChainHeads[ previousIndex ] : previousIndex;
+                }
+                else {
+                    linearChainHeads[ i ] = -1;
+                }
             }
+            this.mLinearChainHeads = linearChainHeads;//并发查询时重复计算也无妨,结果相同
         }
+        return linearChainHeads;
     }
 
-    //由于PreviousEdgeShortPathGroup实例本身就是临时用途的, 这些对象实例理所应当被重复利用, 避免每个顶点都临时创建大量的用完就丢的垃圾: 顶点越多,N越大那么垃圾数目就越大。
-    //测试表明当内存越接近使用极限,那么垃圾碎片的影响越大(可能GC消耗)，因此本优化还是有必要。当然，规模小的时候效果不明显
-    private static final class GroupCache<A> {
-        private ArrayList<PreviousEdgeShortPathGroup<A>> mCacheList;//当前空闲未用的
-        private ArrayList<PreviousEdgeShortPathGroup<A>> mUsedList;//当前正在用的
+    /**
+     * 本图边的总数，包括连接到终止顶点的边。图必须已经准备就绪
+     */
+    public int getEdgeCount() {
+        int [] edgeIndexOffsets = this.edgeIndexOffsets();
+        return edgeIndexOffsets[ edgeIndexOffsets.length - 1 ];
+    }
 
-        GroupCache(int aCacheInitialSize) {
-            this.mCacheList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aCacheInitialSize );
-            this.mUsedList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aCacheInitialSize );
+    /**
+     * 一条边在本图中的图边下标，用于边的掩码、权重矩阵等按边对齐的数据。各边先按其后向顶点的下标(终止顶点在最后)，
+     * 再按其在后向顶点前向边数组中的顺序(创建顶点时已经按距离排过序了)依次编号，从0开始。图必须已经准备就绪，图结构改变后下标也随之改变
+     * @param aVertex 边的后向顶点
+     * @param aPreviousEdge 创建 aVertex 时传递的前向边之一(或者连接到终止顶点的边)
+     * @return 图边下标
+     * @throws IllegalArgumentException aPreviousEdge 不是 aVertex 的前向边
+     */
+    public int getEdgeIndex(NMShortPathVertex<A> aVertex, NMShortPathEdge<A> aPreviousEdge) {
+        if (!this.owns( aVertex ) || aVertex == this.mStartVertex) {
+            throw new IllegalArgumentException( "Vertex(" + aVertex.mGraphVertexIndex + ") not valid" );
+        }
+        int [] edgeIndexOffsets = this.edgeIndexOffsets();
+        NMShortPathEdge<A> [] previousEdges = aVertex.mPreviousEdges;
+        for (int j = 0; j < previousEdges.length; ++j) {
+            if (previousEdges[ j ] == aPreviousEdge) {
+                return edgeIndexOffsets[ aVertex == this.mEndVertex ? edgeIndexOffsets.length - 2 : aVertex.mGraphVertexIndex ] + j;
+            }
         }
+        throw new IllegalArgumentException( "Not A Previous Edge Of Vertex(" + aVertex.mGraphVertexIndex + ")" );
+    }
 
-        void reset() {
-            ArrayList<PreviousEdgeShortPathGroup<A>> cacheList = this.mCacheList;
-            ArrayList<PreviousEdgeShortPathGroup<A>> usedList = this.mUsedList;
-            for (int i = usedList.size() - 1; i >= 0; --i) {//代替Collection::addAll()因为其内部又要new 出一个新的 Object []数组,将抵消本Cache的优化
-                cacheList.add( usedList.remove( i ) );
+    /**
+     * 内部调用，各顶点第一条前向边的图边下标，按位置(终止顶点在最后)，长度为顶点数目+1，最后一个为边总数
+     */
+    int [] edgeIndexOffsets() {
+        int [] edgeIndexOffsets = this.mEdgeIndexOffsets;
+        if (edgeIndexOffsets == null) {
+            this.ensureReady();
+            int vertexCount = this.mVertexIndexGenerator;
+            edgeIndexOffsets = new int [ vertexCount + 2 ];
+            for (int i = 1; i <= vertexCount; ++i) {
+                NMShortPathVertex<A> currentVertex = i < vertexCount ? this.getVertexAt( i ) : this.mEndVertex;
+                edgeIndexOffsets[ i + 1 ] = edgeIndexOffsets[ i ] + currentVertex.mPreviousEdges.length;
             }
+            this.mEdgeIndexOffsets = edgeIndexOffsets;//并发查询时重复计算也无妨,结果相同
         }
+        return edgeIndexOffsets;
+    }
 
-        PreviousEdgeShortPathGroup<A> fromCache(NMShortPathEdge<A> aPreviousEdge, ShortPath<A> [] aPreviousShortPathArray) {
-            //cache中没有的话就 new 出个新实例
-            ArrayList<PreviousEdgeShortPathGroup<A>> cacheList = this.mCacheList;
-            int lastIndex = cacheList.size() - 1;//Array结构一定要从末端开始remove,绝对不能冲0开始，否则剩余元素往前挪的开销将抵消本cache的用途，而且还要得不偿失
-            PreviousEdgeShortPathGroup<A> reusedOne = lastIndex >= 0 ? cacheList.remove( lastIndex ) : new PreviousEdgeShortPathGroup<A>();
-            //记录到正在用的 list 中
-            this.mUsedList.add( reusedOne );
-            return reusedOne.reset( aPreviousEdge, aPreviousShortPathArray );
+    /**
+     * 计算本图的规范结构指纹，用作求解结果缓存的键，代价 O(V+E)。图必须已经准备就绪
+     * @param aAttachmentHasher 顶点绑定数据的哈希函数
+     * @return 指纹
+     * @see NMShortPathCache
+     */
+    public NMShortPathFingerprint fingerprint(ToLongFunction<? super A> aAttachmentHasher) {
+        this.ensureReady();
+        NMShortPathFingerprint.Hasher hasher = new NMShortPathFingerprint.Hasher( this.mNShortPathCount, this.mMVertexPathCount );
+        hasher.addVertex( 0, aAttachmentHasher.applyAsLong( this.mStartVertex.mAttachment ) );
+        for (int i = 1, ilast = this.mVertexIndexGenerator; i <= ilast; ++i) {
+            NMShortPathVertex<A> currentVertex = i < ilast ? this.getVertexAt( i ) : this.mEndVertex;//i==ilast表示endVertex
+            for (NMShortPathEdge<A> previousEdge : currentVertex.mPreviousEdges) {
+                hasher.addEdge( previousEdge.mPreviousVertex.mGraphVertexIndex, previousEdge.mDistanceBetweenVertexes );
+            }
+            hasher.addVertex( currentVertex.mGraphVertexIndex, aAttachmentHasher.applyAsLong( currentVertex.mAttachment ) );
+        }
+        return hasher.toFingerprint();
+    }
+
+    private void ensureReady() {
+        if (!this.isReady()) {
+            //图模型还未准备就绪：存在没有后向顶点的顶点
+            throw new IllegalStateException( "The NShortPathGraph Model Is NOT Ready: There Are Invalid Vertex Which Has No Post Vertexes" );
+        }
+    }
+
+    /**
+     * 内部调用,获取下标为 aGraphVertexIndex 的顶点(不包括终止顶点)，图必须已经准备就绪
+     */
+    NMShortPathVertex<A> getVertexAt(int aGraphVertexIndex) {
+        int position = aGraphVertexIndex - this.mVertexIndexBase;
+        return position >= 0 ? this.mVertexes.get( position ) : this.mSnapshot.mVertexes[ aGraphVertexIndex ];
+    }
+
+    /**
+     * 内部调用，本图的顶点 aVertex 是否已经做过快照，即为各分支图共享
+     */
+    boolean isSharedBySnapshot(NMShortPathVertex<A> aVertex) {
+        int index = aVertex.mGraphVertexIndex;
+        return index >= 0 && index < this.mSnapshotVertexCount;
+    }
+
+    /**
+     * 内部调用，分支图的前缀快照，普通图为null
+     */
+    NMShortPathSnapshot<A> getSnapshot() {
+        return this.mSnapshot;
+    }
 
-            //可通过把上面注释掉来对比测试看
-            //return new PreviousEdgeShortPathGroup<A>().reset( aPreviousEdge, aPreviousShortPathArray );
+    private void markHasPostVertex(NMShortPathVertex<A> aPreviousVertex) {
+        if (!this.mHasPostVertexes.get( aPreviousVertex.mGraphVertexIndex )) {
+            this.mHasPostVertexes.set( aPreviousVertex.mGraphVertexIndex );
+            --this.mMissingPostVertexCount;
         }
     }
 
-    //对分组按最短距离的排序定义
-    private static Comparator<PreviousEdgeShortPathGroup<?>> mGroupComparator = (aOne, aTwo) -> aOne.mCurrentTotalDistance < aTwo.mCurrentTotalDistance ? -1 : aOne.mCurrentTotalDistance == aTwo.mCurrentTotalDistance ? 0 : 1;
+    int generateVertexIndex() {
+        return this.mVertexIndexGenerator++;
+    }
+
+    /**
+     * 内部调用,从 NMShortPathVertex 构造函数而来
+     * @param aNewVertex 刚创建的顶点
+     */
+    void addNewCreatedVertex(NMShortPathVertex<A> aNewVertex) {
+        //此新创建的顶点尚未有 "to" 顶点，还未成为完备顶点
+        this.mVertexes.add( aNewVertex );
+        ++this.mMissingPostVertexCount;
+        for (NMShortPathEdge<A> previousEdge : aNewVertex.mPreviousEdges) {
+            //此 previousVertex 此刻已经有自己的 "from" 顶点和自己的 "to" 顶点了，即使不再连接到其他顶点也已经完备
+            this.markHasPostVertex( previousEdge.mPreviousVertex );
+        }
+        this.mEdgeIndexOffsets = null;
+        this.mSolveMemo = null;
+        this.mLinearChainHeads = null;
+        NMShortPathPipeline<A> pipeline = this.mPipeline;
+        if (pipeline != null) {
+            pipeline.offer( aNewVertex );
+        }
+    }
+
+    //记忆的求解结果，不可变
+    private static final class SolveMemo<A> {
+        final int mNShortPathCount;
+        final int mMVertexPathCount;
+        final NMShortPath<A> mResult;
+        final boolean mVertexPathLimited;//求解过程中是否有顶点受到了M的限制
+        final int mPeakVertexPathCount;//各顶点VertexPath数目的最大值
+
+        SolveMemo(int aNShortPathCount, int aMVertexPathCount, NMShortPath<A> aResult, boolean aVertexPathLimited, int aPeakVertexPathCount) {
+            this.mNShortPathCount = aNShortPathCount;
+            this.mMVertexPathCount = aMVertexPathCount;
+            this.mResult = aResult;
+            this.mVertexPathLimited = aVertexPathLimited;
+            this.mPeakVertexPathCount = aPeakVertexPathCount;
+        }
+
+        /**
+         * 截取出(n, m)的求解结果，语义上不能截取时返回null。
+         * 没有顶点受到M的限制时，各顶点的前n个ShortPath只取决于其各前向顶点的前n个ShortPath，同N值无关，因此截取同单独求解完全一致；
+         * m同M相同时，各顶点受M限制的截断点也同N值无关，同样成立
+         */
+        NMShortPath<A> truncate(int aNShortPathCount, int aMVertexPathCount) {
+            if (aNShortPathCount <= this.mNShortPathCount && (aMVertexPathCount == this.mMVertexPathCount || (!this.mVertexPathLimited && aMVertexPathCount >= this.mPeakVertexPathCount))) {
+                return this.mResult.truncate( aNShortPathCount );
+            }
+            return null;
+        }
+    }
 }
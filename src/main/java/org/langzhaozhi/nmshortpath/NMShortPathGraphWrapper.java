@@ -1,6 +1,7 @@
 package org.langzhaozhi.nmshortpath;
 
 import java.util.ArrayList;
+import java.util.function.ToLongFunction;
 
 /**
  * 提供一个简便的NM-最短路径图的创建包装器，有时直接用NShortPathGraph来创建顶点不方便，
@@ -109,6 +110,37 @@ public final class NMShortPathGraphWrapper<A> {
         return graphModel.calculateNMShortPath();
     }
 
+    /**
+     * 先查缓存，命中的话直接返回，连图模型都不用创建；否则创建图模型求解并缓存之
+     * @param aCache 求解结果缓存
+     * @return NM-最短路径
+     */
+    public NMShortPath<A> calculateNShortPath(NMShortPathCache<A> aCache) {
+        return aCache.computeIfAbsent( this.fingerprint( aCache.getAttachmentHasher() ), this::calculateNShortPath );
+    }
+
+    /**
+     * 计算规范结构指纹，同直接创建出的相同结构的 NMShortPathGraph 的指纹一致，不需要创建图模型
+     * @param aAttachmentHasher 顶点绑定数据的哈希函数
+     * @return 指纹
+     */
+    public NMShortPathFingerprint fingerprint(ToLongFunction<? super A> aAttachmentHasher) {
+        if (!this.isReady()) {
+            throw new IllegalStateException( "The NShortPathGraph Model Is NOT Ready: There Are Invalid Vertex Which Has No Post Vertexes Or Previous Vertexes" );
+        }
+        NMShortPathFingerprint.Hasher hasher = new NMShortPathFingerprint.Hasher( this.mGraphModel.getNShortPathCount(), this.mGraphModel.getMVertexPathCount() );
+        A [] vertexAttachments = this.mVertexAttachment;
+        InternalVertex [] internalVertexes = this.mInternalVertexes;
+        hasher.addVertex( 0, aAttachmentHasher.applyAsLong( vertexAttachments[ 0 ] ) );//startVertex没有前向边，其占位的前向边忽略
+        for (int i = 1, ilast = internalVertexes.length - 1; i <= ilast; ++i) {
+            for (InternalPostEdge previousEdge : internalVertexes[ i ].mPreviousEdge) {
+                hasher.addEdge( previousEdge.mPreviousVertexIndex, previousEdge.mPreviousEdgeDistance );
+            }
+            hasher.addVertex( i < ilast ? i : NMShortPathGraph.END_VERTEX_INDEX, aAttachmentHasher.applyAsLong( vertexAttachments[ i ] ) );
+        }
+        return hasher.toFingerprint();
+    }
+
     private static final class InternalVertex {
         ArrayList<InternalPostEdge> mPreviousEdge = new ArrayList<InternalPostEdge>();
         boolean mHasPostVertex = false;//是否有后向顶点
@@ -0,0 +1,135 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 边创建边求解的流水求解。顶点只能在其所有前向顶点之后创建，顶点下标就是拓扑顺序，因此一个顶点一经创建，
+ * 其所有前向顶点必定都已经创建过了：求解线程从有界队列中按创建顺序逐个取出顶点，取出时其前向顶点都已经求解好了，直接求解即可。
+ * 图的创建和求解同时进行，最后一次 connectToEndVertex 之后调用 {@link #finish()} 只剩下终止顶点需要求解，而不是再从头完整求解一遍。
+ * 队列满时创建顶点的线程阻塞等待，求解跟不上创建时内存占用也是有界的。<br/>
+ * 创建顶点、连接终止顶点以及 finish() 必须在同一个线程中进行(或者由应用自行同步)，同普通的图一样；求解在流水线自身的线程中进行。
+ * 每个流水线都有自己的求解线程，必须调用 finish() 或 cancel() 之一结束，否则求解线程一直等待新顶点，连同已求解的中间结果一起泄漏。
+ * cancel() 可以在任何线程中调用，正因队列满而阻塞的创建顶点的线程随即返回，此后创建的顶点不再交给求解线程
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ * @see NMShortPathGraph#startPipelinedSolve(int)
+ */
+public final class NMShortPathPipeline<A> {
+    private final NMShortPathGraph<A> mGraph;
+    private final BlockingQueue<NMShortPathVertex<A>> mQueue;//终止顶点作为结束标志
+    private final CompletableFuture<NMShortPath<A>> mResult;
+    private final Thread mSolveThread;
+    private volatile boolean mCancelled;//cancel() 可能在其他线程中调用
+
+    /**
+     * 内部调用，启动求解线程(守护线程)，调用者必须保证最终调用 finish() 或 cancel() 之一
+     */
+    NMShortPathPipeline(NMShortPathGraph<A> aGraph, int aQueueCapacity) {
+        if (aQueueCapacity <= 0) {
+            throw new IllegalArgumentException( "QueueCapacity(" + aQueueCapacity + ") not valid" );
+        }
+        this.mGraph = aGraph;
+        this.mQueue = new ArrayBlockingQueue<NMShortPathVertex<A>>( aQueueCapacity );
+        this.mResult = new CompletableFuture<NMShortPath<A>>();
+        this.mSolveThread = new Thread( this::solve, "NMShortPathPipeline" );
+        this.mSolveThread.setDaemon( true );
+        this.mSolveThread.start();
+    }
+
+    /**
+     * 内部调用，新创建的顶点(前向边已经排过序了)交给求解线程
+     */
+    void offer(NMShortPathVertex<A> aVertex) {
+        if (this.mCancelled) {
+            return;
+        }
+        try {
+            //队列满时阻塞等待。之后才取消的话 cancel() 清空队列时唤醒本线程，放入已清空的队列随即返回
+            this.mQueue.put( aVertex );
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted While Waiting For Pipelined Solve" );
+        }
+    }
+
+    /**
+     * 图创建完毕：求解终止顶点并返回结果，本流水线随即与图脱离，之后图可以像普通的图一样使用
+     * @return NM-最短路径，同 {@link NMShortPathGraph#calculateNMShortPath()} 的结果完全一致
+     * @throws IllegalStateException 图还未准备就绪，或者流水求解已经取消
+     */
+    public NMShortPath<A> finish() {
+        if (!this.mGraph.isReady()) {
+            throw new IllegalStateException( "Graph Not Ready: Some Vertexes Have No Post Vertex" );
+        }
+        this.mGraph.detachPipeline( this );
+        this.offer( this.mGraph.getEndVertex() );//已取消的话直接返回，下面抛出取消异常
+        try {
+            return this.mResult.join();
+        }
+        catch (CancellationException e) {
+            throw new IllegalStateException( "Pipelined Solve Cancelled" );
+        }
+        catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 放弃求解：求解线程随即结束，本流水线与图脱离，正阻塞等待队列空位的创建顶点的线程随即返回。可以在任何线程中调用
+     */
+    public void cancel() {
+        this.mCancelled = true;
+        this.mGraph.detachPipeline( this );
+        this.mResult.cancel( false );
+        this.mSolveThread.interrupt();
+        this.mQueue.clear();
+    }
+
+    private void solve() {
+        NMShortPathGraph<A> graph = this.mGraph;
+        NMShortPathVertex<A> endVertex = graph.getEndVertex();
+        NMShortPathSolver<A> solver = new NMShortPathSolver<A>( graph.getNShortPathCount(), graph.getMVertexPathCount(), null );
+        solver.startPipelined( graph.getStartVertex() );
+        try {
+            while (true) {
+                NMShortPathVertex<A> vertex = this.mQueue.take();
+                if (vertex == endVertex) {
+                    if (!this.mResult.isDone()) {
+                        try {
+                            this.mResult.complete( solver.finishPipelined( endVertex ) );
+                        }
+                        catch (RuntimeException | Error e) {
+                            //终止顶点的归并最大，最可能出错(包括内存不足)，同样在 finish() 时抛出，不能让 finish() 一直等待
+                            this.mResult.completeExceptionally( e );
+                        }
+                    }
+                    return;
+                }
+                else if (!this.mResult.isDone()) {
+                    try {
+                        solver.solvePipelined( vertex );
+                    }
+                    catch (RuntimeException | Error e) {
+                        //求解出错后继续取走队列中的顶点，不让创建顶点的线程阻塞，错误在 finish() 时抛出
+                        this.mResult.completeExceptionally( e );
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            this.mResult.cancel( false );
+        }
+    }
+}
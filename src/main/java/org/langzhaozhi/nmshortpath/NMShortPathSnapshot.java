@@ -0,0 +1,76 @@
+package org.langzhaozhi.nmshortpath;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+
+/**
+ * NM-最短路径图的前缀快照：某一时刻图中的所有顶点(不包括终止顶点)连同其各自已经求解好的ShortPath，全部不可变。
+ * 输入法、多假设探索等场景中同一个前缀词图要接上许多不同的后缀分别求解，每次都从头重新创建并求解前缀没有必要：
+ * 从快照 {@link #fork()} 出的分支图直接共享前缀的顶点和求解结果，只添加并求解自身的顶点，代价只同分支自身的大小成正比。<br/>
+ * 分支图中新顶点的前向顶点可以是前缀顶点，此时须用 {@link NMShortPathVertex#NMShortPathVertex(NMShortPathGraph, Object, NMShortPathEdge...)}
+ * 明确指定所属的分支图，前缀顶点连接到终止顶点须用分支图的 {@link NMShortPathGraph#connectToEndVertex(NMShortPathVertex, double)}，
+ * 否则无法确定是哪个图，分别抛出 IllegalArgumentException 和 IllegalStateException(做快照的图本身也一样)。
+ * 快照中还没有后向顶点(在前缀内部)的那些顶点，在每个分支图中都必须连上后向顶点，分支图才能准备就绪。
+ * 快照本身线程安全，多个线程可以同时各自分支、各自求解
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ * @see NMShortPathGraph#snapshot(Object)
+ */
+public final class NMShortPathSnapshot<A> {
+    final int mNShortPathCount;
+    final int mMVertexPathCount;
+    final A mEndAttachment;
+    final NMShortPathVertex<A> [] mVertexes;//下标即顶点下标
+    final ShortPath<A> [][] mShortPathsOfVertexes;//同 mVertexes 一一对应
+    final int [] mDanglingIndexes;//在前缀内部没有后向顶点的顶点下标
+
+    NMShortPathSnapshot(int aNShortPathCount, int aMVertexPathCount, A aEndAttachment, NMShortPathVertex<A> [] aVertexes, ShortPath<A> [][] aShortPathsOfVertexes) {
+        this.mNShortPathCount = aNShortPathCount;
+        this.mMVertexPathCount = aMVertexPathCount;
+        this.mEndAttachment = aEndAttachment;
+        this.mVertexes = aVertexes;
+        this.mShortPathsOfVertexes = aShortPathsOfVertexes;
+        boolean [] hasPostVertexes = new boolean [ aVertexes.length ];
+        for (int i = 1; i < aVertexes.length; ++i) {
+            for (NMShortPathEdge<A> previousEdge : aVertexes[ i ].mPreviousEdges) {
+                hasPostVertexes[ previousEdge.mPreviousVertex.mGraphVertexIndex ] = true;
+            }
+        }
+        int danglingCount = 0;
+        for (boolean hasPostVertex : hasPostVertexes) {
+            danglingCount += hasPostVertex ? 0 : 1;
+        }
+        this.mDanglingIndexes = new int [ danglingCount ];
+        for (int i = 0, j = 0; i < hasPostVertexes.length; ++i) {
+            if (!hasPostVertexes[ i ]) {
+                this.mDanglingIndexes[ j++ ] = i;
+            }
+        }
+    }
+
+    /**
+     * 从本快照分支出一个新图，前缀直接共享，代价同前缀的大小无关
+     * @return 分支图，其起始顶点就是前缀的起始顶点，终止顶点是其自身的
+     */
+    public NMShortPathGraph<A> fork() {
+        return new NMShortPathGraph<A>( this );
+    }
+
+    /**
+     * 前缀顶点数目(包括起始顶点)，分支图中新添加的顶点下标从这里开始
+     */
+    public int getVertexCount() {
+        return this.mVertexes.length;
+    }
+
+    /**
+     * 获取下标为 aGraphVertexIndex 的前缀顶点
+     */
+    public NMShortPathVertex<A> getVertexAt(int aGraphVertexIndex) {
+        return this.mVertexes[ aGraphVertexIndex ];
+    }
+
+    boolean contains(NMShortPathVertex<A> aVertex) {
+        int index = aVertex.mGraphVertexIndex;
+        return index >= 0 && index < this.mVertexes.length && this.mVertexes[ index ] == aVertex;
+    }
+}
@@ -0,0 +1,903 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ContractedVertexPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * NM-最短路径求解器，一次求解过程的全部临时状态都在这里，求解完毕即可丢弃。
+ * 图模型本身只描述顶点和边的结构，因此同一个图可以由多个求解器分别按不同的参数进行求解。
+ */
+final class NMShortPathSolver<A> {
+    private final int mNShortPathCount;//N值
+    private final int mMVertexPathCount;//M值,束剪枝时已经同束宽度W取小者
+    private final NMShortPathBeam mBeam;//null表示精确求解
+    private final int mExactMVertexPathCount;//原本的M值,未同束宽度W取小者
+    private final boolean mBeamNarrowerThanM;//束宽度W是否比M更严格
+    private boolean mApproximate;//求解过程是否实际丢弃了精确求解会保留的ShortPath或者VertexPath
+    private double mPrunedDistance;//束剪枝时当前顶点被剔除的前向边最短路径组中最短的首个累计距离,没有剔除时为Double.POSITIVE_INFINITY
+    private int mPeakVertexPathCount = 1;//各顶点VertexPath数目的最大值
+    private boolean mVertexPathLimited;//是否有顶点的VertexPath数目达到了M的限制
+
+    //每个顶点都有从起始顶点到它的最多N条(可能小于N) ShortPath,由下标对应，如0对应起始顶点本身的,最后一个对应终止顶点。
+    //子图查询时只对应[from, to]范围,下标需要减去 mIndexOffset,不参与求解的顶点为null
+    private ShortPath<A> [][] mShortPathsOfVertexes;
+    private int mIndexOffset;
+    private ShortPath<A> [][] mPrefixShortPathsOfVertexes;//分支图求解时快照中前缀顶点的ShortPath,下标即顶点下标
+    private int [] mLinearChainHeads;//线性链收缩求解时各顶点的链首顶点下标(-1表示不在线性链上),null表示不收缩
+
+    //带约束求解：各顶点第一条前向边的图边下标(null表示没有约束)、禁用的边、当前顶点的图边下标起点、前向顶点下标下限(跳过必经顶点的边都禁用)
+    private int [] mEdgeIndexOffsets;
+    private BitSet mDisabledEdges;
+    private int mCurrentEdgeIndexBase;
+    private int mMinPreviousVertexIndex;
+
+    //多权重批量求解：按图边下标对齐的K列权重矩阵(第e条边第k列为 mEdgeWeights[e*K+k])，null表示直接用边本身的距离
+    private double [] mEdgeWeights;
+    private int mWeightProfileCount;//K
+    private int mWeightProfile;//本求解器对应的列k
+
+    private final ArrayList<ShortPath<A>> mCacheShortPathArray;//cache use: 当前顶点的至多N条ShortPath
+    private final ArrayList<VertexPath<A>> mCacheVertexPathArray;
+    private final ArrayList<PreviousEdgeShortPathGroup<A>> mCachePreviousEdgeShortPathGroupList;//cache use: 当前顶点前向边最短路径组
+    private final ArrayList<PreviousEdgeShortPathGroup<A>> mCacheInsertGroupList;//cache use: 当前顶点前向边最短路径组,用于下一轮排序插入
+    private final GroupCache<A> mGroupCache;//小优化：避免大量 PreviousEdgeShortPathGroup 临时用途的垃圾产生，重复利用实例
+    private PreviousEdgeShortPathGroup<A> [] mBeamHeap;//束剪枝时选取前W个前向边最短路径组的大顶堆,前向边数目超过W时才创建
+
+    NMShortPathSolver(int aNShortPathCount, int aMVertexPathCount, NMShortPathBeam aBeam) {
+        this.mNShortPathCount = aNShortPathCount;
+        this.mMVertexPathCount = aBeam == null ? aMVertexPathCount : Math.min( aMVertexPathCount, aBeam.mBeamWidth );
+        this.mExactMVertexPathCount = aMVertexPathCount;
+        this.mBeam = aBeam;
+        this.mBeamNarrowerThanM = aBeam != null && aBeam.mBeamWidth < aMVertexPathCount;
+        this.mCacheShortPathArray = new ArrayList<ShortPath<A>>( aNShortPathCount );
+        this.mCacheVertexPathArray = new ArrayList<VertexPath<A>>( aNShortPathCount );
+        this.mCachePreviousEdgeShortPathGroupList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aNShortPathCount );
+        this.mCacheInsertGroupList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aNShortPathCount );
+        this.mGroupCache = new GroupCache<A>( aNShortPathCount );
+    }
+
+    /**
+     * 求解整个图，图必须已经准备就绪
+     */
+    @SuppressWarnings("unchecked")
+    NMShortPath<A> solve(NMShortPathGraph<A> aGraph) {
+        if (this.mNShortPathCount == 1 && this.mMVertexPathCount == 1 && this.mBeam == null) {
+            //N==M==1 就是经典的动态规划，不需要NM的任何机制
+            return NMShortPathSolver.solveSingleShortPath( aGraph );
+        }
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        ShortPath<A> [][] shortPathsOfVertexes = new ShortPath [ graphVertexCount ][];
+        this.mShortPathsOfVertexes = shortPathsOfVertexes;
+        shortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aGraph.getStartVertex() );
+        int [] linearChainHeads = this.mBeam == null ? aGraph.linearChainHeads() : null;//束剪枝选取前向边的过程不考虑线性链
+        this.mLinearChainHeads = linearChainHeads;
+
+        for (int i = 1, ilast = graphVertexCount - 1; i < ilast; ++i) {
+            if (linearChainHeads == null || linearChainHeads[ i ] < 0) {//线性链上的顶点直接跳过
+                shortPathsOfVertexes[ i ] = this.solveVertex( aGraph.getVertexAt( i ) );
+            }
+        }
+        //最终结果的NMShortPath 就是终止顶点的至多N条ShortPath并且至多M条VertexPath
+        ShortPath<A> [] endVertexShortPathArray = this.solveVertex( aGraph.getEndVertex() );
+        shortPathsOfVertexes[ graphVertexCount - 1 ] = endVertexShortPathArray;
+        return new NMShortPath<A>( endVertexShortPathArray, this.mApproximate );
+    }
+
+    /**
+     * 流水求解：顶点按创建顺序逐个求解，求解表随顶点下标按需扩大
+     * @see NMShortPathPipeline
+     */
+    @SuppressWarnings("unchecked")
+    void startPipelined(NMShortPathVertex<A> aStartVertex) {
+        this.mShortPathsOfVertexes = new ShortPath [ 64 ][];
+        this.mShortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aStartVertex );
+    }
+
+    /**
+     * 流水求解一个顶点，其所有前向顶点必须已经求解好了
+     */
+    void solvePipelined(NMShortPathVertex<A> aVertex) {
+        int index = aVertex.mGraphVertexIndex;
+        if (index >= this.mShortPathsOfVertexes.length) {
+            this.mShortPathsOfVertexes = Arrays.copyOf( this.mShortPathsOfVertexes, Math.max( index + 1, this.mShortPathsOfVertexes.length << 1 ) );
+        }
+        this.mShortPathsOfVertexes[ index ] = this.solveVertex( aVertex );
+    }
+
+    /**
+     * 流水求解的最后一步：求解终止顶点
+     */
+    NMShortPath<A> finishPipelined(NMShortPathVertex<A> aEndVertex) {
+        return new NMShortPath<A>( this.solveVertex( aEndVertex ), this.mApproximate );
+    }
+
+    /**
+     * N==M==1 的专用求解：每个顶点只需要一个最短累计距离和取得它的那条前向边，用一个 double [] 和一个 int [] 即可，
+     * 求解过程中不产生任何对象，最后只为最终结果回溯创建一条 VertexPath 链。
+     * 相同距离时取前向边数组中第一个取得最短距离的，同一般求解过程(稳定排序后取第一个)的结果完全一致
+     */
+    @SuppressWarnings("unchecked")
+    static <A> NMShortPath<A> solveSingleShortPath(NMShortPathGraph<A> aGraph) {
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        int endPosition = graphVertexCount - 1;//终止顶点在最后
+        double [] bestDistances = new double [ graphVertexCount ];//起始顶点的为0
+        int [] bestPreviousEdges = new int [ graphVertexCount ];//取得最短距离的前向边在此顶点前向边数组中的下标
+        for (int i = 1; i <= endPosition; ++i) {
+            NMShortPathEdge<A> [] previousEdgeArray = (i < endPosition ? aGraph.getVertexAt( i ) : aGraph.getEndVertex()).mPreviousEdges;
+            double bestDistance = bestDistances[ previousEdgeArray[ 0 ].mPreviousVertex.mGraphVertexIndex ] + previousEdgeArray[ 0 ].mDistanceBetweenVertexes;
+            int bestPreviousEdge = 0;
+            for (int j = 1, jsize = previousEdgeArray.length; j < jsize; ++j) {
+                NMShortPathEdge<A> previousEdge = previousEdgeArray[ j ];
+                double distance = bestDistances[ previousEdge.mPreviousVertex.mGraphVertexIndex ] + previousEdge.mDistanceBetweenVertexes;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestPreviousEdge = j;
+                }
+            }
+            bestDistances[ i ] = bestDistance;
+            bestPreviousEdges[ i ] = bestPreviousEdge;
+        }
+        //从终止顶点回溯到起始顶点，再从起始顶点开始创建 VertexPath 链
+        ArrayList<NMShortPathVertex<A>> pathVertexes = new ArrayList<NMShortPathVertex<A>>();
+        ArrayList<NMShortPathEdge<A>> pathEdges = new ArrayList<NMShortPathEdge<A>>();
+        NMShortPathVertex<A> currentVertex = aGraph.getEndVertex();
+        for (int position = endPosition; position != 0;) {
+            NMShortPathEdge<A> previousEdge = currentVertex.mPreviousEdges[ bestPreviousEdges[ position ] ];
+            pathVertexes.add( currentVertex );
+            pathEdges.add( previousEdge );
+            currentVertex = previousEdge.mPreviousVertex;
+            position = currentVertex.mGraphVertexIndex;
+        }
+        VertexPath<A> vertexPath = new VertexPath<A>( aGraph.getStartVertex() );
+        for (int k = pathVertexes.size() - 1; k >= 0; --k) {
+            vertexPath = new VertexPath<A>( pathVertexes.get( k ), vertexPath, pathEdges.get( k ).mDistanceBetweenVertexes );
+        }
+        return new NMShortPath<A>( new ShortPath [] {
+            new ShortPath<A>( bestDistances[ endPosition ], new VertexPath [] {
+                vertexPath
+            } )
+        } );
+    }
+
+    /**
+     * 多权重批量求解：同一个图结构按K组不同的边权重分别求解，得到K个结果。只有 N==M==1 时(见 solveSingleShortPathProfiles)
+     * 各顶点及其前向边才真正只读取一遍，K列在内层循环中一起比较；一般情况下只共享按拓扑顺序取顶点和边下标，
+     * 每个顶点依次由K个求解器分别调用 solveVertex 归并，前向边及前向顶点的ShortPath仍由各求解器各自读取，相当于K次求解交错进行，
+     * 各自的ShortPath互不相干。相同距离的各VertexPath的顺序按图中前向边的顺序(即创建时按边本身距离排序的顺序)
+     * @param aEdgeIndexOffsets 各顶点第一条前向边的图边下标
+     * @param aEdgeWeights 按图边下标对齐的K列权重矩阵，第e条边第k列为 aEdgeWeights[e*K+k]
+     * @param aWeightProfileCount K
+     */
+    @SuppressWarnings("unchecked")
+    static <A> NMShortPath<A> [] solveWeightProfiles(NMShortPathGraph<A> aGraph, int aNShortPathCount, int aMVertexPathCount, int [] aEdgeIndexOffsets, double [] aEdgeWeights, int aWeightProfileCount) {
+        if (aNShortPathCount == 1 && aMVertexPathCount == 1) {
+            return NMShortPathSolver.solveSingleShortPathProfiles( aGraph, aEdgeIndexOffsets, aEdgeWeights, aWeightProfileCount );
+        }
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        NMShortPathSolver<A> [] solvers = new NMShortPathSolver [ aWeightProfileCount ];
+        for (int k = 0; k < aWeightProfileCount; ++k) {
+            NMShortPathSolver<A> solver = new NMShortPathSolver<A>( aNShortPathCount, aMVertexPathCount, null );
+            solver.mShortPathsOfVertexes = new ShortPath [ graphVertexCount ][];
+            solver.mShortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aGraph.getStartVertex() );
+            solver.mEdgeIndexOffsets = aEdgeIndexOffsets;
+            solver.mEdgeWeights = aEdgeWeights;
+            solver.mWeightProfileCount = aWeightProfileCount;
+            solver.mWeightProfile = k;
+            solvers[ k ] = solver;
+        }
+        for (int i = 1, ilast = graphVertexCount - 1; i <= ilast; ++i) {
+            NMShortPathVertex<A> currentVertex = i < ilast ? aGraph.getVertexAt( i ) : aGraph.getEndVertex();
+            int edgeIndexBase = aEdgeIndexOffsets[ i ];
+            for (int k = 0; k < aWeightProfileCount; ++k) {
+                NMShortPathSolver<A> solver = solvers[ k ];
+                solver.mCurrentEdgeIndexBase = edgeIndexBase;
+                solver.mShortPathsOfVertexes[ i ] = solver.solveVertex( currentVertex );
+            }
+        }
+        NMShortPath<A> [] results = new NMShortPath [ aWeightProfileCount ];
+        for (int k = 0; k < aWeightProfileCount; ++k) {
+            results[ k ] = new NMShortPath<A>( solvers[ k ].mShortPathsOfVertexes[ graphVertexCount - 1 ] );
+        }
+        return results;
+    }
+
+    /**
+     * N==M==1 的多权重批量求解：各顶点的K个最短累计距离在 double [] 中连续存放，每条前向边的K列权重也是连续的，
+     * 内层循环对K列逐一比较，访存是顺序的(也便于JIT向量化)。相同距离时同样取第一个取得最短距离的前向边
+     */
+    @SuppressWarnings("unchecked")
+    private static <A> NMShortPath<A> [] solveSingleShortPathProfiles(NMShortPathGraph<A> aGraph, int [] aEdgeIndexOffsets, double [] aEdgeWeights, int aWeightProfileCount) {
+        int profileCount = aWeightProfileCount;
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        int endPosition = graphVertexCount - 1;
+        double [] bestDistances = new double [ graphVertexCount * profileCount ];//第i个顶点第k列为 [i*K+k]
+        int [] bestPreviousEdges = new int [ graphVertexCount * profileCount ];
+        for (int i = 1; i <= endPosition; ++i) {
+            NMShortPathEdge<A> [] previousEdgeArray = (i < endPosition ? aGraph.getVertexAt( i ) : aGraph.getEndVertex()).mPreviousEdges;
+            int currentBase = i * profileCount;
+            int weightBase = aEdgeIndexOffsets[ i ] * profileCount;
+            int previousBase = previousEdgeArray[ 0 ].mPreviousVertex.mGraphVertexIndex * profileCount;
+            for (int k = 0; k < profileCount; ++k) {
+                bestDistances[ currentBase + k ] = bestDistances[ previousBase + k ] + aEdgeWeights[ weightBase + k ];
+            }
+            for (int j = 1, jsize = previousEdgeArray.length; j < jsize; ++j) {
+                previousBase = previousEdgeArray[ j ].mPreviousVertex.mGraphVertexIndex * profileCount;
+                weightBase += profileCount;
+                for (int k = 0; k < profileCount; ++k) {
+                    double distance = bestDistances[ previousBase + k ] + aEdgeWeights[ weightBase + k ];
+                    if (distance < bestDistances[ currentBase + k ]) {
+                        bestDistances[ currentBase + k ] = distance;
+                        bestPreviousEdges[ currentBase + k ] = j;
+                    }
+                }
+            }
+        }
+        NMShortPath<A> [] results = new NMShortPath [ profileCount ];
+        ArrayList<NMShortPathVertex<A>> pathVertexes = new ArrayList<NMShortPathVertex<A>>();
+        ArrayList<Double> pathDistances = new ArrayList<Double>();
+        for (int k = 0; k < profileCount; ++k) {
+            pathVertexes.clear();
+            pathDistances.clear();
+            NMShortPathVertex<A> currentVertex = aGraph.getEndVertex();
+            for (int position = endPosition; position != 0;) {
+                int edgePosition = bestPreviousEdges[ position * profileCount + k ];
+                pathVertexes.add( currentVertex );
+                pathDistances.add( aEdgeWeights[ (aEdgeIndexOffsets[ position ] + edgePosition) * profileCount + k ] );
+                currentVertex = currentVertex.mPreviousEdges[ edgePosition ].mPreviousVertex;
+                position = currentVertex.mGraphVertexIndex;
+            }
+            VertexPath<A> vertexPath = new VertexPath<A>( aGraph.getStartVertex() );
+            for (int l = pathVertexes.size() - 1; l >= 0; --l) {
+                vertexPath = new VertexPath<A>( pathVertexes.get( l ), vertexPath, pathDistances.get( l ) );
+            }
+            results[ k ] = new NMShortPath<A>( new ShortPath [] {
+                new ShortPath<A>( bestDistances[ endPosition * profileCount + k ], new VertexPath [] {
+                    vertexPath
+                } )
+            } );
+        }
+        return results;
+    }
+
+    /**
+     * 求解过程中各顶点VertexPath数目的最大值(单前向边的顶点同其前向顶点相同，不单独统计)
+     */
+    int getPeakVertexPathCount() {
+        return this.mPeakVertexPathCount;
+    }
+
+    /**
+     * 求解过程中是否有顶点的VertexPath数目达到了M的限制，达到了的话其后向顶点的结果可能同M更大时的不一样
+     */
+    boolean isVertexPathLimited() {
+        return this.mVertexPathLimited;
+    }
+
+    /**
+     * 起始顶点特殊处理下其前向累计段，累计距离初始成0
+     */
+    @SuppressWarnings("unchecked")
+    static <A> ShortPath<A> [] startShortPaths(NMShortPathVertex<A> aStartVertex) {
+        VertexPath<A> [] startVertexPathArray = new VertexPath [] {
+            new VertexPath<A>( aStartVertex )
+        };
+        return new ShortPath [] {
+            new ShortPath<A>( 0.0, startVertexPathArray )
+        };
+    }
+
+    /**
+     * 子图查询：只求解既能从 aFromVertex 到达、又能到达 aToVertex 的那些顶点。顶点下标本身就是拓扑顺序，
+     * 因此这些顶点必定在[from, to]的下标范围内，在此范围内正反各扫描一遍得出可达掩码即可，代价只同此范围的大小成正比
+     * @return 从 aFromVertex 到 aToVertex 的NM-最短路径, 不可达时返回null
+     */
+    @SuppressWarnings("unchecked")
+    NMShortPath<A> solve(NMShortPathGraph<A> aGraph, NMShortPathVertex<A> aFromVertex, NMShortPathVertex<A> aToVertex) {
+        int fromIndex = aFromVertex.mGraphVertexIndex;
+        int toIndex = aToVertex == aGraph.getEndVertex() ? aGraph.getGraphVertexCount() - 1 : aToVertex.mGraphVertexIndex;
+        int spanSize = toIndex - fromIndex + 1;
+
+        //反向扫描：能到达 to 的顶点
+        boolean [] activeVertexes = new boolean [ spanSize ];
+        activeVertexes[ spanSize - 1 ] = true;
+        for (int i = spanSize - 1; i > 0; --i) {
+            if (activeVertexes[ i ]) {
+                NMShortPathVertex<A> currentVertex = i == spanSize - 1 ? aToVertex : aGraph.getVertexAt( fromIndex + i );
+                for (NMShortPathEdge<A> previousEdge : currentVertex.mPreviousEdges) {
+                    int previousPosition = previousEdge.mPreviousVertex.mGraphVertexIndex - fromIndex;
+                    if (previousPosition >= 0) {
+                        activeVertexes[ previousPosition ] = true;
+                    }
+                }
+            }
+        }
+        if (!activeVertexes[ 0 ]) {
+            return null;
+        }
+        ShortPath<A> [][] shortPathsOfVertexes = new ShortPath [ spanSize ][];
+        this.mShortPathsOfVertexes = shortPathsOfVertexes;
+        this.mIndexOffset = fromIndex;
+        shortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aFromVertex );
+        //正向扫描：只求解同时也能从 from 到达的顶点，即至少有一个前向顶点已经求解了的
+        for (int i = 1; i < spanSize; ++i) {
+            if (activeVertexes[ i ]) {
+                NMShortPathVertex<A> currentVertex = i == spanSize - 1 ? aToVertex : aGraph.getVertexAt( fromIndex + i );
+                for (NMShortPathEdge<A> previousEdge : currentVertex.mPreviousEdges) {
+                    if (this.shortPathsOf( previousEdge.mPreviousVertex ) != null) {
+                        shortPathsOfVertexes[ i ] = this.solveVertex( currentVertex );
+                        break;
+                    }
+                }
+            }
+        }
+        ShortPath<A> [] toVertexShortPathArray = shortPathsOfVertexes[ spanSize - 1 ];
+        return toVertexShortPathArray == null ? null : new NMShortPath<A>( toVertexShortPathArray, this.mApproximate );
+    }
+
+    /**
+     * 带约束求解：禁用的顶点不求解，禁用的边在归并时忽略，必经顶点按下标依次经过。
+     * 按下标顺序求解时记录最近经过的必经顶点，之后各顶点的前向顶点下标不能小于它，这样每条路径都不会跳过任何必经顶点
+     * @param aEdgeIndexOffsets 各顶点第一条前向边的图边下标
+     * @param aDisabledEdges 禁用的边,可以为null
+     * @param aDisabledVertexes 禁用的顶点,可以为null
+     * @param aRequiredIndexes 必经顶点的下标，已经排好序
+     * @return 满足约束的NM-最短路径, 没有满足约束的路径时返回null
+     */
+    @SuppressWarnings("unchecked")
+    NMShortPath<A> solve(NMShortPathGraph<A> aGraph, int [] aEdgeIndexOffsets, BitSet aDisabledEdges, BitSet aDisabledVertexes, int [] aRequiredIndexes) {
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        ShortPath<A> [][] shortPathsOfVertexes = new ShortPath [ graphVertexCount ][];
+        this.mShortPathsOfVertexes = shortPathsOfVertexes;
+        this.mEdgeIndexOffsets = aEdgeIndexOffsets;
+        this.mDisabledEdges = aDisabledEdges;
+        shortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aGraph.getStartVertex() );
+        for (int i = 1, ilast = graphVertexCount - 1, requiredCursor = 0; i <= ilast; ++i) {
+            if (i < ilast && aDisabledVertexes != null && aDisabledVertexes.get( i )) {
+                continue;
+            }
+            this.mCurrentEdgeIndexBase = aEdgeIndexOffsets[ i ];
+            shortPathsOfVertexes[ i ] = this.solveVertex( i < ilast ? aGraph.getVertexAt( i ) : aGraph.getEndVertex() );
+            if (requiredCursor < aRequiredIndexes.length && aRequiredIndexes[ requiredCursor ] == i) {
+                if (shortPathsOfVertexes[ i ] == null) {
+                    return null;//必经顶点本身就不可达
+                }
+                this.mMinPreviousVertexIndex = i;
+                ++requiredCursor;
+            }
+        }
+        ShortPath<A> [] endVertexShortPathArray = shortPathsOfVertexes[ graphVertexCount - 1 ];
+        return endVertexShortPathArray == null ? null : new NMShortPath<A>( endVertexShortPathArray, this.mApproximate );
+    }
+
+    /**
+     * 分支图求解：前缀顶点的ShortPath直接用快照中的，只求解分支图自身的顶点和终止顶点
+     */
+    @SuppressWarnings("unchecked")
+    NMShortPath<A> solve(NMShortPathGraph<A> aGraph, NMShortPathSnapshot<A> aSnapshot) {
+        int vertexIndexBase = aSnapshot.mVertexes.length;
+        int solveCount = aGraph.getGraphVertexCount() - vertexIndexBase;//自身顶点加上终止顶点
+        ShortPath<A> [][] shortPathsOfVertexes = new ShortPath [ solveCount ][];
+        this.mShortPathsOfVertexes = shortPathsOfVertexes;
+        this.mIndexOffset = vertexIndexBase;
+        this.mPrefixShortPathsOfVertexes = aSnapshot.mShortPathsOfVertexes;
+        for (int i = 0, ilast = solveCount - 1; i < ilast; ++i) {
+            shortPathsOfVertexes[ i ] = this.solveVertex( aGraph.getVertexAt( vertexIndexBase + i ) );
+        }
+        ShortPath<A> [] endVertexShortPathArray = this.solveVertex( aGraph.getEndVertex() );
+        shortPathsOfVertexes[ solveCount - 1 ] = endVertexShortPathArray;
+        return new NMShortPath<A>( endVertexShortPathArray, this.mApproximate );
+    }
+
+    /**
+     * 求解快照用：求解图中的所有顶点(不包括终止顶点)，图不需要准备就绪。分支图的前缀部分直接用其快照中的
+     * @param aVertexes 图中的所有顶点，下标即顶点下标
+     * @return 各顶点的ShortPath，同 aVertexes 一一对应
+     */
+    @SuppressWarnings("unchecked")
+    ShortPath<A> [][] solvePrefix(NMShortPathGraph<A> aGraph, NMShortPathVertex<A> [] aVertexes) {
+        ShortPath<A> [][] shortPathsOfVertexes = new ShortPath [ aVertexes.length ][];
+        NMShortPathSnapshot<A> snapshot = aGraph.getSnapshot();
+        int solvedCount = 1;
+        if (snapshot == null) {
+            shortPathsOfVertexes[ 0 ] = NMShortPathSolver.startShortPaths( aVertexes[ 0 ] );
+        }
+        else {
+            solvedCount = snapshot.mVertexes.length;
+            System.arraycopy( snapshot.mShortPathsOfVertexes, 0, shortPathsOfVertexes, 0, solvedCount );
+        }
+        this.mShortPathsOfVertexes = shortPathsOfVertexes;
+        for (int i = solvedCount; i < aVertexes.length; ++i) {
+            shortPathsOfVertexes[ i ] = this.solveVertex( aVertexes[ i ] );
+        }
+        return shortPathsOfVertexes;
+    }
+
+    /**
+     * 前向顶点的ShortPath,不参与本次求解的顶点返回null
+     */
+    private ShortPath<A> [] shortPathsOf(NMShortPathVertex<A> aVertex) {
+        int position = aVertex.mGraphVertexIndex - this.mIndexOffset;
+        return position >= 0 ? this.mShortPathsOfVertexes[ position ] : this.mPrefixShortPathsOfVertexes == null ? null : this.mPrefixShortPathsOfVertexes[ aVertex.mGraphVertexIndex ];
+    }
+
+    /**
+     * 当前顶点第 aEdgePosition 条前向边的前向顶点的ShortPath，前向顶点不参与本次求解或者此边被约束禁用时返回null
+     */
+    private ShortPath<A> [] shortPathsOf(int aEdgePosition, NMShortPathEdge<A> aPreviousEdge) {
+        if (this.mEdgeIndexOffsets != null && (aPreviousEdge.mPreviousVertex.mGraphVertexIndex < this.mMinPreviousVertexIndex || (this.mDisabledEdges != null && this.mDisabledEdges.get( this.mCurrentEdgeIndexBase + aEdgePosition )))) {
+            return null;
+        }
+        if (this.lastContractedVertexOf( aPreviousEdge ) != null) {
+            return this.mShortPathsOfVertexes[ this.mLinearChainHeads[ aPreviousEdge.mPreviousVertex.mGraphVertexIndex ] ];//前向顶点在线性链上，取链首顶点的
+        }
+        return this.shortPathsOf( aPreviousEdge.mPreviousVertex );
+    }
+
+    /**
+     * 线性链收缩求解时前向顶点在线性链上的话返回此前向顶点(链上最后一个被收缩的顶点)，否则返回null
+     */
+    private NMShortPathVertex<A> lastContractedVertexOf(NMShortPathEdge<A> aPreviousEdge) {
+        return this.mLinearChainHeads != null && this.mLinearChainHeads[ aPreviousEdge.mPreviousVertex.mGraphVertexIndex ] >= 0 ? aPreviousEdge.mPreviousVertex : null;
+    }
+
+    /**
+     * 从缓存中取出一个前向边最短路径组，前向顶点在线性链上的话跨过整条链直接从链首顶点累加
+     */
+    private PreviousEdgeShortPathGroup<A> groupOf(int aEdgePosition, NMShortPathEdge<A> aPreviousEdge, ShortPath<A> [] aPreviousShortPathArray) {
+        PreviousEdgeShortPathGroup<A> group = this.mGroupCache.fromCache( aPreviousEdge, this.distanceOf( aEdgePosition, aPreviousEdge ), aPreviousShortPathArray );
+        NMShortPathVertex<A> lastContractedVertex = this.lastContractedVertexOf( aPreviousEdge );
+        return lastContractedVertex == null ? group : group.contract( lastContractedVertex, this.mLinearChainHeads[ lastContractedVertex.mGraphVertexIndex ] );
+    }
+
+    /**
+     * 当前顶点第 aEdgePosition 条前向边的距离，多权重批量求解时取权重矩阵中本求解器对应的列
+     */
+    private double distanceOf(int aEdgePosition, NMShortPathEdge<A> aPreviousEdge) {
+        return this.mEdgeWeights == null ? aPreviousEdge.mDistanceBetweenVertexes : this.mEdgeWeights[ (this.mCurrentEdgeIndexBase + aEdgePosition) * this.mWeightProfileCount + this.mWeightProfile ];
+    }
+
+    /**
+     * 计算一个顶点的至多N条ShortPath，其所有前向顶点必须已经计算好了
+     */
+    ShortPath<A> [] solveVertex(NMShortPathVertex<A> aCurrentVertex) {
+        NMShortPathVertex<A> currentVertex = aCurrentVertex;
+        NMShortPathEdge<A> [] previousEdgeArray = currentVertex.mPreviousEdges;
+        int previousEdgeCount = previousEdgeArray.length;
+
+        if (previousEdgeCount == 1) {
+            //只有一条前向边，直接累加,此前向顶点已经排序过了，一步直接合并即可，而且必定同时满足N的限制和M的限制(束剪枝的限制也同样满足)
+            double distanceBetweenVertexes = this.distanceOf( 0, previousEdgeArray[ 0 ] );//两顶点相邻距离
+            ShortPath<A> [] previousShortPathArray = this.shortPathsOf( 0, previousEdgeArray[ 0 ] );
+            if (previousShortPathArray == null) {
+                return null;//唯一的前向边被约束禁用了
+            }
+            PreviousEdgeShortPathGroup<A> contractedGroup = null;//前向顶点在线性链上时跨过整条链
+            if (this.lastContractedVertexOf( previousEdgeArray[ 0 ] ) != null) {
+                this.mGroupCache.reset();
+                contractedGroup = this.groupOf( 0, previousEdgeArray[ 0 ], previousShortPathArray );
+            }
+
+            @SuppressWarnings("unchecked")
+            ShortPath<A> [] currentShortPaths = new ShortPath [ previousShortPathArray.length ];
+            for (int j = 0, jsize = previousShortPathArray.length; j < jsize; ++j) {
+                ShortPath<A> previousShortPath = previousShortPathArray[ j ];
+                VertexPath<A> [] previousVertexPathArray = previousShortPath.mSameTotalDistanceVertexPathArray;
+                int vertextPathCount = previousVertexPathArray.length;
+                double thisTotalDistance = contractedGroup == null ? previousShortPath.mTotalDistance + distanceBetweenVertexes : contractedGroup.totalDistanceOf( previousShortPath );
+                @SuppressWarnings("unchecked")
+                VertexPath<A> [] currentVertexSameTotalDistanceVertextPathArray = new VertexPath [ vertextPathCount ];
+                for (int k = 0; k < vertextPathCount; ++k) {
+                    currentVertexSameTotalDistanceVertextPathArray[ k ] = contractedGroup == null ? new VertexPath<A>( currentVertex, previousVertexPathArray[ k ], distanceBetweenVertexes ) : contractedGroup.newVertexPath( currentVertex, previousVertexPathArray[ k ] );
+                }
+                ShortPath<A> thisShortPath = new ShortPath<A>( thisTotalDistance, currentVertexSameTotalDistanceVertextPathArray );
+                currentShortPaths[ j ] = thisShortPath;
+            }
+            return currentShortPaths;
+        }
+        else {
+            int nshortPathCount = this.mNShortPathCount;
+            int mvertexPathCount = this.mMVertexPathCount;
+            ArrayList<VertexPath<A>> cacheVertexPathArray = this.mCacheVertexPathArray;
+            ArrayList<PreviousEdgeShortPathGroup<A>> cacheInsertGroupList = this.mCacheInsertGroupList;
+            this.mCacheShortPathArray.clear();//clear ready for currentVertex use
+            this.mCachePreviousEdgeShortPathGroupList.clear();//clear ready for currentVertex use
+            this.mGroupCache.reset();//reset ready for currentVertex use
+            ArrayList<ShortPath<A>> currentShortPathArray = this.mCacheShortPathArray;
+            List<PreviousEdgeShortPathGroup<A>> previousEdgeShortPathGroupList = this.mCachePreviousEdgeShortPathGroupList;
+
+            //核心算法：对当前顶点的各前向边进行分组成<前向边的最短路径组>，每个前向顶点之前已经计算好并排序好了其自身的NM-最短距离，
+            //对当前顶点只需要从各个前向组中依次取出排好序的第一个来比较即可
+            int groupCount;
+            double limitDistance;//束剪枝的距离上限，超过的ShortPath都剪枝掉
+            this.mPrunedDistance = Double.POSITIVE_INFINITY;
+            if (this.mBeam == null) {
+                for (int j = 0; j < previousEdgeCount; ++j) {
+                    NMShortPathEdge<A> previousEdge = previousEdgeArray[ j ];
+                    ShortPath<A> [] previousShortPathArray = this.shortPathsOf( j, previousEdge );
+                    if (previousShortPathArray != null) {//子图查询时不参与求解的前向顶点、被约束禁用的前向边忽略之
+                        previousEdgeShortPathGroupList.add( this.groupOf( j, previousEdge, previousShortPathArray ) );
+                    }
+                }
+                //初始组数目同参与求解的前向边数目相同
+                groupCount = previousEdgeShortPathGroupList.size();
+                limitDistance = Double.POSITIVE_INFINITY;
+            }
+            else {
+                //束剪枝：至多W个组参与归并，并且各组的首个ShortPath距离不超过阈值
+                limitDistance = this.selectBeamGroups( previousEdgeArray, previousEdgeShortPathGroupList );
+                groupCount = previousEdgeShortPathGroupList.size();
+            }
+            //多个不同的前向顶点，虽然每个前向顶点自身已经排过序了，但这些前向顶点到本顶点的累积最短距离还需要再次排序看哪些更短距离
+            previousEdgeShortPathGroupList.sort( NMShortPathSolver.mGroupComparator );
+            //每个顶点最多N条ShortPath并且最多M条不同顶点路径组合数目(下面的循环分别用n和m表示N的迭代限制和M的迭代限制,m在内层合并循环中累加,没有++m)
+            int m = 0, mlast = mvertexPathCount - 1;
+            int remainingGroupCount = groupCount;//最后一轮归并之后还剩余的组数目
+            boolean vertexPathTruncated = false;//是否有VertexPath因为达到M(束剪枝时为M和W的小者)的限制而没有合并进来
+            for (int n = 0, nlast = nshortPathCount - 1; n <= nlast && m <= mlast && groupCount > 0; ++n) {
+                //每一轮直接从0开始依次找前面若干个相同的 minDistance 合并即可: previousEdgeShortPathGroupList已经排序好了的
+                double minDistance = previousEdgeShortPathGroupList.get( 0 ).mCurrentTotalDistance;
+                if (minDistance > limitDistance) {
+                    //超出束剪枝的距离阈值了，后面剩余的都更长，全部剪枝掉
+                    this.mApproximate = true;
+                    break;
+                }
+                cacheVertexPathArray.clear();//clear ready for current ShortPath use
+                ArrayList<VertexPath<A>> thisVertexPathArray = cacheVertexPathArray;
+                int minDistanceGroupCount = groupCount;
+                cacheInsertGroupList.clear();//clear ready for currentVertex use
+                ArrayList<PreviousEdgeShortPathGroup<A>> currentInsertGroupList = cacheInsertGroupList;
+                for (int k = 0; k < groupCount; ++k) {
+                    //从0开始合并直到第一个不是 minDistance 最短距离的
+                    PreviousEdgeShortPathGroup<A> nextMinGroup = previousEdgeShortPathGroupList.get( k );
+                    if (nextMinGroup.mCurrentTotalDistance == minDistance) {
+                        //匹配 minDistance 了的嘛，合并之
+                        ShortPath<A> nextFirst = nextMinGroup.getCurrentFirstShortPath();
+                        VertexPath<A> [] nextFirstVertexPathArray = nextFirst.mSameTotalDistanceVertexPathArray;
+                        int l = 0, lsize = nextFirstVertexPathArray.length;
+                        for (; l < lsize && m <= mlast; ++l, ++m) {
+                            thisVertexPathArray.add( nextMinGroup.newVertexPath( currentVertex, nextFirstVertexPathArray[ l ] ) );
+                        }
+                        vertexPathTruncated |= l < lsize;
+                        if (nextMinGroup.changeToNextCurrentFirstShortPath()) {//游标下移为下一轮的第一个ShortPath准备
+                            //说明还有其他ShortPath,先记录下来,后面用于排序插入
+                            currentInsertGroupList.add( nextMinGroup );
+                        }
+                        else {
+                            //说明此group所有ShortPath都是NM-最短路径的前段了，消耗完毕了，移除之
+                        }
+                    }
+                    else {
+                        //前面 minDistanceGroupCount 个组到本顶点都是最短距离为 minDistance 的N最短路径之一
+                        minDistanceGroupCount = k;
+                        break;
+                    }
+                }
+                @SuppressWarnings("unchecked")
+                VertexPath<A> [] thisVertexPaths = thisVertexPathArray.toArray( new VertexPath [ thisVertexPathArray.size() ] );
+                ShortPath<A> thisShortPath = new ShortPath<A>( minDistance, thisVertexPaths );
+                //记录下当前顶点的这个ShortPath
+                currentShortPathArray.add( thisShortPath );
+                remainingGroupCount = groupCount - minDistanceGroupCount + currentInsertGroupList.size();
+                if (n < nlast && m <= mlast) {//小优化: 如果 n==nlast 表示已经达到N条最短路径了，如果 m > mlast 表示已经达到M条不同顶点路径组合数目了，那么最后剩余的部分也没有必要继续排序归并了
+                    //关键点1：(Zero-Copy技术,ArrayList::subList代替 remove,彻底消除 remove 的拷贝过程)
+                    //关键点2: (这 minDistanceGroupCount 后面遗留的那些 group 已经是排好序的：核心在于要充分利用这个已经排序好的结果嘛)
+                    previousEdgeShortPathGroupList = previousEdgeShortPathGroupList.subList( minDistanceGroupCount, groupCount );
+                    int needInsertSize = currentInsertGroupList.size();
+                    if (needInsertSize > 0) {
+                        //关键点3：只把之前记录的没有消耗完的 currentInsertGroupList 排下序：它们已经的状态已经变迁了，需要单独排序比较
+                        currentInsertGroupList.sort( NMShortPathSolver.mGroupComparator );
+                        //关键点4：最后按排序结果合并即可：扫描一遍依次插入到排序位置即可，本质就是两个已经排好序的集合的归并：算法简单直接做即可
+                        for (int k = 0, nextInsertPosition = 0, remainingSize = groupCount - minDistanceGroupCount; k < needInsertSize; ++k) {
+                            PreviousEdgeShortPathGroup<A> nextInsertGroup = currentInsertGroupList.get( k );
+                            double currentInsertFirstTotalDistance = nextInsertGroup.mCurrentTotalDistance;
+                            for (; nextInsertPosition < remainingSize; ++nextInsertPosition) {
+                                PreviousEdgeShortPathGroup<A> nextRemainingGroup = previousEdgeShortPathGroupList.get( nextInsertPosition );
+                                if (nextRemainingGroup.mCurrentTotalDistance >= currentInsertFirstTotalDistance) {
+                                    //找到插入位置了。假如果一直找不到，就说明 nextInsertGroup 就应该排序在最后，因此在最末尾插入即可
+                                    break;
+                                }
+                            }
+                            //在 nextInsertPosition 位置上插入：可能在中间插入，也可能在末尾插入
+                            previousEdgeShortPathGroupList.add( nextInsertPosition, nextInsertGroup );
+                            ++remainingSize;
+                            ++nextInsertPosition;
+                        }
+                    }
+                    //到此 previousEdgeShortPathGroupList 又变成排序好的了，下一轮即从0开始依次找前面若干个相同的 minDistance 即可
+                    //可能前面有移除的，因此得重新看下其当前group个数还有剩余否
+                    groupCount = previousEdgeShortPathGroupList.size();
+                }
+            }
+            if (m > mlast) {
+                this.mVertexPathLimited = true;
+            }
+            if (this.mBeam != null && !this.mApproximate) {
+                this.mApproximate = this.isBeamPruned( currentShortPathArray, m > mlast && this.mBeamNarrowerThanM, vertexPathTruncated, remainingGroupCount );
+            }
+            if (m > this.mPeakVertexPathCount) {
+                this.mPeakVertexPathCount = m;
+            }
+            if (currentShortPathArray.isEmpty()) {
+                return null;//所有前向边都被约束禁用了
+            }
+            @SuppressWarnings("unchecked")
+            ShortPath<A> [] currentShortPaths = currentShortPathArray.toArray( new ShortPath [ currentShortPathArray.size() ] );
+            return currentShortPaths;
+        }
+    }
+
+    /**
+     * 束剪枝求解的当前顶点是否实际丢弃了精确求解会保留的候选：只是达到了M的限制的话精确求解同样也丢弃，不算剪枝。
+     * 被剔除的组中最短的首个累计距离之前的候选，精确求解同束剪枝的归并过程完全一样，因此只需要看：<ol>
+     *     <li>达到了束宽度W(比M更严格)的限制时，还有精确求解在N和M之内会继续合并的候选</li>
+     *     <li>精确求解归并到被剔除的组的首个累计距离时，还没有达到N和M的限制</li>
+     * </ol>
+     * @param aCurrentShortPathArray 当前顶点束剪枝归并的结果
+     * @param aBeamWidthReached 是否达到了比M更严格的束宽度W的限制
+     * @param aVertexPathTruncated 是否有VertexPath因为达到限制而没有合并进来
+     * @param aRemainingGroupCount 最后一轮归并之后还剩余的组数目
+     */
+    private boolean isBeamPruned(List<ShortPath<A>> aCurrentShortPathArray, boolean aBeamWidthReached, boolean aVertexPathTruncated, int aRemainingGroupCount) {
+        double prunedDistance = this.mPrunedDistance;
+        boolean hasPruned = prunedDistance != Double.POSITIVE_INFINITY;
+        int shortPathCount = aCurrentShortPathArray.size();
+        if (aBeamWidthReached && (aVertexPathTruncated || (shortPathCount < this.mNShortPathCount && (aRemainingGroupCount > 0 || hasPruned)))) {
+            return true;
+        }
+        if (hasPruned) {
+            int exactShortPathCount = 0;
+            int exactVertexPathCount = 0;
+            for (int i = 0; i < shortPathCount && aCurrentShortPathArray.get( i ).mTotalDistance < prunedDistance; ++i) {
+                ++exactShortPathCount;
+                exactVertexPathCount += aCurrentShortPathArray.get( i ).mSameTotalDistanceVertexPathArray.length;
+            }
+            return exactShortPathCount < this.mNShortPathCount && exactVertexPathCount < this.mExactMVertexPathCount;
+        }
+        return false;
+    }
+
+    /**
+     * 束剪枝选取参与归并的前向边最短路径组：先扫描一遍求出本顶点的最短累计距离，然后用容量为W的大顶堆选出首个ShortPath
+     * 累计距离最短的至多W个组，并剔除超出距离阈值的组，整体代价 O(E*logW)，E为前向边数目。被剔除的组中最短的首个累计距离记在 mPrunedDistance
+     * @return 本顶点的距离上限，即最短累计距离加上距离阈值
+     */
+    private double selectBeamGroups(NMShortPathEdge<A> [] aPreviousEdgeArray, List<PreviousEdgeShortPathGroup<A>> aGroupList) {
+        int previousEdgeCount = aPreviousEdgeArray.length;
+        int beamWidth = this.mBeam.mBeamWidth;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < previousEdgeCount; ++j) {
+            NMShortPathEdge<A> previousEdge = aPreviousEdgeArray[ j ];
+            ShortPath<A> [] previousShortPathArray = this.shortPathsOf( j, previousEdge );
+            if (previousShortPathArray != null && previousShortPathArray[ 0 ].mTotalDistance + this.distanceOf( j, previousEdge ) < bestDistance) {
+                bestDistance = previousShortPathArray[ 0 ].mTotalDistance + this.distanceOf( j, previousEdge );
+            }
+        }
+        double limitDistance = bestDistance + this.mBeam.mScoreThreshold;
+        if (previousEdgeCount <= beamWidth) {
+            //不超过束宽度，保持前向边原有顺序只剔除超出阈值的，这样没有发生剪枝时同精确求解完全一致
+            for (int j = 0; j < previousEdgeCount; ++j) {
+                NMShortPathEdge<A> previousEdge = aPreviousEdgeArray[ j ];
+                ShortPath<A> [] previousShortPathArray = this.shortPathsOf( j, previousEdge );
+                if (previousShortPathArray == null) {
+                    continue;//子图查询时不参与求解的前向顶点
+                }
+                else if (previousShortPathArray[ 0 ].mTotalDistance + this.distanceOf( j, previousEdge ) > limitDistance) {
+                    this.mPrunedDistance = Math.min( this.mPrunedDistance, previousShortPathArray[ 0 ].mTotalDistance + this.distanceOf( j, previousEdge ) );
+                }
+                else {
+                    aGroupList.add( this.mGroupCache.fromCache( previousEdge, this.distanceOf( j, previousEdge ), previousShortPathArray ) );
+                }
+            }
+        }
+        else {
+            PreviousEdgeShortPathGroup<A> [] heap = this.mBeamHeap;//heap[0]是当前保留组中距离最长的
+            if (heap == null) {
+                @SuppressWarnings("unchecked")
+                PreviousEdgeShortPathGroup<A> [] newHeap = new PreviousEdgeShortPathGroup [ beamWidth ];//此时 beamWidth < previousEdgeCount
+                this.mBeamHeap = heap = newHeap;
+            }
+            int heapSize = 0;
+            for (int j = 0; j < previousEdgeCount; ++j) {
+                NMShortPathEdge<A> previousEdge = aPreviousEdgeArray[ j ];
+                ShortPath<A> [] previousShortPathArray = this.shortPathsOf( j, previousEdge );
+                if (previousShortPathArray == null) {
+                    continue;//子图查询时不参与求解的前向顶点
+                }
+                double firstDistance = previousShortPathArray[ 0 ].mTotalDistance + this.distanceOf( j, previousEdge );
+                if (firstDistance > limitDistance) {
+                    this.mPrunedDistance = Math.min( this.mPrunedDistance, firstDistance );
+                }
+                else if (heapSize < beamWidth) {
+                    heap[ heapSize ] = this.mGroupCache.fromCache( previousEdge, this.distanceOf( j, previousEdge ), previousShortPathArray );
+                    heap[ heapSize ].mEdgePosition = j;
+                    NMShortPathSolver.siftUp( heap, heapSize++ );
+                }
+                else {
+                    //堆顶最长的那个同此组二者之一被剔除
+                    this.mPrunedDistance = Math.min( this.mPrunedDistance, Math.max( firstDistance, heap[ 0 ].mCurrentTotalDistance ) );
+                    if (firstDistance < heap[ 0 ].mCurrentTotalDistance) {
+                        //替换掉堆顶最长的那个，实例直接重用
+                        heap[ 0 ].reset( previousEdge, this.distanceOf( j, previousEdge ), previousShortPathArray );
+                        heap[ 0 ].mEdgePosition = j;
+                        NMShortPathSolver.siftDown( heap, heapSize );
+                    }
+                }
+            }
+            for (int j = 0; j < heapSize; ++j) {
+                aGroupList.add( heap[ j ] );
+                heap[ j ] = null;
+            }
+            //恢复前向边原有顺序，之后按距离稳定排序时相同距离的组同精确求解的顺序一致，没有实际剔除候选时结果同精确求解完全一致
+            aGroupList.sort( NMShortPathSolver.mEdgePositionComparator );
+        }
+        return limitDistance;
+    }
+
+    private static <A> void siftUp(PreviousEdgeShortPathGroup<A> [] aHeap, int aPosition) {
+        PreviousEdgeShortPathGroup<A> group = aHeap[ aPosition ];
+        while (aPosition > 0) {
+            int parent = (aPosition - 1) >>> 1;
+            if (aHeap[ parent ].mCurrentTotalDistance >= group.mCurrentTotalDistance) {
+                break;
+            }
+            aHeap[ aPosition ] = aHeap[ parent ];
+            aPosition = parent;
+        }
+        aHeap[ aPosition ] = group;
+    }
+
+    private static <A> void siftDown(PreviousEdgeShortPathGroup<A> [] aHeap, int aHeapSize) {
+        PreviousEdgeShortPathGroup<A> group = aHeap[ 0 ];
+        int position = 0;
+        for (int child = 1; child < aHeapSize; child = (position << 1) + 1) {
+            if (child + 1 < aHeapSize && aHeap[ child + 1 ].mCurrentTotalDistance > aHeap[ child ].mCurrentTotalDistance) {
+                ++child;
+            }
+            if (group.mCurrentTotalDistance >= aHeap[ child ].mCurrentTotalDistance) {
+                break;
+            }
+            aHeap[ position ] = aHeap[ child ];
+            position = child;
+        }
+        aHeap[ position ] = group;
+    }
+
+    //<前向边的最短路径组>
+    private static final class PreviousEdgeShortPathGroup<A> {
+        //前向边
+        NMShortPathEdge<A> mPreviousEdge;
+
+        //前向边的距离，多权重批量求解时为本求解器对应列的权重
+        double mDistanceBetweenVertexes;
+
+        //已经按照最短路径排好序的ShortPath
+        ShortPath<A> [] mPreviousShortPathArray;
+
+        //此前向边最短路径组的当前第一个最短路径到本"this"顶点的累积距离
+        double mCurrentTotalDistance;
+
+        //mPreviousShortPathArray 对应的下标
+        int mCurrentFirstPreviousShortPathIndex;
+
+        //束剪枝选取时前向边在当前顶点前向边数组中的下标
+        int mEdgePosition;
+
+        //线性链收缩求解时链上最后一个被收缩的顶点(即前向边的前向顶点)，此时 mPreviousShortPathArray 是链首顶点的；不收缩时为null
+        NMShortPathVertex<A> mLastContractedVertex;
+
+        //从链首顶点起链上各边的距离及其个数，实例重复利用时数组也重复利用
+        double [] mChainDistances;
+        int mChainLength;
+
+        //重置：重复临时实例利用
+        PreviousEdgeShortPathGroup<A> reset(NMShortPathEdge<A> aPreviousEdge, double aDistanceBetweenVertexes, ShortPath<A> [] aPreviousShortPathArray) {
+            this.mPreviousEdge = aPreviousEdge;
+            this.mDistanceBetweenVertexes = aDistanceBetweenVertexes;
+            this.mPreviousShortPathArray = aPreviousShortPathArray;
+            this.mLastContractedVertex = null;
+            this.mChainLength = 0;
+            this.mCurrentTotalDistance = aPreviousShortPathArray[ 0 ].mTotalDistance + aDistanceBetweenVertexes;
+            this.mCurrentFirstPreviousShortPathIndex = 0;
+            return this;
+        }
+
+        //跨过以 aLastContractedVertex 结尾的线性链：沿唯一前向边回溯到链首顶点，记下链上各边的距离
+        PreviousEdgeShortPathGroup<A> contract(NMShortPathVertex<A> aLastContractedVertex, int aChainHeadIndex) {
+            int chainLength = 0;
+            for (NMShortPathVertex<A> vertex = aLastContractedVertex; vertex.mGraphVertexIndex != aChainHeadIndex; vertex = vertex.mPreviousEdges[ 0 ].mPreviousVertex) {
+                ++chainLength;
+            }
+            double [] chainDistances = this.mChainDistances;
+            if (chainDistances == null || chainDistances.length < chainLength) {
+                this.mChainDistances = chainDistances = new double [ Math.max( chainLength, 16 ) ];
+            }
+            NMShortPathVertex<A> vertex = aLastContractedVertex;
+            for (int i = chainLength - 1; i >= 0; --i) {
+                NMShortPathEdge<A> chainEdge = vertex.mPreviousEdges[ 0 ];
+                chainDistances[ i ] = chainEdge.mDistanceBetweenVertexes;
+                vertex = chainEdge.mPreviousVertex;
+            }
+            this.mLastContractedVertex = aLastContractedVertex;
+            this.mChainLength = chainLength;
+            this.mCurrentTotalDistance = this.totalDistanceOf( this.mPreviousShortPathArray[ 0 ] );
+            return this;
+        }
+
+        //前向ShortPath累加到"this"顶点的累积距离，跨过线性链时按链上各边依次累加，同不收缩时逐个顶点累加的结果完全一致
+        double totalDistanceOf(ShortPath<A> aPreviousShortPath) {
+            double totalDistance = aPreviousShortPath.mTotalDistance;
+            for (int i = 0, chainLength = this.mChainLength; i < chainLength; ++i) {
+                totalDistance += this.mChainDistances[ i ];
+            }
+            return totalDistance + this.mDistanceBetweenVertexes;
+        }
+
+        //"this"顶点的VertexPath，跨过线性链时链上的顶点留待遍历时展开
+        VertexPath<A> newVertexPath(NMShortPathVertex<A> aCurrentVertex, VertexPath<A> aPreviousVertexPath) {
+            return this.mLastContractedVertex == null ? new VertexPath<A>( aCurrentVertex, aPreviousVertexPath, this.mDistanceBetweenVertexes ) : new ContractedVertexPath<A>( aCurrentVertex, aPreviousVertexPath, this.mDistanceBetweenVertexes, this.mLastContractedVertex );
+        }
+
+        //此前向边最短路径组的当前第一个最短路径
+        ShortPath<A> getCurrentFirstShortPath() {
+            return this.mPreviousShortPathArray[ this.mCurrentFirstPreviousShortPathIndex ];
+        }
+
+        public boolean changeToNextCurrentFirstShortPath() {
+            //移动到下一个作为本Group的当前最短累积距离
+            if (++this.mCurrentFirstPreviousShortPathIndex == this.mPreviousShortPathArray.length) {
+                return false;//完毕,本group所有ShortPath 都是当前"this"顶点的前NMShortPath路径段
+            }
+            else {
+                //游标下移后把到"this"顶点的最短距离累加起来以便下一轮进行比较
+                this.mCurrentTotalDistance = this.mLastContractedVertex == null ? this.mPreviousShortPathArray[ this.mCurrentFirstPreviousShortPathIndex ].mTotalDistance + this.mDistanceBetweenVertexes : this.totalDistanceOf( this.mPreviousShortPathArray[ this.mCurrentFirstPreviousShortPathIndex ] );
+                return true;//continue
+            }
+        }
+    }
+
+    //由于PreviousEdgeShortPathGroup实例本身就是临时用途的, 这些对象实例理所应当被重复利用, 避免每个顶点都临时创建大量的用完就丢的垃圾: 顶点越多,N越大那么垃圾数目就越大。
+    //测试表明当内存越接近使用极限,那么垃圾碎片的影响越大(可能GC消耗)，因此本优化还是有必要。当然，规模小的时候效果不明显
+    private static final class GroupCache<A> {
+        private ArrayList<PreviousEdgeShortPathGroup<A>> mCacheList;//当前空闲未用的
+        private ArrayList<PreviousEdgeShortPathGroup<A>> mUsedList;//当前正在用的
+
+        GroupCache(int aCacheInitialSize) {
+            this.mCacheList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aCacheInitialSize );
+            this.mUsedList = new ArrayList<PreviousEdgeShortPathGroup<A>>( aCacheInitialSize );
+        }
+
+        void reset() {
+            ArrayList<PreviousEdgeShortPathGroup<A>> cacheList = this.mCacheList;
+            ArrayList<PreviousEdgeShortPathGroup<A>> usedList = this.mUsedList;
+            for (int i = usedList.size() - 1; i >= 0; --i) {//代替Collection::addAll()因为其内部又要new 出一个新的 Object []数组,将抵消本Cache的优化
+                cacheList.add( usedList.remove( i ) );
+            }
+        }
+
+        PreviousEdgeShortPathGroup<A> fromCache(NMShortPathEdge<A> aPreviousEdge, double aDistanceBetweenVertexes, ShortPath<A> [] aPreviousShortPathArray) {
+            //cache中没有的话就 new 出个新实例
+            ArrayList<PreviousEdgeShortPathGroup<A>> cacheList = this.mCacheList;
+            int lastIndex = cacheList.size() - 1;//Array结构一定要从末端开始remove,绝对不能冲0开始，否则剩余元素往前挪的开销将抵消本cache的用途，而且还要得不偿失
+            PreviousEdgeShortPathGroup<A> reusedOne = lastIndex >= 0 ? cacheList.remove( lastIndex ) : new PreviousEdgeShortPathGroup<A>();
+            //记录到正在用的 list 中
+            this.mUsedList.add( reusedOne );
+            return reusedOne.reset( aPreviousEdge, aDistanceBetweenVertexes, aPreviousShortPathArray );
+
+            //可通过把上面注释掉来对比测试看
+            //return new PreviousEdgeShortPathGroup<A>().reset( aPreviousEdge, aDistanceBetweenVertexes, aPreviousShortPathArray );
+        }
+    }
+
+    //束剪枝选取的分组按前向边原有顺序的排序定义
+    private static Comparator<PreviousEdgeShortPathGroup<?>> mEdgePositionComparator = (aOne, aTwo) -> Integer.compare( aOne.mEdgePosition, aTwo.mEdgePosition );
+
+    //对分组按最短距离的排序定义
+    private static Comparator<PreviousEdgeShortPathGroup<?>> mGroupComparator = (aOne, aTwo) -> aOne.mCurrentTotalDistance < aTwo.mCurrentTotalDistance ? -1 : aOne.mCurrentTotalDistance == aTwo.mCurrentTotalDistance ? 0 : 1;
+}
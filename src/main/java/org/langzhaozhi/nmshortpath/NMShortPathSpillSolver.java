@@ -0,0 +1,434 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * 限定内存预算的NM-最短路径求解器。一般求解过程中每个顶点的ShortPath和VertexPath都是对象，整个图求解完毕前一直驻留内存，
+ * 超大规模的图会直接 OutOfMemoryError。这里每个顶点的求解结果改用紧凑的原始数组表 {@link SpillTable} 表示：
+ * 各ShortPath的累计距离、各VertexPath的回溯指针(前向边在前向边数组中的下标，及在前向顶点表中的VertexPath序号)。
+ * 驻留内存的表按LRU顺序管理，总字节数超过预算时把最久未访问的表写入临时溢出文件，之后需要时再读回来。
+ * 顶点按拓扑顺序求解，后向顶点需要的前向顶点一般都是最近求解的，因此局部性很好，大多数表写出后再也不会读回。
+ * 全部求解完毕后从终止顶点的表回溯，只为最终结果创建 VertexPath 对象。
+ * <p>求解结果同 {@link NMShortPathSolver} 的精确求解完全一致。预算只限制各顶点表的内存，不包括图本身；
+ * 当前顶点正在归并时其各前向顶点的表会临时超出预算</p>
+ */
+final class NMShortPathSpillSolver<A> {
+    private final int mNShortPathCount;//N值
+    private final int mMVertexPathCount;//M值
+    private final long mMemoryBudget;//驻留内存的各顶点表的字节数上限
+    private final Path mSpillDirectory;
+
+    //驻留内存的各顶点表，键为顶点在本次求解中的位置(终止顶点在最后), access-order 即LRU顺序
+    private final LinkedHashMap<Integer, SpillTable> mResidentTables = new LinkedHashMap<Integer, SpillTable>( 1024, 0.75f, true );
+    private long mResidentBytes;
+    private long [] mSpillPositions;//各顶点表在溢出文件中的位置，-1表示还没有写出过
+    private int [] mSpillLengths;
+    private FileChannel mSpillChannel;//第一次需要溢出时才创建
+    private long mSpillFileSize;
+    private int mReloadCount;
+
+    private final ArrayList<SpillGroup> mGroupList;
+    private final ArrayList<SpillGroup> mInsertGroupList;
+    private final ArrayList<SpillGroup> mGroupPool = new ArrayList<SpillGroup>();
+    private int [] mCachePreviousEdges = new int [ 16 ];
+    private int [] mCachePreviousSlots = new int [ 16 ];
+    private final double [] mCacheTotalDistances;
+    private final int [] mCacheVertexPathEnds;
+
+    NMShortPathSpillSolver(int aNShortPathCount, int aMVertexPathCount, long aMemoryBudget, Path aSpillDirectory) {
+        this.mNShortPathCount = aNShortPathCount;
+        this.mMVertexPathCount = aMVertexPathCount;
+        this.mMemoryBudget = aMemoryBudget;
+        this.mSpillDirectory = aSpillDirectory;
+        this.mGroupList = new ArrayList<SpillGroup>( aNShortPathCount );
+        this.mInsertGroupList = new ArrayList<SpillGroup>( aNShortPathCount );
+        this.mCacheTotalDistances = new double [ aNShortPathCount ];
+        this.mCacheVertexPathEnds = new int [ aNShortPathCount ];
+    }
+
+    /**
+     * 求解整个图，图必须已经准备就绪
+     */
+    NMShortPath<A> solve(NMShortPathGraph<A> aGraph) {
+        int graphVertexCount = aGraph.getGraphVertexCount();
+        this.mSpillPositions = new long [ graphVertexCount ];
+        this.mSpillLengths = new int [ graphVertexCount ];
+        Arrays.fill( this.mSpillPositions, -1L );
+        try {
+            //起始顶点只有一个ShortPath和一个VertexPath
+            this.store( 0, new SpillTable( new double [] {
+                0.0
+            }, new int [] {
+                1
+            }, new int [] {
+                -1
+            }, new int [] {
+                -1
+            } ) );
+            for (int i = 1, ilast = graphVertexCount - 1; i <= ilast; ++i) {
+                this.store( i, this.solveVertex( i < ilast ? aGraph.getVertexAt( i ) : aGraph.getEndVertex() ) );
+            }
+            return this.backtrack( aGraph );
+        }
+        finally {
+            this.closeSpillChannel();
+        }
+    }
+
+    /**
+     * 溢出文件的总字节数，没有发生溢出时为0
+     */
+    long getSpillFileSize() {
+        return this.mSpillFileSize;
+    }
+
+    /**
+     * 从溢出文件读回顶点表的次数
+     */
+    int getReloadCount() {
+        return this.mReloadCount;
+    }
+
+    private int positionOf(NMShortPathVertex<A> aVertex) {
+        return aVertex.mGraphVertexIndex == NMShortPathGraph.END_VERTEX_INDEX ? this.mSpillPositions.length - 1 : aVertex.mGraphVertexIndex;
+    }
+
+    /**
+     * 计算一个顶点的表，其所有前向顶点的表必须已经计算好了。归并过程同 NMShortPathSolver::solveVertex 完全一致，
+     * 只是各组的游标指向前向顶点表中的ShortPath序号，新VertexPath只记录回溯指针
+     */
+    private SpillTable solveVertex(NMShortPathVertex<A> aCurrentVertex) {
+        NMShortPathEdge<A> [] previousEdgeArray = aCurrentVertex.mPreviousEdges;
+        int previousEdgeCount = previousEdgeArray.length;
+        if (previousEdgeCount == 1) {
+            //只有一条前向边,各ShortPath的累计距离直接累加,VertexPath一一对应
+            SpillTable previousTable = this.load( this.positionOf( previousEdgeArray[ 0 ].mPreviousVertex ) );
+            double distanceBetweenVertexes = previousEdgeArray[ 0 ].mDistanceBetweenVertexes;
+            int shortPathCount = previousTable.mTotalDistances.length;
+            double [] totalDistances = new double [ shortPathCount ];
+            for (int j = 0; j < shortPathCount; ++j) {
+                totalDistances[ j ] = previousTable.mTotalDistances[ j ] + distanceBetweenVertexes;
+            }
+            int vertexPathCount = previousTable.getVertexPathCount();
+            int [] previousSlots = new int [ vertexPathCount ];
+            for (int k = 0; k < vertexPathCount; ++k) {
+                previousSlots[ k ] = k;
+            }
+            return new SpillTable( totalDistances, previousTable.mVertexPathEnds.clone(), new int [ vertexPathCount ], previousSlots );
+        }
+        int nshortPathCount = this.mNShortPathCount;
+        int mvertexPathCount = this.mMVertexPathCount;
+        ArrayList<SpillGroup> groupPool = this.mGroupPool;
+        this.mGroupList.clear();
+        List<SpillGroup> groupList = this.mGroupList;
+        ArrayList<SpillGroup> insertGroupList = this.mInsertGroupList;
+        for (int j = 0; j < previousEdgeCount; ++j) {
+            SpillGroup group = j < groupPool.size() ? groupPool.get( j ) : this.newPooledGroup();
+            group.reset( j, previousEdgeArray[ j ].mDistanceBetweenVertexes, this.load( this.positionOf( previousEdgeArray[ j ].mPreviousVertex ) ) );
+            groupList.add( group );
+        }
+        int groupCount = previousEdgeCount;
+        groupList.sort( NMShortPathSpillSolver.mGroupComparator );
+
+        double [] totalDistances = this.mCacheTotalDistances;
+        int [] vertexPathEnds = this.mCacheVertexPathEnds;
+        int shortPathCount = 0;
+        int m = 0, mlast = mvertexPathCount - 1;
+        for (int n = 0, nlast = nshortPathCount - 1; n <= nlast && m <= mlast && groupCount > 0; ++n) {
+            double minDistance = groupList.get( 0 ).mCurrentTotalDistance;
+            int minDistanceGroupCount = groupCount;
+            insertGroupList.clear();
+            for (int k = 0; k < groupCount; ++k) {
+                SpillGroup nextMinGroup = groupList.get( k );
+                if (nextMinGroup.mCurrentTotalDistance == minDistance) {
+                    SpillTable previousTable = nextMinGroup.mPreviousTable;
+                    int cursor = nextMinGroup.mCursor;
+                    for (int l = cursor == 0 ? 0 : previousTable.mVertexPathEnds[ cursor - 1 ], lend = previousTable.mVertexPathEnds[ cursor ]; l < lend && m <= mlast; ++l, ++m) {
+                        this.appendVertexPath( m, nextMinGroup.mEdgePosition, l );
+                    }
+                    if (nextMinGroup.changeToNextCurrentFirstShortPath()) {
+                        insertGroupList.add( nextMinGroup );
+                    }
+                }
+                else {
+                    minDistanceGroupCount = k;
+                    break;
+                }
+            }
+            totalDistances[ shortPathCount ] = minDistance;
+            vertexPathEnds[ shortPathCount++ ] = m;
+            if (n < nlast && m <= mlast) {
+                //同 NMShortPathSolver 一样: subList 代替 remove,剩余的已经排好序,只把游标下移了的那些组排序后归并插入
+                groupList = groupList.subList( minDistanceGroupCount, groupCount );
+                int needInsertSize = insertGroupList.size();
+                if (needInsertSize > 0) {
+                    insertGroupList.sort( NMShortPathSpillSolver.mGroupComparator );
+                    for (int k = 0, nextInsertPosition = 0, remainingSize = groupCount - minDistanceGroupCount; k < needInsertSize; ++k) {
+                        SpillGroup nextInsertGroup = insertGroupList.get( k );
+                        double currentInsertFirstTotalDistance = nextInsertGroup.mCurrentTotalDistance;
+                        for (; nextInsertPosition < remainingSize; ++nextInsertPosition) {
+                            if (groupList.get( nextInsertPosition ).mCurrentTotalDistance >= currentInsertFirstTotalDistance) {
+                                break;
+                            }
+                        }
+                        groupList.add( nextInsertPosition, nextInsertGroup );
+                        ++remainingSize;
+                        ++nextInsertPosition;
+                    }
+                }
+                groupCount = groupList.size();
+            }
+        }
+        for (int j = 0; j < previousEdgeCount; ++j) {
+            groupPool.get( j ).mPreviousTable = null;//不要让池中的组拖住已经可以溢出的表
+        }
+        int vertexPathCount = vertexPathEnds[ shortPathCount - 1 ];
+        return new SpillTable( Arrays.copyOf( totalDistances, shortPathCount ), Arrays.copyOf( vertexPathEnds, shortPathCount ), Arrays.copyOf( this.mCachePreviousEdges, vertexPathCount ), Arrays.copyOf( this.mCachePreviousSlots, vertexPathCount ) );
+    }
+
+    private SpillGroup newPooledGroup() {
+        SpillGroup group = new SpillGroup();
+        this.mGroupPool.add( group );
+        return group;
+    }
+
+    private void appendVertexPath(int aSlot, int aPreviousEdgePosition, int aPreviousSlot) {
+        if (aSlot == this.mCachePreviousEdges.length) {
+            this.mCachePreviousEdges = Arrays.copyOf( this.mCachePreviousEdges, aSlot << 1 );
+            this.mCachePreviousSlots = Arrays.copyOf( this.mCachePreviousSlots, aSlot << 1 );
+        }
+        this.mCachePreviousEdges[ aSlot ] = aPreviousEdgePosition;
+        this.mCachePreviousSlots[ aSlot ] = aPreviousSlot;
+    }
+
+    /**
+     * 从终止顶点的表沿回溯指针创建最终结果的 VertexPath，共同的前段只创建一次(同一般求解一样是共享的)
+     */
+    @SuppressWarnings("unchecked")
+    private NMShortPath<A> backtrack(NMShortPathGraph<A> aGraph) {
+        int endPosition = this.mSpillPositions.length - 1;
+        SpillTable endTable = this.load( endPosition );
+        HashMap<Long, VertexPath<A>> createdVertexPaths = new HashMap<Long, VertexPath<A>>();
+        VertexPath<A> startVertexPath = new VertexPath<A>( aGraph.getStartVertex() );
+        ArrayList<NMShortPathVertex<A>> chainVertexes = new ArrayList<NMShortPathVertex<A>>();
+        ArrayList<NMShortPathEdge<A>> chainEdges = new ArrayList<NMShortPathEdge<A>>();
+        ArrayList<Long> chainKeys = new ArrayList<Long>();
+        int shortPathCount = endTable.mTotalDistances.length;
+        ShortPath<A> [] shortPaths = new ShortPath [ shortPathCount ];
+        for (int j = 0; j < shortPathCount; ++j) {
+            int firstSlot = j == 0 ? 0 : endTable.mVertexPathEnds[ j - 1 ];
+            VertexPath<A> [] vertexPaths = new VertexPath [ endTable.mVertexPathEnds[ j ] - firstSlot ];
+            for (int k = 0; k < vertexPaths.length; ++k) {
+                //回溯到起始顶点或者已经创建过的 VertexPath 为止
+                chainVertexes.clear();
+                chainEdges.clear();
+                chainKeys.clear();
+                NMShortPathVertex<A> currentVertex = aGraph.getEndVertex();
+                int position = endPosition;
+                int slot = firstSlot + k;
+                VertexPath<A> previousVertexPath = startVertexPath;
+                while (position != 0) {
+                    Long key = ((long) position << 32) | slot;
+                    VertexPath<A> created = createdVertexPaths.get( key );
+                    if (created != null) {
+                        previousVertexPath = created;
+                        break;
+                    }
+                    SpillTable table = this.load( position );
+                    NMShortPathEdge<A> previousEdge = currentVertex.mPreviousEdges[ table.mPreviousEdges[ slot ] ];
+                    chainVertexes.add( currentVertex );
+                    chainEdges.add( previousEdge );
+                    chainKeys.add( key );
+                    slot = table.mPreviousSlots[ slot ];
+                    currentVertex = previousEdge.mPreviousVertex;
+                    position = currentVertex.mGraphVertexIndex;
+                }
+                for (int l = chainVertexes.size() - 1; l >= 0; --l) {
+                    previousVertexPath = new VertexPath<A>( chainVertexes.get( l ), previousVertexPath, chainEdges.get( l ).mDistanceBetweenVertexes );
+                    createdVertexPaths.put( chainKeys.get( l ), previousVertexPath );
+                }
+                vertexPaths[ k ] = previousVertexPath;
+            }
+            shortPaths[ j ] = new ShortPath<A>( endTable.mTotalDistances[ j ], vertexPaths );
+        }
+        return new NMShortPath<A>( shortPaths );
+    }
+
+    private void store(int aPosition, SpillTable aTable) {
+        this.mResidentTables.put( aPosition, aTable );
+        this.mResidentBytes += aTable.estimateBytes();
+        if (this.mResidentBytes > this.mMemoryBudget) {
+            //从最久未访问的开始写出，刚求解的这个保留
+            for (Iterator<Map.Entry<Integer, SpillTable>> it = this.mResidentTables.entrySet().iterator(); this.mResidentBytes > this.mMemoryBudget && this.mResidentTables.size() > 1;) {
+                Map.Entry<Integer, SpillTable> eldest = it.next();
+                int position = eldest.getKey();
+                SpillTable table = eldest.getValue();
+                if (this.mSpillPositions[ position ] < 0) {
+                    //表本身不可变，写出过一次的以后再淘汰直接丢弃即可
+                    this.spill( position, table );
+                }
+                this.mResidentBytes -= table.estimateBytes();
+                it.remove();
+            }
+        }
+    }
+
+    private SpillTable load(int aPosition) {
+        SpillTable table = this.mResidentTables.get( aPosition );
+        if (table == null) {
+            ByteBuffer buffer = ByteBuffer.allocate( this.mSpillLengths[ aPosition ] );
+            try {
+                for (long filePosition = this.mSpillPositions[ aPosition ]; buffer.hasRemaining();) {
+                    int readCount = this.mSpillChannel.read( buffer, filePosition );
+                    if (readCount < 0) {
+                        throw new IOException( "Unexpected End Of Spill File" );
+                    }
+                    filePosition += readCount;
+                }
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException( e );
+            }
+            buffer.flip();
+            table = SpillTable.readFrom( buffer );
+            ++this.mReloadCount;
+            this.store( aPosition, table );
+        }
+        return table;
+    }
+
+    private void spill(int aPosition, SpillTable aTable) {
+        try {
+            if (this.mSpillChannel == null) {
+                Path spillFile = this.mSpillDirectory == null ? Files.createTempFile( "nmshortpath-", ".spill" ) : Files.createTempFile( this.mSpillDirectory, "nmshortpath-", ".spill" );
+                this.mSpillChannel = FileChannel.open( spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE );
+            }
+            ByteBuffer buffer = ByteBuffer.allocate( aTable.byteLength() );
+            aTable.writeTo( buffer );
+            buffer.flip();
+            long filePosition = this.mSpillFileSize;
+            while (buffer.hasRemaining()) {
+                filePosition += this.mSpillChannel.write( buffer, filePosition );
+            }
+            this.mSpillPositions[ aPosition ] = this.mSpillFileSize;
+            this.mSpillLengths[ aPosition ] = aTable.byteLength();
+            this.mSpillFileSize = filePosition;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    private void closeSpillChannel() {
+        if (this.mSpillChannel != null) {
+            try {
+                this.mSpillChannel.close();//DELETE_ON_CLOSE: 关闭即删除
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException( e );
+            }
+            finally {
+                this.mSpillChannel = null;
+            }
+        }
+    }
+
+    /**
+     * 一个顶点的紧凑表：第j个ShortPath的累计距离为 mTotalDistances[j]，其VertexPath的序号为 [mVertexPathEnds[j-1], mVertexPathEnds[j])；
+     * 第k个VertexPath的前向顶点为前向边数组第 mPreviousEdges[k] 条边的前向顶点，对应前向顶点表中的第 mPreviousSlots[k] 个VertexPath
+     */
+    static final class SpillTable {
+        final double [] mTotalDistances;
+        final int [] mVertexPathEnds;
+        final int [] mPreviousEdges;
+        final int [] mPreviousSlots;
+
+        SpillTable(double [] aTotalDistances, int [] aVertexPathEnds, int [] aPreviousEdges, int [] aPreviousSlots) {
+            this.mTotalDistances = aTotalDistances;
+            this.mVertexPathEnds = aVertexPathEnds;
+            this.mPreviousEdges = aPreviousEdges;
+            this.mPreviousSlots = aPreviousSlots;
+        }
+
+        int getVertexPathCount() {
+            return this.mPreviousEdges.length;
+        }
+
+        //对象头及四个数组头按16字节估算
+        long estimateBytes() {
+            return 80L + this.byteLength();
+        }
+
+        //溢出文件中的布局：ShortPath数目,VertexPath数目,各累计距离,各VertexPath序号上界,各前向边下标,各前向VertexPath序号
+        int byteLength() {
+            return 8 + 12 * this.mTotalDistances.length + 8 * this.mPreviousEdges.length;
+        }
+
+        void writeTo(ByteBuffer aBuffer) {
+            aBuffer.putInt( this.mTotalDistances.length ).putInt( this.mPreviousEdges.length );
+            aBuffer.asDoubleBuffer().put( this.mTotalDistances );
+            aBuffer.position( aBuffer.position() + 8 * this.mTotalDistances.length );
+            aBuffer.asIntBuffer().put( this.mVertexPathEnds ).put( this.mPreviousEdges ).put( this.mPreviousSlots );
+            aBuffer.position( aBuffer.position() + 4 * (this.mVertexPathEnds.length + 2 * this.mPreviousEdges.length) );
+        }
+
+        static SpillTable readFrom(ByteBuffer aBuffer) {
+            int shortPathCount = aBuffer.getInt();
+            int vertexPathCount = aBuffer.getInt();
+            double [] totalDistances = new double [ shortPathCount ];
+            aBuffer.asDoubleBuffer().get( totalDistances );
+            aBuffer.position( aBuffer.position() + 8 * shortPathCount );
+            int [] vertexPathEnds = new int [ shortPathCount ];
+            int [] previousEdges = new int [ vertexPathCount ];
+            int [] previousSlots = new int [ vertexPathCount ];
+            aBuffer.asIntBuffer().get( vertexPathEnds ).get( previousEdges ).get( previousSlots );
+            return new SpillTable( totalDistances, vertexPathEnds, previousEdges, previousSlots );
+        }
+    }
+
+    //<前向边的最短路径组>，游标指向前向顶点表中的ShortPath序号
+    private static final class SpillGroup {
+        int mEdgePosition;
+        double mDistanceBetweenVertexes;
+        SpillTable mPreviousTable;
+        int mCursor;
+        double mCurrentTotalDistance;
+
+        void reset(int aEdgePosition, double aDistanceBetweenVertexes, SpillTable aPreviousTable) {
+            this.mEdgePosition = aEdgePosition;
+            this.mDistanceBetweenVertexes = aDistanceBetweenVertexes;
+            this.mPreviousTable = aPreviousTable;
+            this.mCursor = 0;
+            this.mCurrentTotalDistance = aPreviousTable.mTotalDistances[ 0 ] + aDistanceBetweenVertexes;
+        }
+
+        boolean changeToNextCurrentFirstShortPath() {
+            if (++this.mCursor == this.mPreviousTable.mTotalDistances.length) {
+                return false;
+            }
+            else {
+                this.mCurrentTotalDistance = this.mPreviousTable.mTotalDistances[ this.mCursor ] + this.mDistanceBetweenVertexes;
+                return true;
+            }
+        }
+    }
+
+    private static Comparator<SpillGroup> mGroupComparator = (aOne, aTwo) -> aOne.mCurrentTotalDistance < aTwo.mCurrentTotalDistance ? -1 : aOne.mCurrentTotalDistance == aTwo.mCurrentTotalDistance ? 0 : 1;
+}
@@ -0,0 +1,218 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * 从任意顺序的边列表创建NM-最短路径图。NMShortPathVertex 要求按拓扑顺序创建(先创建所有前向顶点)，
+ * NMShortPathGraphWrapper 也要求边的前向顶点下标小于后向顶点下标，而从其他系统导入的图的顶点顺序往往是任意的。
+ * 本构建器内置拓扑排序：边只以原始数组(int [] from, int [] to, double [] distance)形式保存，
+ * 再建立同样是原始数组的邻接结构(CSR)，按层并行执行Kahn拓扑排序并检测环，最后按拓扑顺序直接创建出图模型，
+ * 整个过程不会产生图的第二份对象拷贝，可以支撑上亿条边的规模。
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ */
+public final class NMShortPathUnorderedGraphBuilder<A> {
+    private static final int PARALLEL_THRESHOLD = 1 << 12;//一层顶点数目超过此值才并行处理，太小的层并行反而得不偿失
+
+    private final int mVertexCount;
+    private int [] mFromVertexes;
+    private int [] mToVertexes;
+    private double [] mDistances;
+    private int mEdgeCount;
+
+    /**
+     * @param aVertexCount 顶点数目(包括起始顶点和终止顶点)，顶点标识为 0 到 aVertexCount-1 的任意顺序
+     * @param aExpectedEdgeCount 预期边的数目，用于预先分配原始数组
+     */
+    public NMShortPathUnorderedGraphBuilder(int aVertexCount, int aExpectedEdgeCount) {
+        if (aVertexCount <= 2 || aExpectedEdgeCount < 0) {
+            throw new IllegalArgumentException( "VertexCount(" + aVertexCount + ") or ExpectedEdgeCount(" + aExpectedEdgeCount + ") not valid" );
+        }
+        this.mVertexCount = aVertexCount;
+        this.mFromVertexes = new int [ aExpectedEdgeCount ];
+        this.mToVertexes = new int [ aExpectedEdgeCount ];
+        this.mDistances = new double [ aExpectedEdgeCount ];
+    }
+
+    /**
+     * 直接采用应用已经准备好的边数组，不做任何拷贝，之后应用不能再修改这些数组
+     * @param aVertexCount 顶点数目(包括起始顶点和终止顶点)
+     * @param aFromVertexes 各边的前向顶点
+     * @param aToVertexes 各边的后向顶点
+     * @param aDistances 各边的距离
+     */
+    public NMShortPathUnorderedGraphBuilder(int aVertexCount, int [] aFromVertexes, int [] aToVertexes, double [] aDistances) {
+        if (aVertexCount <= 2 || aFromVertexes.length != aToVertexes.length || aFromVertexes.length != aDistances.length) {
+            throw new IllegalArgumentException( "VertexCount(" + aVertexCount + ") or Edge Arrays Length not valid" );
+        }
+        this.mVertexCount = aVertexCount;
+        this.mFromVertexes = aFromVertexes;
+        this.mToVertexes = aToVertexes;
+        this.mDistances = aDistances;
+        this.mEdgeCount = aFromVertexes.length;
+        for (int i = 0; i < this.mEdgeCount; ++i) {
+            this.checkEdge( aFromVertexes[ i ], aToVertexes[ i ] );
+        }
+    }
+
+    /**
+     * 添加一条边，顺序任意
+     */
+    public NMShortPathUnorderedGraphBuilder<A> addEdge(int aFromVertex, int aToVertex, double aDistance) {
+        this.checkEdge( aFromVertex, aToVertex );
+        int edgeCount = this.mEdgeCount;
+        if (edgeCount == this.mFromVertexes.length) {
+            int newCapacity = Math.max( 16, edgeCount + (edgeCount >> 1) );
+            this.mFromVertexes = Arrays.copyOf( this.mFromVertexes, newCapacity );
+            this.mToVertexes = Arrays.copyOf( this.mToVertexes, newCapacity );
+            this.mDistances = Arrays.copyOf( this.mDistances, newCapacity );
+        }
+        this.mFromVertexes[ edgeCount ] = aFromVertex;
+        this.mToVertexes[ edgeCount ] = aToVertex;
+        this.mDistances[ edgeCount ] = aDistance;
+        this.mEdgeCount = edgeCount + 1;
+        return this;
+    }
+
+    private void checkEdge(int aFromVertex, int aToVertex) {
+        if (aFromVertex < 0 || aFromVertex >= this.mVertexCount || aToVertex < 0 || aToVertex >= this.mVertexCount || aFromVertex == aToVertex) {
+            throw new IllegalArgumentException( "FromVertex(" + aFromVertex + ") or ToVertex(" + aToVertex + ") not valid" );
+        }
+    }
+
+    public int getVertexCount() {
+        return this.mVertexCount;
+    }
+
+    public int getEdgeCount() {
+        return this.mEdgeCount;
+    }
+
+    /**
+     * 拓扑排序：按层并行的Kahn算法，同一层内按顶点标识排序以保证结果确定。
+     * 要求 aStartVertex 是唯一没有前向边的顶点，aEndVertex 是唯一没有后向边的顶点，因此起始顶点必定排在第一个，终止顶点必定排在最后一个
+     * @param aStartVertex 起始顶点
+     * @param aEndVertex 终止顶点
+     * @return 拓扑顺序的顶点标识
+     * @throws IllegalArgumentException 起始终止顶点不满足要求，或者存在环
+     */
+    public int [] topologicalSort(int aStartVertex, int aEndVertex) {
+        int vertexCount = this.mVertexCount;
+        int edgeCount = this.mEdgeCount;
+        int [] fromVertexes = this.mFromVertexes;
+        int [] toVertexes = this.mToVertexes;
+        if (aStartVertex < 0 || aStartVertex >= vertexCount || aEndVertex < 0 || aEndVertex >= vertexCount || aStartVertex == aEndVertex) {
+            throw new IllegalArgumentException( "StartVertex(" + aStartVertex + ") or EndVertex(" + aEndVertex + ") not valid" );
+        }
+        //后向邻接结构(CSR): postOffsets[v]..postOffsets[v+1] 是顶点v的各后向顶点
+        int [] postOffsets = new int [ vertexCount + 1 ];
+        int [] inDegrees = new int [ vertexCount ];
+        for (int i = 0; i < edgeCount; ++i) {
+            ++postOffsets[ fromVertexes[ i ] + 1 ];
+            ++inDegrees[ toVertexes[ i ] ];
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            boolean noPostVertex = postOffsets[ v + 1 ] == 0;
+            if ((inDegrees[ v ] == 0) != (v == aStartVertex) || noPostVertex != (v == aEndVertex)) {
+                //除了起始顶点外都必须有前向边，除了终止顶点外都必须有后向边
+                throw new IllegalArgumentException( "Vertex(" + v + ") not valid: inDegree=" + inDegrees[ v ] + ", hasPostVertex=" + !noPostVertex );
+            }
+            postOffsets[ v + 1 ] += postOffsets[ v ];
+        }
+        int [] postVertexes = new int [ edgeCount ];
+        int [] fillPositions = Arrays.copyOf( postOffsets, vertexCount );
+        for (int i = 0; i < edgeCount; ++i) {
+            postVertexes[ fillPositions[ fromVertexes[ i ] ]++ ] = toVertexes[ i ];
+        }
+        fillPositions = null;
+
+        //order 本身同时充当各层的队列：[levelStart, levelEnd) 是当前层，下一层依次追加在其后
+        AtomicIntegerArray remainingInDegrees = new AtomicIntegerArray( inDegrees );
+        inDegrees = null;
+        int [] order = new int [ vertexCount ];
+        order[ 0 ] = aStartVertex;
+        AtomicInteger orderSize = new AtomicInteger( 1 );
+        for (int levelStart = 0, levelEnd = 1; levelStart < levelEnd; levelStart = levelEnd, levelEnd = orderSize.get()) {
+            IntStream levelStream = IntStream.range( levelStart, levelEnd );
+            if (levelEnd - levelStart >= NMShortPathUnorderedGraphBuilder.PARALLEL_THRESHOLD) {
+                levelStream = levelStream.parallel();
+            }
+            levelStream.forEach( (aOrderPosition) -> {
+                int vertex = order[ aOrderPosition ];
+                for (int e = postOffsets[ vertex ], elast = postOffsets[ vertex + 1 ]; e < elast; ++e) {
+                    int postVertex = postVertexes[ e ];
+                    if (remainingInDegrees.decrementAndGet( postVertex ) == 0) {
+                        order[ orderSize.getAndIncrement() ] = postVertex;
+                    }
+                }
+            } );
+            //并行时下一层的追加顺序不确定，排下序使结果确定
+            Arrays.sort( order, levelEnd, orderSize.get() );
+        }
+        if (orderSize.get() != vertexCount) {
+            throw new IllegalArgumentException( "The Graph Has Cycle: " + (vertexCount - orderSize.get()) + " Vertexes Not Sorted" );
+        }
+        return order;
+    }
+
+    /**
+     * 拓扑排序后按拓扑顺序创建NM-最短路径图
+     * @param aNShortPathCount N值
+     * @param aMVertexPathCount M值
+     * @param aVertexAttachments 各顶点绑定的数据，由顶点标识对应
+     * @param aStartVertex 起始顶点
+     * @param aEndVertex 终止顶点
+     * @return 已经准备就绪的图，顶点下标是拓扑顺序而非原始顶点标识，原始标识可以通过绑定数据来对应
+     */
+    public NMShortPathGraph<A> build(int aNShortPathCount, int aMVertexPathCount, A [] aVertexAttachments, int aStartVertex, int aEndVertex) {
+        int vertexCount = this.mVertexCount;
+        if (aVertexAttachments.length != vertexCount) {
+            throw new IllegalArgumentException( "VertexAttachments Length(" + aVertexAttachments.length + ") not equal to VertexCount(" + vertexCount + ")" );
+        }
+        int [] order = this.topologicalSort( aStartVertex, aEndVertex );
+        int edgeCount = this.mEdgeCount;
+        int [] fromVertexes = this.mFromVertexes;
+        int [] toVertexes = this.mToVertexes;
+        double [] distances = this.mDistances;
+
+        //前向邻接结构(CSR): previousOffsets[v]..previousOffsets[v+1] 是顶点v的各前向边的边下标
+        int [] previousOffsets = new int [ vertexCount + 1 ];
+        for (int i = 0; i < edgeCount; ++i) {
+            ++previousOffsets[ toVertexes[ i ] + 1 ];
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            previousOffsets[ v + 1 ] += previousOffsets[ v ];
+        }
+        int [] previousEdges = new int [ edgeCount ];
+        int [] fillPositions = Arrays.copyOf( previousOffsets, vertexCount );
+        for (int i = 0; i < edgeCount; ++i) {
+            previousEdges[ fillPositions[ toVertexes[ i ] ]++ ] = i;
+        }
+        fillPositions = null;
+
+        NMShortPathGraph<A> graphModel = new NMShortPathGraph<A>( aNShortPathCount, aMVertexPathCount, aVertexAttachments[ aStartVertex ], aVertexAttachments[ aEndVertex ] );
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<A> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        vertexes[ aStartVertex ] = graphModel.getStartVertex();
+        for (int i = 1, ilast = vertexCount - 1; i < ilast; ++i) {//order[0]是起始顶点,order[vertexCount-1]是终止顶点
+            int vertex = order[ i ];
+            vertexes[ vertex ] = new NMShortPathVertex<A>( aVertexAttachments[ vertex ], NMShortPathUnorderedGraphBuilder.toPreviousEdges( vertex, previousOffsets, previousEdges, fromVertexes, distances, vertexes ) );
+        }
+        graphModel.connectAllToEndVertex( NMShortPathUnorderedGraphBuilder.toPreviousEdges( aEndVertex, previousOffsets, previousEdges, fromVertexes, distances, vertexes ) );
+        return graphModel;
+    }
+
+    private static <A> NMShortPathEdge<A> [] toPreviousEdges(int aVertex, int [] aPreviousOffsets, int [] aPreviousEdges, int [] aFromVertexes, double [] aDistances, NMShortPathVertex<A> [] aVertexes) {
+        int previousOffset = aPreviousOffsets[ aVertex ];
+        @SuppressWarnings("unchecked")
+        NMShortPathEdge<A> [] edges = new NMShortPathEdge [ aPreviousOffsets[ aVertex + 1 ] - previousOffset ];
+        for (int j = 0; j < edges.length; ++j) {
+            int edgeIndex = aPreviousEdges[ previousOffset + j ];
+            edges[ j ] = new NMShortPathEdge<A>( aVertexes[ aFromVertexes[ edgeIndex ] ], aDistances[ edgeIndex ] );//拓扑顺序保证前向顶点已经创建
+        }
+        return edges;
+    }
+}
@@ -25,31 +25,66 @@ public final class NMShortPathVertex<A> implements Vertex<A> {
     }
 
     /**
-     * 创建一个有若干条前向边的顶点，至少有一条前向边
+     * 创建一个有若干条前向边的顶点，至少有一条前向边，所属的图从前向顶点推断。
+     * 前向顶点都是做过快照的前缀顶点时(见 {@link NMShortPathGraph#snapshot(Object)})无法确定加入哪个图，此时必须用
+     * {@link #NMShortPathVertex(NMShortPathGraph, Object, NMShortPathEdge...)} 明确指定
      * @param aAttachment 此顶点附带数据
      * @param aPreviousEdges 连到此顶点的前向边，至少有一条
+     * @throws IllegalArgumentException 没有前向边，或者前向顶点都是为各分支图共享的前缀顶点
      */
     public NMShortPathVertex(A aAttachment, @SuppressWarnings("unchecked") NMShortPathEdge<A>... aPreviousEdges) {
+        this( NMShortPathVertex.ownerGraphOf( aPreviousEdges ), aAttachment, aPreviousEdges );
+    }
+
+    /**
+     * 在指定的图中创建一个有若干条前向边的顶点，用于分支图：前向顶点可以是分支图共享的前缀顶点，它们本身属于创建快照的那个图，
+     * 因此不能从前向边推断出所属的图
+     * @param aOwnerGraph 此顶点所属的图
+     * @param aAttachment 此顶点附带数据
+     * @param aPreviousEdges 连到此顶点的前向边，至少有一条，各前向顶点都必须属于 aOwnerGraph
+     * @see NMShortPathGraph#owns(NMShortPathVertex)
+     */
+    public NMShortPathVertex(NMShortPathGraph<A> aOwnerGraph, A aAttachment, @SuppressWarnings("unchecked") NMShortPathEdge<A>... aPreviousEdges) {
         if (aPreviousEdges.length == 0) {
             //至少传递一条前向边
             throw new IllegalArgumentException( "AtLeast Pass One Previous Edge With One Previous Vertex" );
         }
-        this.mAttachment = aAttachment;
-        this.mOwnerGraph = aPreviousEdges[ 0 ].mPreviousVertex.mOwnerGraph;
-        this.mPreviousEdges = aPreviousEdges;
-        this.mGraphVertexIndex = this.mOwnerGraph.generateVertexIndex();
-
-        NMShortPathVertex<A> endVertex = this.mOwnerGraph.getEndVertex();
+        NMShortPathVertex<A> endVertex = aOwnerGraph.getEndVertex();
         for (int i = 0; i < aPreviousEdges.length; ++i) {
             //前向顶点不能是endVertex,父图不能是其他图
-            if (aPreviousEdges[ i ].mPreviousVertex == endVertex || aPreviousEdges[ i ].mPreviousVertex.mOwnerGraph != this.mOwnerGraph) {
+            if (aPreviousEdges[ i ].mPreviousVertex == endVertex || !aOwnerGraph.owns( aPreviousEdges[ i ].mPreviousVertex )) {
                 throw new IllegalArgumentException( "Previous Edge[" + i + "] not valid" );
             }
         }
+        this.mAttachment = aAttachment;
+        this.mOwnerGraph = aOwnerGraph;
+        this.mPreviousEdges = aPreviousEdges;
+        this.mGraphVertexIndex = this.mOwnerGraph.generateVertexIndex();
+        NMShortPathVertex.sortPreviousEdges( this.mPreviousEdges );//先排序再加入图中：流水求解时加入图中即可能被求解
         this.mOwnerGraph.addNewCreatedVertex( this );
-        //初始对多个前向边按照相邻距离排下序,一般可以稍微加快后面NMShortPath计算过程
-        if (this.mPreviousEdges.length > 1) {
-            Arrays.sort( this.mPreviousEdges, (aOne, aTwo) -> aOne.mDistanceBetweenVertexes < aTwo.mDistanceBetweenVertexes ? -1 : aOne.mDistanceBetweenVertexes == aTwo.mDistanceBetweenVertexes ? 0 : 1 );
+    }
+
+    private static <A> NMShortPathGraph<A> ownerGraphOf(NMShortPathEdge<A> [] aPreviousEdges) {
+        if (aPreviousEdges.length == 0) {
+            //至少传递一条前向边
+            throw new IllegalArgumentException( "AtLeast Pass One Previous Edge With One Previous Vertex" );
+        }
+        //前缀顶点属于做快照的图，但同时为各分支图共享，只能从非共享的前向顶点推断
+        for (NMShortPathEdge<A> previousEdge : aPreviousEdges) {
+            NMShortPathVertex<A> previousVertex = previousEdge.mPreviousVertex;
+            if (!previousVertex.mOwnerGraph.isSharedBySnapshot( previousVertex )) {
+                return previousVertex.mOwnerGraph;
+            }
+        }
+        throw new IllegalArgumentException( "All Previous Vertexes Are Shared By Forks Of A Snapshot, The Owner Graph Must Be Specified" );
+    }
+
+    /**
+     * 初始对多个前向边按照相邻距离排下序,一般可以稍微加快后面NMShortPath计算过程
+     */
+    static <A> void sortPreviousEdges(NMShortPathEdge<A> [] aPreviousEdges) {
+        if (aPreviousEdges.length > 1) {
+            Arrays.sort( aPreviousEdges, (aOne, aTwo) -> aOne.mDistanceBetweenVertexes < aTwo.mDistanceBetweenVertexes ? -1 : aOne.mDistanceBetweenVertexes == aTwo.mDistanceBetweenVertexes ? 0 : 1 );
         }
     }
 
@@ -57,6 +92,13 @@ public final class NMShortPathVertex<A> implements Vertex<A> {
         return this.mOwnerGraph;
     }
 
+    /**
+     * 顶点下标，即创建顺序，也是拓扑顺序：起始顶点为0，终止顶点为0xFFFFFFFF
+     */
+    public int getGraphVertexIndex() {
+        return this.mGraphVertexIndex;
+    }
+
     @Override
     public A getAttachment() {
         return this.mAttachment;
@@ -65,13 +107,17 @@ public final class NMShortPathVertex<A> implements Vertex<A> {
     /**
      * 令本顶点连接到终止顶点，等价于调用 theVertex.getOwnerContext().connectToEndVertex( theVertex, distanceToEndVertex );
      * @param aDistanceToEndVertex
+     * @throws IllegalStateException 本顶点做过快照，为各分支图共享，须用所要连接的那个图的 {@link NMShortPathGraph#connectToEndVertex(NMShortPathVertex, double)}
      */
     public void connectToEndVertex(double aDistanceToEndVertex) {
+        if (this.mOwnerGraph.isSharedBySnapshot( this )) {
+            throw new IllegalStateException( "The Vertex Is Shared By Forks Of A Snapshot, Use connectToEndVertex Of The Owner Graph" );
+        }
         this.mOwnerGraph.connectToEndVertex( this, aDistanceToEndVertex );
     }
 
     /**
-     * 内部用途，只用于构造起始顶点和终止顶点 ,外部不能用此方法创建顶点
+     * 内部用途，用于构造起始顶点和终止顶点，以及并发构建时先创建出顶点再设置前向边，外部不能用此方法创建顶点
      */
     NMShortPathVertex(A aAttachment, NMShortPathGraph<A> aOwnerContext, int aGraphVertexIndex) {
         this.mAttachment = aAttachment;
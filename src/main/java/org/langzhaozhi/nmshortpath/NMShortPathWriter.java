@@ -0,0 +1,297 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * 把NM-最短路径结果直接流式写出到 WritableByteChannel 或者 ByteBuffer。通过 VertexPath::getVertexAt 逐个访问顶点时，
+ * 每条VertexPath都要创建并缓存其自身的顶点列表，M很大时导出的代价远远超过求解本身。这里每条VertexPath只沿前向指针回溯一遍，
+ * 回溯结果放在一个重复利用的数组中，再按从起始顶点到终止顶点的顺序写出，不产生任何按路径的集合对象。
+ * 顶点绑定数据如何编码由应用提供的 {@link AttachmentEncoder} 决定。
+ * <p>两种格式：</p>
+ * <ul>
+ * <li>TEXT: 每条VertexPath一行，"ShortPath序号\t累计距离\t顶点1 顶点2 ... 顶点n\n"。编码器写出的绑定数据中的反斜杠、空格、制表符、换行、回车
+ * 分别转义为两个字节 \\、\s、\t、\n、\r，因此按空格和换行切分总是正确的，切分后再反转义即得编码器写出的原样</li>
+ * <li>BINARY: 大端序，int ShortPath个数；每个ShortPath: double 累计距离, int VertexPath个数；
+ * 每条VertexPath: int 顶点个数，每个顶点: int 顶点下标, double 同前一顶点的距离(第一个为0), int 绑定数据的字节数, 紧接着编码器写出的绑定数据</li>
+ * </ul>
+ * 非线程安全，每个线程各用各的实例
+ *
+ * @param <A> 绑定于图顶点上的数据对象
+ */
+public final class NMShortPathWriter<A> {
+    /**
+     * 输出格式
+     */
+    public static enum Format {
+        TEXT, BINARY
+    }
+
+    /**
+     * 顶点绑定数据的编码器，直接写入 aBuffer。空间不够时应该抛出 BufferOverflowException，
+     * 写出器会清空缓冲区后重新调用(或者扩大缓冲区)，因此编码过程不能有其他副作用
+     */
+    @FunctionalInterface
+    public static interface AttachmentEncoder<A> {
+        void encode(A aAttachment, ByteBuffer aBuffer);
+    }
+
+    private static final int DEFAULT_BUFFER_CAPACITY = 64 * 1024;
+
+    private final Format mFormat;
+    private final AttachmentEncoder<? super A> mAttachmentEncoder;
+    private ByteBuffer mBuffer;//写到 channel 时用的缓冲区
+    private WritableByteChannel mChannel;//当前写出的目标,写到 ByteBuffer 时为null
+    private VertexPath<A> [] mPathSegments;//回溯用，重复利用
+
+    /**
+     * @param aFormat 输出格式
+     * @param aAttachmentEncoder 顶点绑定数据的编码器，见 {@link #textEncoder()}
+     */
+    @SuppressWarnings("unchecked")
+    public NMShortPathWriter(Format aFormat, AttachmentEncoder<? super A> aAttachmentEncoder) {
+        if (aFormat == null || aAttachmentEncoder == null) {
+            throw new IllegalArgumentException( "Format or AttachmentEncoder can not be null" );
+        }
+        this.mFormat = aFormat;
+        this.mAttachmentEncoder = aAttachmentEncoder;
+        this.mPathSegments = new VertexPath [ 64 ];
+    }
+
+    /**
+     * 文本编码器：CharSequence 直接按UTF-8编码到缓冲区中(不创建中间 String 和 byte [])，其他对象按 String.valueOf 编码，null 编码为空。
+     * 编码过程有状态的 CharsetEncoder 每个线程各用各的，因此同一个文本编码器可以由不同线程中的多个写出器共用
+     */
+    public static <A> AttachmentEncoder<A> textEncoder() {
+        ThreadLocal<CharsetEncoder> charsetEncoders = ThreadLocal.withInitial( StandardCharsets.UTF_8::newEncoder );
+        return (aAttachment, aBuffer) -> {
+            if (aAttachment != null) {
+                CharsetEncoder charsetEncoder = charsetEncoders.get();
+                CharSequence chars = aAttachment instanceof CharSequence ? (CharSequence) aAttachment : String.valueOf( aAttachment );
+                charsetEncoder.reset();
+                CoderResult result = charsetEncoder.encode( CharBuffer.wrap( chars ), aBuffer, true );
+                if (result.isOverflow() || charsetEncoder.flush( aBuffer ).isOverflow()) {
+                    throw new BufferOverflowException();
+                }
+            }
+        };
+    }
+
+    /**
+     * 写出到通道，内部缓冲，返回前全部写出
+     * @param aResult NM-最短路径结果
+     * @param aChannel 目标通道，写出后不关闭
+     * @throws IOException 写出出错
+     */
+    public void writeTo(NMShortPath<A> aResult, WritableByteChannel aChannel) throws IOException {
+        if (this.mBuffer == null) {
+            this.mBuffer = ByteBuffer.allocate( NMShortPathWriter.DEFAULT_BUFFER_CAPACITY );
+        }
+        this.mChannel = aChannel;
+        try {
+            this.write( aResult );
+            this.flush();
+        }
+        finally {
+            this.mChannel = null;
+            this.mBuffer.clear();
+        }
+    }
+
+    /**
+     * 直接写入 aBuffer，从其当前位置开始
+     * @param aResult NM-最短路径结果
+     * @param aBuffer 目标缓冲区
+     * @throws BufferOverflowException aBuffer 剩余空间不够
+     */
+    public void writeTo(NMShortPath<A> aResult, ByteBuffer aBuffer) {
+        ByteBuffer channelBuffer = this.mBuffer;
+        this.mBuffer = aBuffer;
+        try {
+            this.write( aResult );
+        }
+        catch (IOException e) {
+            throw new IllegalStateException( e );//没有通道，不会发生
+        }
+        finally {
+            this.mBuffer = channelBuffer;
+        }
+    }
+
+    private void write(NMShortPath<A> aResult) throws IOException {
+        boolean binary = this.mFormat == Format.BINARY;
+        int shortPathCount = aResult.getShortPathCount();
+        if (binary) {
+            this.ensureRemaining( 4 ).putInt( shortPathCount );
+        }
+        for (int i = 0; i < shortPathCount; ++i) {
+            ShortPath<A> shortPath = aResult.getShortPathAt( i );
+            VertexPath<A> [] vertexPaths = shortPath.mSameTotalDistanceVertexPathArray;
+            byte [] textPrefix = null;
+            if (binary) {
+                this.ensureRemaining( 12 ).putDouble( shortPath.mTotalDistance ).putInt( vertexPaths.length );
+            }
+            else {
+                textPrefix = (i + "\t" + shortPath.mTotalDistance + "\t").getBytes( StandardCharsets.US_ASCII );//每个ShortPath只一次
+            }
+            for (VertexPath<A> vertexPath : vertexPaths) {
+                int segmentCount = this.collectSegments( vertexPath );
+                VertexPath<A> [] segments = this.mPathSegments;
+                if (binary) {
+                    this.ensureRemaining( 4 ).putInt( segmentCount );
+                    for (int k = segmentCount - 1; k >= 0; --k) {
+                        VertexPath<A> segment = segments[ k ];
+                        this.ensureRemaining( 12 ).putInt( segment.mCurrentVertex.mGraphVertexIndex ).putDouble( segment.mDistanceFromPreviousVertex );
+                        this.encodeAttachment( segment.mCurrentVertex.mAttachment, true );
+                    }
+                }
+                else {
+                    this.ensureRemaining( textPrefix.length ).put( textPrefix );
+                    for (int k = segmentCount - 1; k >= 0; --k) {
+                        this.encodeAttachment( segments[ k ].mCurrentVertex.mAttachment, false );
+                        this.ensureRemaining( 1 ).put( k == 0 ? (byte) '\n' : (byte) ' ' );
+                    }
+                }
+                for (int k = 0; k < segmentCount; ++k) {
+                    segments[ k ] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 沿前向指针回溯一遍，从终止顶点到起始顶点依次放入 mPathSegments
+     * @return 顶点个数
+     */
+    private int collectSegments(VertexPath<A> aVertexPath) {
+        VertexPath<A> [] segments = this.mPathSegments;
+        int segmentCount = 0;
+        VertexPath<A> currentPathSegment = aVertexPath;
+        while (true) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf( segments, segmentCount << 1 );
+                this.mPathSegments = segments;
+            }
+            segments[ segmentCount++ ] = currentPathSegment;
+            if (currentPathSegment.mPreviousVertexPath == currentPathSegment) {
+                return segmentCount;
+            }
+            currentPathSegment = currentPathSegment.previousVertexPath();
+        }
+    }
+
+    /**
+     * 编码一个绑定数据：BINARY 先留出4字节，编码后填上实际字节数；TEXT 编码后就地转义
+     */
+    private void encodeAttachment(A aAttachment, boolean aBinary) throws IOException {
+        int prefixLength = aBinary ? 4 : 0;
+        ByteBuffer buffer = this.ensureRemaining( prefixLength );
+        int mark = buffer.position();
+        while (true) {
+            try {
+                buffer.position( mark + prefixLength );
+                this.mAttachmentEncoder.encode( aAttachment, buffer );
+                if (!aBinary) {
+                    NMShortPathWriter.escapeText( buffer, mark );
+                }
+                break;
+            }
+            catch (BufferOverflowException e) {
+                buffer.position( mark );
+                if (this.mChannel == null) {
+                    throw e;
+                }
+                if (mark > 0) {
+                    this.flush();
+                }
+                else {
+                    //单个绑定数据比整个缓冲区还大，扩大缓冲区
+                    this.mBuffer = ByteBuffer.allocate( this.mBuffer.capacity() << 1 );
+                }
+                buffer = this.mBuffer;
+                mark = 0;
+            }
+        }
+        if (aBinary) {
+            buffer.putInt( mark, buffer.position() - mark - prefixLength );
+        }
+    }
+
+    /**
+     * 就地转义 [aStart, position) 中的反斜杠、空格、制表符、换行、回车，从后往前移动，空间不够时抛出 BufferOverflowException。
+     * 这几个都是ASCII字节，不会出现在UTF-8的多字节序列中
+     */
+    private static void escapeText(ByteBuffer aBuffer, int aStart) {
+        int end = aBuffer.position();
+        int escapeCount = 0;
+        for (int i = aStart; i < end; ++i) {
+            if (NMShortPathWriter.escapeOf( aBuffer.get( i ) ) != 0) {
+                ++escapeCount;
+            }
+        }
+        if (escapeCount == 0) {
+            return;
+        }
+        if (aBuffer.remaining() < escapeCount) {
+            throw new BufferOverflowException();
+        }
+        for (int i = end - 1, j = end + escapeCount - 1; i >= aStart; --i) {
+            byte b = aBuffer.get( i );
+            byte escape = NMShortPathWriter.escapeOf( b );
+            if (escape == 0) {
+                aBuffer.put( j--, b );
+            }
+            else {
+                aBuffer.put( j--, escape );
+                aBuffer.put( j--, (byte) '\\' );
+            }
+        }
+        aBuffer.position( end + escapeCount );
+    }
+
+    private static byte escapeOf(byte aByte) {
+        switch (aByte) {
+            case '\\':
+                return '\\';
+            case ' ':
+                return 's';
+            case '\t':
+                return 't';
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            default:
+                return 0;
+        }
+    }
+
+    private ByteBuffer ensureRemaining(int aByteCount) throws IOException {
+        if (this.mBuffer.remaining() < aByteCount) {
+            if (this.mChannel == null) {
+                throw new BufferOverflowException();
+            }
+            this.flush();
+        }
+        return this.mBuffer;
+    }
+
+    private void flush() throws IOException {
+        ByteBuffer buffer = this.mBuffer;
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.mChannel.write( buffer );
+        }
+        buffer.clear();
+    }
+}
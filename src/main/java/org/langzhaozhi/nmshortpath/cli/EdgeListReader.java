@@ -0,0 +1,248 @@
+package org.langzhaozhi.nmshortpath.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 边列表的流式读取，一个输入中可以依次存放任意多个图，每次 {@link #next()} 读取一个图的所有边到新分配的原始数组中
+ * (数组随后直接交给 NMShortPathUnorderedGraphBuilder，不再拷贝)。读取全程经由一个重复利用的 ByteBuffer，不按行创建 String。
+ * 每个图中顶点标识为 0 到 vertexCount-1，起始顶点为0，终止顶点为 vertexCount-1，边的顺序任意。两种格式：<ul>
+ * <li>TEXT: 以空白分隔的ASCII数字，'#'到行尾为注释。每个图先是 "vertexCount edgeCount"，接着 edgeCount 个 "from to distance"，换行与否无关</li>
+ * <li>BINARY: 大端序，每个图 int vertexCount, int edgeCount，接着 edgeCount 个 (int from, int to, double distance)</li>
+ * </ul>
+ */
+abstract class EdgeListReader {
+    private static final int BUFFER_CAPACITY = 64 * 1024;
+
+    final ReadableByteChannel mChannel;
+    final ByteBuffer mBuffer;
+    boolean mEndOfInput;
+
+    int mVertexCount;
+    int [] mFromVertexes;
+    int [] mToVertexes;
+    double [] mDistances;
+
+    EdgeListReader(ReadableByteChannel aChannel) {
+        this.mChannel = aChannel;
+        this.mBuffer = ByteBuffer.allocateDirect( EdgeListReader.BUFFER_CAPACITY );
+        this.mBuffer.flip();//初始为空
+    }
+
+    static EdgeListReader of(ReadableByteChannel aChannel, boolean aBinary) {
+        return aBinary ? new BinaryEdgeListReader( aChannel ) : new TextEdgeListReader( aChannel );
+    }
+
+    /**
+     * 读取下一个图
+     * @return false 表示输入已经结束
+     * @throws IllegalArgumentException 输入格式不对
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * 缓冲区中至少有 aByteCount 个字节可读(aByteCount 不超过缓冲区容量)
+     * @return false 表示输入已经结束，不够 aByteCount 个字节
+     */
+    final boolean fill(int aByteCount) throws IOException {
+        ByteBuffer buffer = this.mBuffer;
+        if (buffer.remaining() >= aByteCount) {
+            return true;
+        }
+        buffer.compact();
+        while (buffer.position() < aByteCount && !this.mEndOfInput) {
+            this.mEndOfInput = this.mChannel.read( buffer ) < 0;
+        }
+        buffer.flip();
+        return buffer.remaining() >= aByteCount;
+    }
+
+    final void allocate(int aVertexCount, int aEdgeCount) {
+        if (aVertexCount <= 2 || aEdgeCount <= 0) {
+            throw new IllegalArgumentException( "VertexCount(" + aVertexCount + ") or EdgeCount(" + aEdgeCount + ") not valid" );
+        }
+        this.mVertexCount = aVertexCount;
+        this.mFromVertexes = new int [ aEdgeCount ];
+        this.mToVertexes = new int [ aEdgeCount ];
+        this.mDistances = new double [ aEdgeCount ];
+    }
+
+    private static final class BinaryEdgeListReader extends EdgeListReader {
+        BinaryEdgeListReader(ReadableByteChannel aChannel) {
+            super( aChannel );
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (!this.fill( 8 )) {
+                if (this.mBuffer.hasRemaining()) {
+                    throw new IllegalArgumentException( "Truncated Graph Header" );
+                }
+                return false;
+            }
+            ByteBuffer buffer = this.mBuffer;
+            int vertexCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            this.allocate( vertexCount, edgeCount );
+            int [] fromVertexes = this.mFromVertexes;
+            int [] toVertexes = this.mToVertexes;
+            double [] distances = this.mDistances;
+            for (int i = 0; i < edgeCount; ++i) {
+                if (!this.fill( 16 )) {
+                    throw new IllegalArgumentException( "Truncated Edge(" + i + ")" );
+                }
+                fromVertexes[ i ] = buffer.getInt();
+                toVertexes[ i ] = buffer.getInt();
+                distances[ i ] = buffer.getDouble();
+            }
+            return true;
+        }
+    }
+
+    private static final class TextEdgeListReader extends EdgeListReader {
+        //10的0到22次幂都能精确表示为double，有效数字不超过 2^53 时一次乘除即得正确舍入的结果
+        private static final double [] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+
+        private byte [] mToken = new byte [ 32 ];//当前记号，重复利用
+        private int mTokenLength;
+
+        TextEdgeListReader(ReadableByteChannel aChannel) {
+            super( aChannel );
+        }
+
+        @Override
+        boolean next() throws IOException {
+            if (!this.nextToken()) {
+                return false;
+            }
+            int vertexCount = this.parseInt();
+            this.allocate( vertexCount, this.requireInt() );
+            int [] fromVertexes = this.mFromVertexes;
+            int [] toVertexes = this.mToVertexes;
+            double [] distances = this.mDistances;
+            for (int i = 0, edgeCount = fromVertexes.length; i < edgeCount; ++i) {
+                fromVertexes[ i ] = this.requireInt();
+                toVertexes[ i ] = this.requireInt();
+                if (!this.nextToken()) {
+                    throw new IllegalArgumentException( "Truncated Edge(" + i + ")" );
+                }
+                distances[ i ] = this.parseDouble();
+            }
+            return true;
+        }
+
+        private int requireInt() throws IOException {
+            if (!this.nextToken()) {
+                throw new IllegalArgumentException( "Unexpected End Of Input" );
+            }
+            return this.parseInt();
+        }
+
+        /**
+         * 跳过空白和注释，读取下一个记号到 mToken
+         * @return false 表示输入已经结束
+         */
+        private boolean nextToken() throws IOException {
+            ByteBuffer buffer = this.mBuffer;
+            boolean comment = false;
+            while (true) {
+                if (!buffer.hasRemaining() && !this.fill( 1 )) {
+                    return false;
+                }
+                byte b = buffer.get();
+                if (comment) {
+                    comment = b != '\n';
+                }
+                else if (b == '#') {
+                    comment = true;
+                }
+                else if (b > ' ') {
+                    buffer.position( buffer.position() - 1 );
+                    break;
+                }
+            }
+            int tokenLength = 0;
+            while (buffer.hasRemaining() || this.fill( 1 )) {
+                byte b = buffer.get();
+                if (b <= ' ' || b == '#') {
+                    buffer.position( buffer.position() - 1 );
+                    break;
+                }
+                if (tokenLength == this.mToken.length) {
+                    this.mToken = Arrays.copyOf( this.mToken, tokenLength << 1 );
+                }
+                this.mToken[ tokenLength++ ] = b;
+            }
+            this.mTokenLength = tokenLength;
+            return true;
+        }
+
+        private int parseInt() {
+            byte [] token = this.mToken;
+            int tokenLength = this.mTokenLength;
+            boolean negative = token[ 0 ] == '-';
+            int i = negative || token[ 0 ] == '+' ? 1 : 0;
+            if (i == tokenLength || tokenLength - i > 10) {
+                throw this.invalidToken();
+            }
+            long value = 0;
+            for (; i < tokenLength; ++i) {
+                int digit = token[ i ] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw this.invalidToken();
+                }
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (value != (int) value) {
+                throw this.invalidToken();
+            }
+            return (int) value;
+        }
+
+        private double parseDouble() {
+            byte [] token = this.mToken;
+            int tokenLength = this.mTokenLength;
+            boolean negative = token[ 0 ] == '-';
+            int i = negative || token[ 0 ] == '+' ? 1 : 0;
+            long mantissa = 0;
+            int digitCount = 0;
+            int fractionCount = 0;
+            boolean fraction = false;
+            for (; i < tokenLength; ++i) {
+                byte b = token[ i ];
+                if (b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    ++digitCount;
+                    fractionCount += fraction ? 1 : 0;
+                }
+                else if (b == '.' && !fraction) {
+                    fraction = true;
+                }
+                else {
+                    break;//指数等其他形式
+                }
+            }
+            if (i == tokenLength && digitCount > 0 && digitCount <= 15 && fractionCount < TextEdgeListReader.POWERS_OF_TEN.length) {
+                double value = mantissa / TextEdgeListReader.POWERS_OF_TEN[ fractionCount ];
+                return negative ? -value : value;
+            }
+            //少见的形式(指数、超长数字等)交给 Double.parseDouble
+            try {
+                return Double.parseDouble( new String( token, 0, tokenLength, StandardCharsets.US_ASCII ) );
+            }
+            catch (NumberFormatException e) {
+                throw this.invalidToken();
+            }
+        }
+
+        private IllegalArgumentException invalidToken() {
+            return new IllegalArgumentException( "Invalid Token: " + new String( this.mToken, 0, this.mTokenLength, StandardCharsets.US_ASCII ) );
+        }
+    }
+}
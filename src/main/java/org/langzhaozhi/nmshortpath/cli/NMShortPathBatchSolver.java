@@ -0,0 +1,198 @@
+package org.langzhaozhi.nmshortpath.cli;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.langzhaozhi.nmshortpath.NMShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPathGraph;
+import org.langzhaozhi.nmshortpath.NMShortPathUnorderedGraphBuilder;
+import org.langzhaozhi.nmshortpath.NMShortPathWriter;
+
+/**
+ * <p>命令行批量求解：从边列表文件(格式见 {@link EdgeListReader})中依次读取任意多个图，多线程求解，按输入顺序流式写出各图的结果。
+ * 一次JVM启动处理一整批图，读取全程经由 NIO 缓冲区、不按行创建 String，写出经由 {@link NMShortPathWriter}；
+ * 读取、求解、写出流水进行，同时在途的图至多为线程数的两倍，内存占用同批量的大小无关。</p>
+ * <p>参数为 key=value 形式：<br/>
+ * <code>input=edges.txt output=result.txt format=text outputFormat=text n=10 m=100 threads=8</code><br/>
+ * input/output 缺省或为 "-" 时为标准输入/标准输出；format/outputFormat 为 text 或 binary；threads 缺省为CPU个数。</p>
+ * <p>输出：TEXT 每个图先是一行 "#图序号"，接着是 NMShortPathWriter 的TEXT输出，顶点为原始顶点标识；求解失败的图为一行 "#图序号\tERROR\t原因"。
+ * BINARY 每个图先是 int 图序号，接着是 NMShortPathWriter 的BINARY输出，绑定数据为 int 原始顶点标识；求解失败的图在图序号之后为 int -1。
+ * 输入格式错误的图同样记为失败，由于无法定位其后的下一个图，之后的输入不再读取，之前的各图照常写出。</p>
+ * <p>本类不使用反射、动态代理和 ServiceLoader，启动时只加载求解必需的类，可以直接用类数据共享(CDS)归档或者 GraalVM native-image
+ * 提前编译以消除JVM启动和类加载的时间，见 README。</p>
+ */
+public final class NMShortPathBatchSolver {
+    private NMShortPathBatchSolver() {
+    }
+
+    public static void main(String [] args) throws IOException, InterruptedException {
+        Map<String, String> params = NMShortPathBatchSolver.parse( args );
+        int nShortPathCount = Integer.parseInt( params.get( "n" ) );
+        int mVertexPathCount = Integer.parseInt( params.get( "m" ) );
+        int threads = Integer.parseInt( params.get( "threads" ) );
+        boolean binaryInput = NMShortPathBatchSolver.isBinary( params.get( "format" ) );
+        boolean binaryOutput = NMShortPathBatchSolver.isBinary( params.get( "outputFormat" ) );
+        if (threads <= 0) {
+            throw new IllegalArgumentException( "threads(" + threads + ") not valid" );
+        }
+
+        String input = params.get( "input" );
+        String output = params.get( "output" );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try (ReadableByteChannel inputChannel = "-".equals( input ) ? Channels.newChannel( new FileInputStream( FileDescriptor.in ) ) : FileChannel.open( Paths.get( input ), StandardOpenOption.READ );
+            WritableByteChannel outputChannel = "-".equals( output ) ? Channels.newChannel( new FileOutputStream( FileDescriptor.out ) ) : FileChannel.open( Paths.get( output ), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING )) {
+            EdgeListReader reader = EdgeListReader.of( inputChannel, binaryInput );
+            NMShortPathWriter<Integer> writer = new NMShortPathWriter<Integer>( binaryOutput ? NMShortPathWriter.Format.BINARY : NMShortPathWriter.Format.TEXT, binaryOutput ? (aVertex, aBuffer) -> aBuffer.putInt( aVertex ) : (aVertex, aBuffer) -> NMShortPathBatchSolver.encodeDecimal( aVertex, aBuffer ) );
+            ByteBuffer headerBuffer = ByteBuffer.allocate( 1024 );
+            ArrayDeque<Future<Object>> pendings = new ArrayDeque<Future<Object>>();
+            int writtenIndex = 0;
+            while (true) {
+                try {
+                    if (!reader.next()) {
+                        break;
+                    }
+                }
+                catch (IllegalArgumentException e) {
+                    //输入格式错误：此后无法定位下一个图的开始，出错的图记为失败，之前的各图照常写出后结束
+                    pendings.addLast( CompletableFuture.completedFuture( (Object) ("Malformed Input: " + e.getMessage()) ) );
+                    break;
+                }
+                int vertexCount = reader.mVertexCount;
+                int [] fromVertexes = reader.mFromVertexes;
+                int [] toVertexes = reader.mToVertexes;
+                double [] distances = reader.mDistances;
+                pendings.addLast( executor.submit( () -> NMShortPathBatchSolver.solve( nShortPathCount, mVertexPathCount, vertexCount, fromVertexes, toVertexes, distances ) ) );
+                if (pendings.size() >= threads << 1) {
+                    NMShortPathBatchSolver.write( writer, headerBuffer, outputChannel, binaryOutput, writtenIndex++, pendings.removeFirst() );
+                }
+            }
+            while (!pendings.isEmpty()) {
+                NMShortPathBatchSolver.write( writer, headerBuffer, outputChannel, binaryOutput, writtenIndex++, pendings.removeFirst() );
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在求解线程中创建并求解，返回 NMShortPath 或者失败的原因
+     */
+    private static Object solve(int aNShortPathCount, int aMVertexPathCount, int aVertexCount, int [] aFromVertexes, int [] aToVertexes, double [] aDistances) {
+        try {
+            Integer [] attachments = new Integer [ aVertexCount ];
+            for (int i = 0; i < aVertexCount; ++i) {
+                attachments[ i ] = i;
+            }
+            NMShortPathUnorderedGraphBuilder<Integer> builder = new NMShortPathUnorderedGraphBuilder<Integer>( aVertexCount, aFromVertexes, aToVertexes, aDistances );
+            NMShortPathGraph<Integer> graph = builder.build( aNShortPathCount, aMVertexPathCount, attachments, 0, aVertexCount - 1 );
+            return graph.calculateNMShortPath();
+        }
+        catch (IllegalArgumentException | IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(NMShortPathWriter<Integer> aWriter, ByteBuffer aHeaderBuffer, WritableByteChannel aChannel, boolean aBinary, int aGraphIndex, Future<Object> aPending) throws IOException, InterruptedException {
+        Object result;
+        try {
+            result = aPending.get();
+        }
+        catch (ExecutionException e) {
+            result = String.valueOf( e.getCause() );
+        }
+        aHeaderBuffer.clear();
+        if (aBinary) {
+            aHeaderBuffer.putInt( aGraphIndex );
+            if (!(result instanceof NMShortPath)) {
+                aHeaderBuffer.putInt( -1 );
+            }
+        }
+        else {
+            aHeaderBuffer.put( (byte) '#' );
+            NMShortPathBatchSolver.encodeDecimal( aGraphIndex, aHeaderBuffer );
+            if (!(result instanceof NMShortPath)) {
+                byte [] message = ("\tERROR\t" + result).replace( '\n', ' ' ).getBytes( StandardCharsets.UTF_8 );
+                aHeaderBuffer.put( message, 0, Math.min( message.length, aHeaderBuffer.remaining() - 1 ) );
+            }
+            aHeaderBuffer.put( (byte) '\n' );
+        }
+        aHeaderBuffer.flip();
+        while (aHeaderBuffer.hasRemaining()) {
+            aChannel.write( aHeaderBuffer );
+        }
+        if (result instanceof NMShortPath) {
+            aWriter.writeTo( (NMShortPath<Integer>) result, aChannel );
+        }
+    }
+
+    /**
+     * 十进制写出非负整数，不创建 String
+     */
+    private static void encodeDecimal(int aValue, ByteBuffer aBuffer) {
+        int value = aValue;
+        int digitCount = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            ++digitCount;
+        }
+        if (aBuffer.remaining() < digitCount) {
+            throw new BufferOverflowException();
+        }
+        int position = aBuffer.position();
+        for (int i = position + digitCount - 1; i >= position; --i) {
+            aBuffer.put( i, (byte) ('0' + value % 10) );
+            value /= 10;
+        }
+        aBuffer.position( position + digitCount );
+    }
+
+    private static boolean isBinary(String aFormat) {
+        if ("binary".equals( aFormat )) {
+            return true;
+        }
+        else if ("text".equals( aFormat )) {
+            return false;
+        }
+        throw new IllegalArgumentException( "format(" + aFormat + ") not valid" );
+    }
+
+    private static Map<String, String> parse(String... aArgs) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        //缺省参数
+        params.put( "input", "-" );
+        params.put( "output", "-" );
+        params.put( "format", "text" );
+        params.put( "outputFormat", "text" );
+        params.put( "n", "1" );
+        params.put( "m", "1" );
+        params.put( "threads", String.valueOf( Runtime.getRuntime().availableProcessors() ) );
+        for (String arg : aArgs) {
+            int equalIndex = arg.indexOf( '=' );
+            if (equalIndex <= 0 || !params.containsKey( arg.substring( 0, equalIndex ) )) {
+                throw new IllegalArgumentException( "Unknown Argument: " + arg );
+            }
+            params.put( arg.substring( 0, equalIndex ), arg.substring( equalIndex + 1 ) );
+        }
+        return params;
+    }
+}
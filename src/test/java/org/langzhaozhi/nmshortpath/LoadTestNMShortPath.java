@@ -0,0 +1,332 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * <p>大规模图的压力测试：JMH那样的微基准测试反映不出实际运行中最要命的问题：堆内存峰值、GC停顿以及 DemoDynamicProgramming
+ * 中所说的规模悬崖。本测试按参数生成大规模的图，求解并以JSON行的形式输出求解时间、堆内存峰值、分配总量和GC停顿统计，
+ * 便于跨版本绘制规模增长曲线。</p>
+ * <p>三类图：<ol>
+ *     <li>trellis：篱笆型动态规划图，同 DemoDynamicProgramming，距离生成方式由 generator 指定(fixed, vertexSame, columnSame, allNotSame, random)</li>
+ *     <li>random：随机DAG，每个顶点的前向边数目(扇入)服从 fanIn 指定的分布(uniform, geometric, powerLaw)，前向顶点从之前 window 个顶点中随机选取</li>
+ *     <li>lattice：类似分词的词图，每个位置都有单字词，另外随机生成至多 maxWordLength 长的词</li>
+ * </ol></p>
+ * <p>不带参数运行时依次跑一组缺省的规模曲线；也可以用 key=value 参数只跑一个配置，例如：<br/>
+ * <code>kind=trellis generator=fixed columns=500 rows=100 n=1 m=1000 repeat=3</code><br/>
+ * 也可以通过 <code>mvn -P loadtest test-compile exec:java</code> 运行。运行时应把JVM内存参数调大，如 -Xmx8g</p>
+ */
+public class LoadTestNMShortPath {
+    public static void main(String [] args) {
+        GcPauseRecorder gcPauseRecorder = new GcPauseRecorder();
+        if (args.length == 0) {
+            for (int columns : new int [] { 100, 200, 400, 800 }) {
+                for (String generator : new String [] { "allNotSame", "columnSame", "fixed" }) {
+                    LoadTestNMShortPath.run( LoadTestNMShortPath.parse( "kind=trellis", "generator=" + generator, "columns=" + columns, "rows=100", "n=5", "m=100" ), gcPauseRecorder );
+                }
+            }
+            for (int vertexes : new int [] { 100_000, 200_000, 400_000, 800_000 }) {
+                for (String fanIn : new String [] { "uniform", "geometric", "powerLaw" }) {
+                    LoadTestNMShortPath.run( LoadTestNMShortPath.parse( "kind=random", "fanIn=" + fanIn, "vertexes=" + vertexes, "n=5", "m=100" ), gcPauseRecorder );
+                }
+            }
+            for (int length : new int [] { 10_000, 100_000, 1_000_000 }) {
+                LoadTestNMShortPath.run( LoadTestNMShortPath.parse( "kind=lattice", "length=" + length, "n=10", "m=100" ), gcPauseRecorder );
+            }
+        }
+        else {
+            LoadTestNMShortPath.run( LoadTestNMShortPath.parse( args ), gcPauseRecorder );
+        }
+    }
+
+    private static Map<String, String> parse(String... aArgs) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        //缺省参数
+        params.put( "kind", "trellis" );
+        params.put( "generator", "allNotSame" );
+        params.put( "columns", "500" );
+        params.put( "rows", "100" );
+        params.put( "fanIn", "geometric" );
+        params.put( "maxFanIn", "64" );
+        params.put( "window", "1000" );
+        params.put( "vertexes", "100000" );
+        params.put( "length", "100000" );
+        params.put( "maxWordLength", "6" );
+        params.put( "n", "1" );
+        params.put( "m", "1" );
+        params.put( "repeat", "1" );
+        params.put( "seed", "20150123" );
+        for (String arg : aArgs) {
+            int split = arg.indexOf( '=' );
+            if (split <= 0) {
+                throw new IllegalArgumentException( "Argument(" + arg + ") must be key=value" );
+            }
+            params.put( arg.substring( 0, split ), arg.substring( split + 1 ) );
+        }
+        return params;
+    }
+
+    private static void run(Map<String, String> aParams, GcPauseRecorder aGcPauseRecorder) {
+        int repeat = Integer.parseInt( aParams.get( "repeat" ) );
+        for (int r = 0; r < repeat; ++r) {
+            System.gc();
+            LoadTestNMShortPath.resetPeakUsage();
+            aGcPauseRecorder.reset();
+            com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+
+            long allocatedBefore = threadMXBean.getThreadAllocatedBytes( threadId );
+            long t1 = System.nanoTime();
+            GraphStatistics<Integer> graphStatistics = LoadTestNMShortPath.createGraph( aParams );
+            long t2 = System.nanoTime();
+            long allocatedAfterBuild = threadMXBean.getThreadAllocatedBytes( threadId );
+            NMShortPath<Integer> result = graphStatistics.mGraph.calculateNMShortPath();
+            long t3 = System.nanoTime();
+            long allocatedAfterSolve = threadMXBean.getThreadAllocatedBytes( threadId );
+
+            StringBuilder json = new StringBuilder( 512 ).append( '{' );
+            for (Map.Entry<String, String> param : aParams.entrySet()) {
+                json.append( '"' ).append( param.getKey() ).append( "\":\"" ).append( param.getValue() ).append( "\"," );
+            }
+            json.append( "\"run\":" ).append( r );
+            json.append( ",\"vertexCount\":" ).append( graphStatistics.mGraph.getGraphVertexCount() );
+            json.append( ",\"edgeCount\":" ).append( graphStatistics.mEdgeCount );
+            json.append( ",\"buildMillis\":" ).append( (t2 - t1) / 1_000_000.0 );
+            json.append( ",\"solveMillis\":" ).append( (t3 - t2) / 1_000_000.0 );
+            json.append( ",\"buildAllocatedBytes\":" ).append( allocatedAfterBuild - allocatedBefore );
+            json.append( ",\"solveAllocatedBytes\":" ).append( allocatedAfterSolve - allocatedAfterBuild );
+            json.append( ",\"peakHeapBytes\":" ).append( LoadTestNMShortPath.peakHeapUsage() );
+            json.append( ",\"gcCount\":" ).append( aGcPauseRecorder.mPauseCount );
+            json.append( ",\"gcPauseTotalMillis\":" ).append( aGcPauseRecorder.mPauseTotalMillis );
+            json.append( ",\"gcPauseMaxMillis\":" ).append( aGcPauseRecorder.mPauseMaxMillis );
+            json.append( ",\"shortPathCount\":" ).append( result.getShortPathCount() );
+            json.append( ",\"vertexPathCount\":" ).append( result.getVertexPathCount() );
+            json.append( ",\"mostShortDistance\":" ).append( result.getMostShortPath().getTotalDistance() );
+            json.append( '}' );
+            System.out.println( json );
+            System.out.flush();
+        }
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    //各堆内存区峰值之和，是真实峰值的上界
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static GraphStatistics<Integer> createGraph(Map<String, String> aParams) {
+        int n = Integer.parseInt( aParams.get( "n" ) );
+        int m = Integer.parseInt( aParams.get( "m" ) );
+        Random random = new Random( Long.parseLong( aParams.get( "seed" ) ) );
+        String kind = aParams.get( "kind" );
+        switch (kind) {
+            case "trellis" :
+                return LoadTestNMShortPath.createTrellis( n, m, Integer.parseInt( aParams.get( "columns" ) ), Integer.parseInt( aParams.get( "rows" ) ), aParams.get( "generator" ), random );
+            case "random" :
+                return LoadTestNMShortPath.createRandomDag( n, m, Integer.parseInt( aParams.get( "vertexes" ) ), aParams.get( "fanIn" ), Integer.parseInt( aParams.get( "maxFanIn" ) ), Integer.parseInt( aParams.get( "window" ) ), random );
+            case "lattice" :
+                return LoadTestNMShortPath.createLattice( n, m, Integer.parseInt( aParams.get( "length" ) ), Integer.parseInt( aParams.get( "maxWordLength" ) ), random );
+            default :
+                throw new IllegalArgumentException( "kind(" + kind + ") not valid" );
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GraphStatistics<Integer> createTrellis(int aN, int aM, int aColumnCount, int aVertexCountOfEveryColumn, String aGenerator, Random aRandom) {
+        int [] attachmentGenerator = { 0 };
+        long [] distanceGenerator = { (long) aColumnCount * aVertexCountOfEveryColumn * 1000 };
+        long [] edgeCount = { 0 };
+        DistanceGenerator gen;
+        switch (aGenerator) {
+            case "fixed" ://所有边的距离相同：组合爆炸,必须由M来压制
+                gen = (aColumn, aRow) -> 0.7;
+                break;
+            case "vertexSame" ://任意两顶点的前向距离相同，但一个顶点的各前向边不同
+                gen = (aColumn, aRow) -> aRow + 0.7;
+                break;
+            case "columnSame" ://每一列的顶点的边距离相同，但一列内部的各顶点不相同
+                gen = (aColumn, aRow) -> --distanceGenerator[ 0 ] % aVertexCountOfEveryColumn + 0.7;
+                break;
+            case "allNotSame" ://所有边的距离都不相同
+                gen = (aColumn, aRow) -> distanceGenerator[ 0 ]-- + 0.7;
+                break;
+            case "random" :
+                gen = (aColumn, aRow) -> aRandom.nextInt( 1000 ) + 0.7;
+                break;
+            default :
+                throw new IllegalArgumentException( "generator(" + aGenerator + ") not valid" );
+        }
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aN, aM, attachmentGenerator[ 0 ]++, -1 );
+        List<NMShortPathVertex<Integer>> previousColumnVertexArray = new ArrayList<NMShortPathVertex<Integer>>( aVertexCountOfEveryColumn );
+        previousColumnVertexArray.add( graphModel.getStartVertex() );
+        for (int i = 0; i < aColumnCount; ++i) {
+            List<NMShortPathVertex<Integer>> currentColumnVertexArray = new ArrayList<NMShortPathVertex<Integer>>( aVertexCountOfEveryColumn );
+            for (int j = 0; j < aVertexCountOfEveryColumn; ++j) {
+                int column = i;
+                NMShortPathEdge<Integer> [] previousEdgeArray = new NMShortPathEdge [ previousColumnVertexArray.size() ];
+                for (int k = 0; k < previousEdgeArray.length; ++k) {
+                    previousEdgeArray[ k ] = new NMShortPathEdge<Integer>( previousColumnVertexArray.get( k ), gen.generateDistance( column, k ) );
+                }
+                edgeCount[ 0 ] += previousEdgeArray.length;
+                currentColumnVertexArray.add( new NMShortPathVertex<Integer>( attachmentGenerator[ 0 ]++, previousEdgeArray ) );
+            }
+            previousColumnVertexArray = currentColumnVertexArray;
+        }
+        for (int k = 0; k < previousColumnVertexArray.size(); ++k) {
+            previousColumnVertexArray.get( k ).connectToEndVertex( gen.generateDistance( aColumnCount, k ) );
+        }
+        edgeCount[ 0 ] += previousColumnVertexArray.size();
+        return new GraphStatistics<Integer>( graphModel, edgeCount[ 0 ] );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GraphStatistics<Integer> createRandomDag(int aN, int aM, int aVertexCount, String aFanIn, int aMaxFanIn, int aWindow, Random aRandom) {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aN, aM, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ aVertexCount ];
+        boolean [] hasPostVertex = new boolean [ aVertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        long edgeCount = 0;
+        for (int i = 1; i < aVertexCount; ++i) {
+            int fanIn = Math.min( i, LoadTestNMShortPath.nextFanIn( aFanIn, aMaxFanIn, aRandom ) );
+            NMShortPathEdge<Integer> [] previousEdgeArray = new NMShortPathEdge [ fanIn ];
+            int windowStart = Math.max( 0, i - aWindow );
+            for (int k = 0; k < fanIn; ++k) {
+                int previous = windowStart + aRandom.nextInt( i - windowStart );
+                previousEdgeArray[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], aRandom.nextInt( 1000 ) + 0.7 );
+                hasPostVertex[ previous ] = true;
+            }
+            edgeCount += fanIn;
+            vertexes[ i ] = new NMShortPathVertex<Integer>( i, previousEdgeArray );
+        }
+        //没有后向顶点的都连接到终止顶点
+        for (int i = 0; i < aVertexCount; ++i) {
+            if (!hasPostVertex[ i ]) {
+                vertexes[ i ].connectToEndVertex( aRandom.nextInt( 1000 ) + 0.7 );
+                ++edgeCount;
+            }
+        }
+        return new GraphStatistics<Integer>( graphModel, edgeCount );
+    }
+
+    private static int nextFanIn(String aFanIn, int aMaxFanIn, Random aRandom) {
+        switch (aFanIn) {
+            case "uniform" :
+                return 1 + aRandom.nextInt( aMaxFanIn );
+            case "geometric" ://p=0.5 的几何分布
+                return Math.min( aMaxFanIn, 1 + Long.numberOfTrailingZeros( aRandom.nextLong() | Long.MIN_VALUE ) );
+            case "powerLaw" ://指数约为2的幂律分布，少数顶点扇入极大
+                return (int) Math.min( aMaxFanIn, Math.floor( 1 / (1 - aRandom.nextDouble()) ) );
+            default :
+                throw new IllegalArgumentException( "fanIn(" + aFanIn + ") not valid" );
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GraphStatistics<Integer> createLattice(int aN, int aM, int aLength, int aMaxWordLength, Random aRandom) {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aN, aM, 0, -1 );
+        //wordsEndAt.get(p)：所有在位置p结束的词，位置0只有起始顶点
+        List<List<NMShortPathVertex<Integer>>> wordsEndAt = new ArrayList<List<NMShortPathVertex<Integer>>>( aLength + 1 );
+        for (int p = 0; p <= aLength; ++p) {
+            wordsEndAt.add( new ArrayList<NMShortPathVertex<Integer>>( 2 ) );
+        }
+        wordsEndAt.get( 0 ).add( graphModel.getStartVertex() );
+        long edgeCount = 0;
+        int attachment = 1;
+        for (int begin = 0; begin < aLength; ++begin) {
+            List<NMShortPathVertex<Integer>> previousWords = wordsEndAt.get( begin );
+            for (int wordLength = 1; wordLength <= aMaxWordLength && begin + wordLength <= aLength; ++wordLength) {
+                //单字词必定存在保证连通，多字词随长度递减的概率出现
+                if (wordLength == 1 || aRandom.nextInt( wordLength * 2 ) == 0) {
+                    NMShortPathEdge<Integer> [] previousEdgeArray = new NMShortPathEdge [ previousWords.size() ];
+                    for (int k = 0; k < previousEdgeArray.length; ++k) {
+                        previousEdgeArray[ k ] = new NMShortPathEdge<Integer>( previousWords.get( k ), 2 + aRandom.nextInt( 1500 ) / 100.0 );
+                    }
+                    edgeCount += previousEdgeArray.length;
+                    wordsEndAt.get( begin + wordLength ).add( new NMShortPathVertex<Integer>( attachment++, previousEdgeArray ) );
+                }
+            }
+        }
+        for (NMShortPathVertex<Integer> lastWord : wordsEndAt.get( aLength )) {
+            lastWord.connectToEndVertex( 2 + aRandom.nextInt( 1500 ) / 100.0 );
+            ++edgeCount;
+        }
+        return new GraphStatistics<Integer>( graphModel, edgeCount );
+    }
+
+    @FunctionalInterface
+    interface DistanceGenerator {
+        double generateDistance(int aColumn, int aRow);
+    }
+
+    private static final class GraphStatistics<A> {
+        final NMShortPathGraph<A> mGraph;
+        final long mEdgeCount;
+
+        GraphStatistics(NMShortPathGraph<A> aGraph, long aEdgeCount) {
+            this.mGraph = aGraph;
+            this.mEdgeCount = aEdgeCount;
+        }
+    }
+
+    //通过GC通知记录每次停顿，GarbageCollectorMXBean只有累计值没有单次最大停顿
+    private static final class GcPauseRecorder implements NotificationListener {
+        volatile long mPauseCount;
+        volatile long mPauseTotalMillis;
+        volatile long mPauseMaxMillis;
+
+        GcPauseRecorder() {
+            for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gcBean instanceof NotificationEmitter) {
+                    ((NotificationEmitter) gcBean).addNotificationListener( this, null, null );
+                }
+            }
+        }
+
+        synchronized void reset() {
+            this.mPauseCount = 0;
+            this.mPauseTotalMillis = 0;
+            this.mPauseMaxMillis = 0;
+        }
+
+        @Override
+        public synchronized void handleNotification(Notification aNotification, Object aHandback) {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals( aNotification.getType() )) {
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from( (CompositeData) aNotification.getUserData() );
+                if (info.getGcName().contains( "Concurrent" )) {
+                    return;//并发回收周期不是停顿
+                }
+                long duration = info.getGcInfo().getDuration();
+                ++this.mPauseCount;
+                this.mPauseTotalMillis += duration;
+                this.mPauseMaxMillis = Math.max( this.mPauseMaxMillis, duration );
+            }
+        }
+    }
+}
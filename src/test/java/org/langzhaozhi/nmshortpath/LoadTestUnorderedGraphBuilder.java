@@ -0,0 +1,162 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * <p>任意顺序边列表创建图的压力测试：生成分层随机DAG的原始边数组(顶点标识随机打乱)，分别在并行度为1,2,4,...的 ForkJoinPool 中
+ * 执行 {@link NMShortPathUnorderedGraphBuilder#topologicalSort(int, int)}，以JSON行的形式输出拓扑排序时间、创建图的时间、求解时间和堆内存峰值，
+ * 便于绘制拓扑排序随核数增长的曲线。每层的顶点数目(width)要超过并行阈值，按层并行才有意义。</p>
+ * <p>不带参数运行时依次跑一组缺省的规模；也可以用 key=value 参数只跑一个配置，例如：<br/>
+ * <code>levels=200 width=50000 fanIn=4 n=1 m=1 repeat=3</code><br/>
+ * 运行时应把JVM内存参数调大，如 -Xmx8g</p>
+ */
+public class LoadTestUnorderedGraphBuilder {
+    public static void main(String [] args) throws InterruptedException, ExecutionException {
+        if (args.length == 0) {
+            for (int width : new int [] { 10_000, 50_000, 100_000 }) {
+                LoadTestUnorderedGraphBuilder.run( LoadTestUnorderedGraphBuilder.parse( "levels=100", "width=" + width, "fanIn=4" ) );
+            }
+        }
+        else {
+            LoadTestUnorderedGraphBuilder.run( LoadTestUnorderedGraphBuilder.parse( args ) );
+        }
+    }
+
+    private static Map<String, String> parse(String... aArgs) {
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        //缺省参数
+        params.put( "levels", "100" );
+        params.put( "width", "10000" );
+        params.put( "fanIn", "4" );
+        params.put( "n", "1" );
+        params.put( "m", "1" );
+        params.put( "maxParallelism", String.valueOf( Runtime.getRuntime().availableProcessors() ) );
+        params.put( "repeat", "1" );
+        params.put( "seed", "20150123" );
+        for (String arg : aArgs) {
+            int split = arg.indexOf( '=' );
+            if (split <= 0) {
+                throw new IllegalArgumentException( "Argument(" + arg + ") must be key=value" );
+            }
+            params.put( arg.substring( 0, split ), arg.substring( split + 1 ) );
+        }
+        return params;
+    }
+
+    private static void run(Map<String, String> aParams) throws InterruptedException, ExecutionException {
+        int levels = Integer.parseInt( aParams.get( "levels" ) );
+        int width = Integer.parseInt( aParams.get( "width" ) );
+        int fanIn = Integer.parseInt( aParams.get( "fanIn" ) );
+        int n = Integer.parseInt( aParams.get( "n" ) );
+        int m = Integer.parseInt( aParams.get( "m" ) );
+        int maxParallelism = Integer.parseInt( aParams.get( "maxParallelism" ) );
+        int repeat = Integer.parseInt( aParams.get( "repeat" ) );
+        Random random = new Random( Long.parseLong( aParams.get( "seed" ) ) );
+
+        //分层随机DAG：每个顶点有 fanIn 条来自上一层的前向边，第一层来自起始顶点，最后一层连到终止顶点；顶点标识随机打乱
+        int vertexCount = levels * width + 2;
+        int [] permutation = new int [ vertexCount ];
+        for (int v = 0; v < vertexCount; ++v) {
+            permutation[ v ] = v;
+        }
+        for (int v = vertexCount - 1; v > 0; --v) {
+            int swap = random.nextInt( v + 1 );
+            int tmp = permutation[ v ];
+            permutation[ v ] = permutation[ swap ];
+            permutation[ swap ] = tmp;
+        }
+        int edgeCount = width + (levels - 1) * width * fanIn + width;
+        int [] fromVertexes = new int [ edgeCount ];
+        int [] toVertexes = new int [ edgeCount ];
+        double [] distances = new double [ edgeCount ];
+        int e = 0;
+        for (int level = 0; level < levels; ++level) {
+            for (int j = 0; j < width; ++j) {
+                int vertex = 1 + level * width + j;
+                for (int k = 0, kcount = level == 0 ? 1 : fanIn; k < kcount; ++k) {
+                    //第一条边来自上一层同一位置的顶点，保证上一层每个顶点都有后向边
+                    int previous = level == 0 ? 0 : 1 + (level - 1) * width + (k == 0 ? j : random.nextInt( width ));
+                    fromVertexes[ e ] = permutation[ previous ];
+                    toVertexes[ e ] = permutation[ vertex ];
+                    distances[ e++ ] = random.nextInt( 1000 ) + 0.7;
+                }
+            }
+        }
+        for (int j = 0; j < width; ++j) {
+            fromVertexes[ e ] = permutation[ 1 + (levels - 1) * width + j ];
+            toVertexes[ e ] = permutation[ vertexCount - 1 ];
+            distances[ e++ ] = random.nextInt( 1000 ) + 0.7;
+        }
+        Integer [] attachments = new Integer [ vertexCount ];
+        for (int v = 0; v < vertexCount; ++v) {
+            attachments[ v ] = v;
+        }
+        NMShortPathUnorderedGraphBuilder<Integer> builder = new NMShortPathUnorderedGraphBuilder<Integer>( vertexCount, fromVertexes, toVertexes, distances );
+        int startVertex = permutation[ 0 ];
+        int endVertex = permutation[ vertexCount - 1 ];
+
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism <<= 1) {
+            ForkJoinPool pool = new ForkJoinPool( parallelism );
+            try {
+                for (int r = 0; r < repeat; ++r) {
+                    System.gc();
+                    LoadTestUnorderedGraphBuilder.resetPeakUsage();
+                    //在 pool 中执行时其中的并行流也在此 pool 中执行
+                    long t1 = System.nanoTime();
+                    pool.submit( () -> builder.topologicalSort( startVertex, endVertex ) ).get();
+                    long t2 = System.nanoTime();
+                    NMShortPathGraph<Integer> graph = pool.submit( () -> builder.build( n, m, attachments, startVertex, endVertex ) ).get();
+                    long t3 = System.nanoTime();
+                    NMShortPath<Integer> result = graph.calculateNMShortPath();
+                    long t4 = System.nanoTime();
+
+                    StringBuilder json = new StringBuilder( 512 ).append( '{' );
+                    for (Map.Entry<String, String> param : aParams.entrySet()) {
+                        json.append( '"' ).append( param.getKey() ).append( "\":\"" ).append( param.getValue() ).append( "\"," );
+                    }
+                    json.append( "\"parallelism\":" ).append( parallelism );
+                    json.append( ",\"run\":" ).append( r );
+                    json.append( ",\"vertexCount\":" ).append( vertexCount );
+                    json.append( ",\"edgeCount\":" ).append( edgeCount );
+                    json.append( ",\"sortMillis\":" ).append( (t2 - t1) / 1_000_000.0 );
+                    json.append( ",\"buildMillis\":" ).append( (t3 - t2) / 1_000_000.0 );
+                    json.append( ",\"solveMillis\":" ).append( (t4 - t3) / 1_000_000.0 );
+                    json.append( ",\"peakHeapBytes\":" ).append( LoadTestUnorderedGraphBuilder.peakHeapUsage() );
+                    json.append( ",\"mostShortDistance\":" ).append( result.getMostShortPath().getTotalDistance() );
+                    json.append( '}' );
+                    System.out.println( json );
+                    System.out.flush();
+                }
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    //各堆内存区峰值之和，是真实峰值的上界
+    private static long peakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,64 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+
+/**
+ * 各测试共用的结果描述和检查：求解结果描述为字符串后整体比较，每个ShortPath一行，"累计距离[各VertexPath的顶点绑定数据]"
+ */
+final class NMShortPathTestSupport {
+    private NMShortPathTestSupport() {
+    }
+
+    /**
+     * 规范描述：同一ShortPath中的各VertexPath排序后再描述。不同方式创建的同一个图前向边顺序可能不同，相同累计距离的VertexPath的顺序随之不同，
+     * 这样的两个图的结果只能按规范描述比较(M的限制截断相同累计距离的VertexPath时保留哪些同样取决于前向边顺序，比较时M要足够大)
+     */
+    static <A> String toCanonicalString(NMShortPath<A> aResult) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < aResult.getShortPathCount(); ++i) {
+            ShortPath<A> shortPath = aResult.getShortPathAt( i );
+            List<String> vertexPaths = new ArrayList<String>();
+            shortPath.forEach( (aVertexPath) -> {
+                StringBuilder vertexes = new StringBuilder();
+                aVertexPath.forEach( (aVertex) -> vertexes.append( aVertex.getAttachment() ).append( ',' ) );
+                vertexPaths.add( vertexes.toString() );
+            } );
+            Collections.sort( vertexPaths );
+            result.append( shortPath.getTotalDistance() ).append( vertexPaths ).append( '\n' );
+        }
+        return result.toString();
+    }
+
+    /**
+     * 按结果本身的顺序描述，包括同一ShortPath中VertexPath的顺序，用于同一个图的不同求解方式之间的比较
+     */
+    static <A> String toOrderedString(NMShortPath<A> aResult) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < aResult.getShortPathCount(); ++i) {
+            ShortPath<A> shortPath = aResult.getShortPathAt( i );
+            result.append( shortPath.getTotalDistance() ).append( '[' );
+            shortPath.forEach( (aVertexPath) -> {
+                aVertexPath.forEach( (aVertex) -> result.append( aVertex.getAttachment() ).append( ',' ) );
+                result.append( ' ' );
+            } );
+            result.append( "]\n" );
+        }
+        return result.toString();
+    }
+
+    static void checkEqual(String aExpected, String aActual, String aMessage) {
+        if (!aExpected.equals( aActual )) {
+            throw new IllegalStateException( aMessage + ":\n" + aExpected + "\n" + aActual );
+        }
+    }
+
+    static void check(boolean aCondition, String aMessage) {
+        if (!aCondition) {
+            throw new IllegalStateException( aMessage );
+        }
+    }
+}
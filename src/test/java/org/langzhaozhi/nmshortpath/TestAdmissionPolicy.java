@@ -0,0 +1,141 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Random;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+
+/**
+ * 求解前估算和准入策略的测试：随机DAG上估算的ShortPath、VertexPath总数必须不小于各顶点实际求解保留的总数；
+ * 所有边距离都相等的篱笆型图组合爆炸，估算即可看出，REJECT 拒绝求解，CLAMP 压低N和M后精确求解，APPROXIMATE 束剪枝近似求解。
+ */
+public class TestAdmissionPolicy {
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        for (int t = 0; t < 100; ++t) {
+            TestAdmissionPolicy.checkBound( random );
+        }
+        System.err.println( "[100]个随机图的估算都是各顶点实际保留的ShortPath、VertexPath总数的上界" );
+
+        //30列每列2个顶点的篱笆，相邻两列全连接，所有距离都为1：到终止顶点有 2^30 条相同距离的路径
+        int n = 3;
+        int m = 1000;
+        NMShortPathGraph<Integer> fence = TestAdmissionPolicy.createFence( n, m, 30, 2 );
+        NMShortPathEstimate estimate = fence.estimate();
+        System.err.println( "篱笆型图的估算: " + estimate );
+        NMShortPathAdmissionPolicy unlimited = new NMShortPathAdmissionPolicy( Long.MAX_VALUE, Long.MAX_VALUE, NMShortPathAdmissionPolicy.Action.REJECT );
+        NMShortPathTestSupport.check( NMShortPathTestSupport.toOrderedString( fence.calculateNMShortPath() ).equals( NMShortPathTestSupport.toOrderedString( fence.calculateNMShortPath( unlimited ) ) ), "admitted graph must be solved normally" );
+
+        long maxBytes = estimate.getEstimatedBytes() / 10;
+        NMShortPathAdmissionPolicy reject = new NMShortPathAdmissionPolicy( maxBytes, Long.MAX_VALUE, NMShortPathAdmissionPolicy.Action.REJECT );
+        NMShortPathTestSupport.check( !reject.admits( estimate ), "exploding graph must exceed the limit" );
+        try {
+            fence.calculateNMShortPath( reject );
+            throw new IllegalStateException( "REJECT must refuse to solve" );
+        }
+        catch (IllegalStateException e) {
+            if (!e.getMessage().startsWith( "Graph Rejected" )) {
+                throw e;
+            }
+            System.err.println( "REJECT: " + e.getMessage() );
+        }
+
+        //限额之内最大的M，逐个找出，同策略的二分查找比较
+        int clampedM = 0;
+        for (int mm = 1; mm < m; ++mm) {
+            if (reject.admits( fence.estimate( Math.min( n, mm ), mm ) )) {
+                clampedM = mm;
+            }
+        }
+        NMShortPathTestSupport.check( clampedM > 0, "some smaller M must be admitted" );
+
+        NMShortPathAdmissionPolicy clamp = new NMShortPathAdmissionPolicy( maxBytes, Long.MAX_VALUE, NMShortPathAdmissionPolicy.Action.CLAMP );
+        NMShortPath<Integer> clamped = fence.calculateNMShortPath( clamp );
+        NMShortPathTestSupport.check( !clamped.isApproximate() && NMShortPathTestSupport.toOrderedString( clamped ).equals( NMShortPathTestSupport.toOrderedString( fence.calculateNMShortPath( Math.min( n, clampedM ), clampedM ) ) ), "CLAMP must solve exactly with the largest admitted M" );
+        System.err.println( "CLAMP: M压低到[" + clampedM + "], VertexPath个数为[" + clamped.getVertexPathCount() + "]" );
+
+        NMShortPathAdmissionPolicy approximate = new NMShortPathAdmissionPolicy( maxBytes, Long.MAX_VALUE, NMShortPathAdmissionPolicy.Action.APPROXIMATE );
+        NMShortPath<Integer> approximated = fence.calculateNMShortPath( approximate );
+        NMShortPathTestSupport.check( approximated.isApproximate() && NMShortPathTestSupport.toOrderedString( approximated ).equals( NMShortPathTestSupport.toOrderedString( fence.calculateNMShortPath( new NMShortPathBeam( clampedM ) ) ) ), "APPROXIMATE must beam solve with the widest admitted beam" );
+        System.err.println( "APPROXIMATE: 束宽度[" + clampedM + "], 近似结果的最短距离为[" + approximated.getMostShortPath().getTotalDistance() + "]" );
+
+        //限额小到连M=1都超出时，CLAMP 和 APPROXIMATE 也只能拒绝
+        NMShortPathAdmissionPolicy tiny = new NMShortPathAdmissionPolicy( 1, Long.MAX_VALUE, NMShortPathAdmissionPolicy.Action.CLAMP );
+        try {
+            fence.calculateNMShortPath( tiny );
+            throw new IllegalStateException( "nothing admitted must be rejected" );
+        }
+        catch (IllegalStateException e) {
+            if (!e.getMessage().startsWith( "Graph Rejected" )) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 随机DAG，随机N和M：估算的上界不小于各顶点(以之为终点单独求解)实际保留的ShortPath、VertexPath数目之和
+     */
+    @SuppressWarnings("unchecked")
+    private static void checkBound(Random aRandom) {
+        int n = 1 + aRandom.nextInt( 5 );
+        int m = n + aRandom.nextInt( 20 );
+        int vertexCount = 3 + aRandom.nextInt( 40 );
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( n, m, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ 1 + aRandom.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = Math.max( 0, v - 1 - aRandom.nextInt( 5 ) );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], 1 + aRandom.nextInt( 2 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ]) {
+                vertexes[ v ].connectToEndVertex( 1 );
+            }
+        }
+        NMShortPathEstimate estimate = graphModel.estimate();
+        NMShortPathTestSupport.check( estimate.getVertexCount() == graphModel.getGraphVertexCount() && estimate.getEdgeCount() == graphModel.getEdgeCount(), "estimate must count vertexes and edges" );
+        //起始顶点有一个ShortPath和一个VertexPath
+        long shortPathCount = 1;
+        long vertexPathCount = 1;
+        for (int v = 1; v < vertexCount; ++v) {
+            NMShortPath<Integer> result = graphModel.calculateNMShortPath( graphModel.getStartVertex(), vertexes[ v ], n, m );
+            shortPathCount += result.getShortPathCount();
+            vertexPathCount += result.getVertexPathCount();
+        }
+        NMShortPath<Integer> result = graphModel.calculateNMShortPath();
+        shortPathCount += result.getShortPathCount();
+        vertexPathCount += result.getVertexPathCount();
+        if (shortPathCount > estimate.getShortPathBound() || vertexPathCount > estimate.getVertexPathBound()) {
+            throw new IllegalStateException( "estimate is not an upper bound: shortPaths=" + shortPathCount + ", vertexPaths=" + vertexPathCount + ", " + estimate );
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NMShortPathGraph<Integer> createFence(int aNShortPathCount, int aMVertexPathCount, int aColumnCount, int aRowCount) {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+        NMShortPathVertex<Integer> [] previousColumn = new NMShortPathVertex [] {
+            graphModel.getStartVertex()
+        };
+        int attachment = 1;
+        for (int c = 0; c < aColumnCount; ++c) {
+            NMShortPathVertex<Integer> [] column = new NMShortPathVertex [ aRowCount ];
+            for (int r = 0; r < aRowCount; ++r) {
+                NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ previousColumn.length ];
+                for (int k = 0; k < previousColumn.length; ++k) {
+                    previousEdges[ k ] = new NMShortPathEdge<Integer>( previousColumn[ k ], 1 );
+                }
+                column[ r ] = new NMShortPathVertex<Integer>( attachment++, previousEdges );
+            }
+            previousColumn = column;
+        }
+        for (NMShortPathVertex<Integer> vertex : previousColumn) {
+            vertex.connectToEndVertex( 1 );
+        }
+        return graphModel;
+    }
+}
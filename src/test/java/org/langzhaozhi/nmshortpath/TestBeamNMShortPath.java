@@ -0,0 +1,80 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+
+/**
+ * 束剪枝近似求解测试：所有边的距离都相同的篱笆型图，精确求解必须依靠M来压制组合爆炸，并且每个顶点都要对全部前向边排序归并；
+ * 束剪枝后每个顶点只有W个前向组参与归并，对比看下两者的求解时间和结果。
+ */
+public class TestBeamNMShortPath {
+    private static final int ColumnCount = 200;
+    private static final int VertexCountOfEveryColumn = 200;
+    private static final int N = 10;
+    private static final int M = 100;
+    private static final int BeamWidth = 8;
+
+    public static void main(String [] args) {
+        NMShortPathGraph<Integer> graphModel = TestBeamNMShortPath.createFixedDistanceGraph();
+
+        long t1 = System.currentTimeMillis();
+        NMShortPath<Integer> exactNMShortPath = graphModel.calculateNMShortPath();
+        long t2 = System.currentTimeMillis();
+        NMShortPath<Integer> beamNMShortPath = graphModel.calculateNMShortPath( new NMShortPathBeam( BeamWidth ) );
+        long t3 = System.currentTimeMillis();
+        //束宽度足够大并且不限制阈值时，不会发生剪枝，结果必定同精确求解一致
+        NMShortPath<Integer> wideBeamNMShortPath = graphModel.calculateNMShortPath( new NMShortPathBeam( Integer.MAX_VALUE ) );
+
+        System.err.println( "精确求解 spend: " + (t2 - t1) + " ms, 最短距离[" + exactNMShortPath.getMostShortPath().getTotalDistance() + "], ShortPath[" + exactNMShortPath.getShortPathCount() + "]个, VertexPath[" + exactNMShortPath.getVertexPathCount() + "]个, approximate=" + exactNMShortPath.isApproximate() );
+        System.err.println( "束剪枝(W=" + BeamWidth + ") spend: " + (t3 - t2) + " ms, 最短距离[" + beamNMShortPath.getMostShortPath().getTotalDistance() + "], ShortPath[" + beamNMShortPath.getShortPathCount() + "]个, VertexPath[" + beamNMShortPath.getVertexPathCount() + "]个, approximate=" + beamNMShortPath.isApproximate() );
+        System.err.println( "宽束求解: 最短距离[" + wideBeamNMShortPath.getMostShortPath().getTotalDistance() + "], VertexPath[" + wideBeamNMShortPath.getVertexPathCount() + "]个, approximate=" + wideBeamNMShortPath.isApproximate() );
+        if (wideBeamNMShortPath.isApproximate() || wideBeamNMShortPath.getVertexPathCount() != exactNMShortPath.getVertexPathCount()) {
+            throw new IllegalStateException( "wide beam must equal to exact solve" );
+        }
+        TestBeamNMShortPath.beamWidthReachedWithoutPruning();
+    }
+
+    /**
+     * 束宽度W比M更严格并且顶点的VertexPath数目恰好达到了W，但没有精确求解会保留的候选被丢弃：不算近似；W再小一些就确实丢弃了
+     */
+    @SuppressWarnings("unchecked")
+    private static void beamWidthReachedWithoutPruning() {
+        NMShortPathGraph<String> graphModel = new NMShortPathGraph<String>( 1, 10, "<#起点#>", "<#终点#>" );
+        NMShortPathVertex<String> vertexA = new NMShortPathVertex<String>( "<顶点A>", new NMShortPathEdge<String>( graphModel.getStartVertex(), 1 ) );
+        NMShortPathVertex<String> vertexB = new NMShortPathVertex<String>( "<顶点B>", new NMShortPathEdge<String>( graphModel.getStartVertex(), 1 ) );
+        NMShortPathVertex<String> vertexC = new NMShortPathVertex<String>( "<顶点C>", new NMShortPathEdge<String>( vertexA, 1 ), new NMShortPathEdge<String>( vertexB, 1 ) );
+        vertexC.connectToEndVertex( 1 );
+
+        NMShortPath<String> exactNMShortPath = graphModel.calculateNMShortPath();
+        NMShortPath<String> fullBeamNMShortPath = graphModel.calculateNMShortPath( new NMShortPathBeam( 2 ) );
+        NMShortPath<String> prunedBeamNMShortPath = graphModel.calculateNMShortPath( new NMShortPathBeam( 1 ) );
+        System.err.println( "束宽度恰好用满(W=2,M=10): VertexPath[" + fullBeamNMShortPath.getVertexPathCount() + "]个, approximate=" + fullBeamNMShortPath.isApproximate() );
+        System.err.println( "束宽度不够(W=1,M=10): VertexPath[" + prunedBeamNMShortPath.getVertexPathCount() + "]个, approximate=" + prunedBeamNMShortPath.isApproximate() );
+        if (fullBeamNMShortPath.isApproximate() || fullBeamNMShortPath.getVertexPathCount() != exactNMShortPath.getVertexPathCount()) {
+            throw new IllegalStateException( "beam reaching its width without dropping any candidate must equal to exact solve" );
+        }
+        if (!prunedBeamNMShortPath.isApproximate()) {
+            throw new IllegalStateException( "beam dropping a candidate must be approximate" );
+        }
+    }
+
+    private static NMShortPathGraph<Integer> createFixedDistanceGraph() {
+        int attachmentGenerator = 0;
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( N, M, attachmentGenerator++, 0xFFFF_FFFF );
+        ArrayList<NMShortPathVertex<Integer>> previousColumnVertexArray = new ArrayList<NMShortPathVertex<Integer>>( VertexCountOfEveryColumn );
+        previousColumnVertexArray.add( graphModel.getStartVertex() );
+        ArrayList<NMShortPathVertex<Integer>> currentColumnVertexArray = new ArrayList<NMShortPathVertex<Integer>>( VertexCountOfEveryColumn );
+        for (int i = 0; i < ColumnCount; ++i) {
+            for (int j = 0; j < VertexCountOfEveryColumn; ++j) {
+                @SuppressWarnings("unchecked")
+                NMShortPathEdge<Integer> [] previousEdgeArray = previousColumnVertexArray.stream().map( (aPreviousVertex) -> new NMShortPathEdge<Integer>( aPreviousVertex, 0.7 ) ).toArray( NMShortPathEdge []::new );
+                currentColumnVertexArray.add( new NMShortPathVertex<Integer>( attachmentGenerator++, previousEdgeArray ) );
+            }
+            ArrayList<NMShortPathVertex<Integer>> tmp = previousColumnVertexArray;
+            previousColumnVertexArray = currentColumnVertexArray;
+            currentColumnVertexArray = tmp;
+            currentColumnVertexArray.clear();
+        }
+        previousColumnVertexArray.forEach( (aLastColumnVertex) -> aLastColumnVertex.connectToEndVertex( 0.7 ) );
+        return graphModel;
+    }
+}
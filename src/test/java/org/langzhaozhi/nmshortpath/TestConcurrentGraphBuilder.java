@@ -0,0 +1,104 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 并发构建测试：随机DAG按区块由多个线程同时填充，主线程同时轮询 isReady()，填满后 seal() 得到的图同单线程直接创建的图求解结果必须一致。
+ */
+public class TestConcurrentGraphBuilder {
+    private static final int N = 4;
+    private static final int M = 8;
+    private static final int THREAD_COUNT = 4;
+
+    public static void main(String [] args) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool( THREAD_COUNT );
+        try {
+            Random random = new Random( 20150123 );
+            for (int t = 0; t < 100; ++t) {
+                TestConcurrentGraphBuilder.checkEqual( 1 + random.nextInt( 20 ), 1 + random.nextInt( 50 ), random, executor );
+            }
+            //大区块，填充的时间足够长，isReady() 的轮询同填充线程真正交错
+            TestConcurrentGraphBuilder.checkEqual( 16, 20000, random, executor );
+            System.err.println( "多线程按区块填充的[101]个图，求解结果同单线程直接创建的完全一致" );
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void checkEqual(int aRegionCount, int aVertexCountOfEveryRegion, Random aRandom, ExecutorService aExecutor) throws Exception {
+        //先生成整个图的结构：每个顶点有1到3条前向边，前向顶点可以在前面任意区块中，距离是小整数(相同累计距离很多)
+        int vertexCount = 1 + aRegionCount * aVertexCountOfEveryRegion;//包括起始顶点，不包括终止顶点
+        int [][] previousOfVertexes = new int [ vertexCount ][];
+        double [][] distancesOfVertexes = new double [ vertexCount ][];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        for (int v = 1; v < vertexCount; ++v) {
+            int [] previous = new int [ 1 + aRandom.nextInt( 3 ) ];
+            double [] distances = new double [ previous.length ];
+            for (int k = 0; k < previous.length; ++k) {
+                previous[ k ] = aRandom.nextInt( 4 ) == 0 ? aRandom.nextInt( v ) : Math.max( 0, v - 1 - aRandom.nextInt( 4 ) );
+                distances[ k ] = 1 + aRandom.nextInt( 5 );
+                hasPostVertex[ previous[ k ] ] = true;
+            }
+            previousOfVertexes[ v ] = previous;
+            distancesOfVertexes[ v ] = distances;
+        }
+
+        //单线程直接创建
+        NMShortPathGraph<Integer> sequentialGraph = new NMShortPathGraph<Integer>( N, M, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        vertexes[ 0 ] = sequentialGraph.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ previousOfVertexes[ v ].length ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previousOfVertexes[ v ][ k ] ], distancesOfVertexes[ v ][ k ] );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ]) {
+                vertexes[ v ].connectToEndVertex( v % 3 + 1 );
+            }
+        }
+
+        //按拓扑顺序预留区块，各区块由不同线程同时填充，没有后向顶点的顶点由其所在区块连接到终止顶点
+        NMShortPathConcurrentGraphBuilder<Integer> builder = new NMShortPathConcurrentGraphBuilder<Integer>( N, M, 0, -1, vertexCount );
+        List<NMShortPathConcurrentGraphBuilder.Region<Integer>> regions = new ArrayList<NMShortPathConcurrentGraphBuilder.Region<Integer>>();
+        for (int r = 0; r < aRegionCount; ++r) {
+            regions.add( builder.reserveRegion( aVertexCountOfEveryRegion ) );
+        }
+        if (builder.isReady()) {
+            throw new IllegalStateException( "builder must not be ready before regions are filled" );
+        }
+        List<Future<?>> fillings = new ArrayList<Future<?>>();
+        for (NMShortPathConcurrentGraphBuilder.Region<Integer> region : regions) {
+            fillings.add( aExecutor.submit( () -> {
+                int firstIndex = region.getFirstGraphVertexIndex();
+                for (int v = firstIndex; v < firstIndex + region.getVertexCount(); ++v) {
+                    region.addVertex( v, previousOfVertexes[ v ], distancesOfVertexes[ v ] );
+                    if (!hasPostVertex[ v ]) {
+                        region.connectToEndVertex( v, v % 3 + 1 );
+                    }
+                }
+            } ) );
+        }
+        //主线程在填充的同时轮询，必须能看到各区块最终填满
+        while (!builder.isReady()) {
+            Thread.yield();
+        }
+        for (Future<?> filling : fillings) {
+            filling.get();
+        }
+        NMShortPathGraph<Integer> concurrentGraph = builder.seal();
+
+        String expected = NMShortPathTestSupport.toCanonicalString( sequentialGraph.calculateNMShortPath() );
+        String actual = NMShortPathTestSupport.toCanonicalString( concurrentGraph.calculateNMShortPath() );
+        NMShortPathTestSupport.checkEqual( expected, actual, "concurrent build differs from sequential build" );
+    }
+}
@@ -0,0 +1,70 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * 带约束的NM-最短路径测试：同 TestSimpleNMShortPath 一样的图，在同一个图上分别禁用边、禁用顶点、要求必经顶点，不需要重新创建图。
+ */
+public class TestConstrainedNMShortPath {
+    private static final int N = 1000;
+    private static final int M = 1000;
+
+    @SuppressWarnings("unchecked")
+    public static void main(String [] args) {
+        NMShortPathGraph<String> graphModel = new NMShortPathGraph<String>( N, M, "<#起点#>", "<#终点#>" );
+        NMShortPathVertex<String> vertexA = new NMShortPathVertex<String>( "<顶点A>", new NMShortPathEdge<String>( graphModel.getStartVertex(), 1 ) );
+        NMShortPathVertex<String> vertexB = new NMShortPathVertex<String>( "<顶点B>", new NMShortPathEdge<String>( vertexA, 1 ) );
+        NMShortPathEdge<String> edgeAC = new NMShortPathEdge<String>( vertexA, 2 );
+        NMShortPathVertex<String> vertexC = new NMShortPathVertex<String>( "<顶点C>", edgeAC, new NMShortPathEdge<String>( vertexB, 1 ) );
+        NMShortPathVertex<String> vertexD = new NMShortPathVertex<String>( "<顶点D>", new NMShortPathEdge<String>( vertexB, 1 ), new NMShortPathEdge<String>( vertexC, 1 ) );
+        NMShortPathVertex<String> vertexE = new NMShortPathVertex<String>( "<顶点E>", new NMShortPathEdge<String>( vertexD, 1 ) );
+        vertexE.connectToEndVertex( 1 );
+        vertexD.connectToEndVertex( 3 );
+        vertexC.connectToEndVertex( 2 );
+
+        TestConstrainedNMShortPath.print( "没有约束", graphModel.calculateNMShortPath( null, null, null ) );
+
+        //禁用边 A-->C
+        BitSet disabledEdges = new BitSet( graphModel.getEdgeCount() );
+        disabledEdges.set( graphModel.getEdgeIndex( vertexC, edgeAC ) );
+        TestConstrainedNMShortPath.print( "禁用边A-->C", graphModel.calculateNMShortPath( disabledEdges, null, null ) );
+
+        //禁用顶点 B
+        BitSet disabledVertexes = new BitSet();
+        disabledVertexes.set( vertexB.getGraphVertexIndex() );
+        TestConstrainedNMShortPath.print( "禁用顶点B", graphModel.calculateNMShortPath( null, disabledVertexes, null ) );
+
+        //必经顶点 C 和 E
+        TestConstrainedNMShortPath.print( "必经顶点C和E", graphModel.calculateNMShortPath( null, null, Arrays.asList( vertexE, vertexC ) ) );
+
+        //禁用顶点 B 并且必经顶点 D
+        TestConstrainedNMShortPath.print( "禁用顶点B并且必经顶点D", graphModel.calculateNMShortPath( null, disabledVertexes, Collections.singletonList( vertexD ) ) );
+
+        //禁用边 A-->C 并且禁用顶点 B：没有满足约束的路径
+        try {
+            graphModel.calculateNMShortPath( disabledEdges, disabledVertexes, null );
+            System.err.println( "禁用边A-->C并且禁用顶点B: 错误，应该没有满足约束的路径" );
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println( "禁用边A-->C并且禁用顶点B: " + e.getMessage() );
+        }
+    }
+
+    private static void print(String aConstraint, NMShortPath<String> aResult) {
+        System.err.println( aConstraint + ": 实际ShortPath个数(N)为[" + aResult.getShortPathCount() + "]个, VertexPath个数(M)为[" + aResult.getVertexPathCount() + "]个" );
+        for (int i = 0, shortPathCount = aResult.getShortPathCount(); i < shortPathCount; ++i) {
+            ShortPath<String> nextShortPath = aResult.getShortPathAt( i );
+            for (int j = 0, vertextPathCount = nextShortPath.getVertexPathCount(); j < vertextPathCount; ++j) {
+                VertexPath<String> nextVertexPath = nextShortPath.getVertexPathAt( j );
+                StringBuilder vertexes = new StringBuilder();
+                nextVertexPath.forEach( (aVertex) -> vertexes.append( vertexes.length() == 0 ? "" : "-->" ).append( aVertex.getAttachment() ) );
+                System.err.println( "    路径长度[" + nextShortPath.getTotalDistance() + "]: " + vertexes );
+            }
+        }
+    }
+}
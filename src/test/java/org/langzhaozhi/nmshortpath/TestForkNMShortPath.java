@@ -0,0 +1,154 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 前缀快照和分支图的测试：随机前缀做快照后，原图和分支图各自接上不同的后缀，两者的求解结果都必须同从头创建的整个图一致，
+ * 分支图的添加和求解不能改变原图及其求解结果。以前缀顶点为前向顶点时不指定所属的图必须被拒绝。
+ */
+public class TestForkNMShortPath {
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        for (int t = 0; t < 200; ++t) {
+            int n = 1 + random.nextInt( 4 );
+            TestForkNMShortPath.checkFork( n, n + random.nextInt( 8 ), random );
+        }
+        System.err.println( "[200]个随机前缀的原图和分支图，求解结果都同从头创建的图完全一致" );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void checkFork(int aNShortPathCount, int aMVertexPathCount, Random aRandom) {
+        int prefixCount = 2 + aRandom.nextInt( 30 );//包括起始顶点
+        Structure prefix = new Structure();
+        prefix.grow( 1, prefixCount, aRandom );
+        Structure parent = prefix.copy();
+        parent.grow( prefixCount, prefixCount + 1 + aRandom.nextInt( 20 ), aRandom );
+        Structure fork = prefix.copy();
+        fork.grow( prefixCount, prefixCount + 1 + aRandom.nextInt( 20 ), aRandom );
+
+        //原图先创建前缀并做快照，再接上自身的后缀
+        NMShortPathGraph<Integer> parentGraph = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+        NMShortPathVertex<Integer> [] parentVertexes = new NMShortPathVertex [ parent.size() ];
+        parentVertexes[ 0 ] = parentGraph.getStartVertex();
+        for (int v = 1; v < prefixCount; ++v) {
+            parentVertexes[ v ] = new NMShortPathVertex<Integer>( v, parent.previousEdges( v, parentVertexes ) );
+        }
+        NMShortPathSnapshot<Integer> snapshot = parentGraph.snapshot( -1 );
+
+        //前缀顶点已经为各分支图共享，不指定所属的图无法确定加入哪个图
+        boolean vertexRejected = false;
+        try {
+            new NMShortPathVertex<Integer>( -2, parentVertexes[ prefixCount - 1 ], 1 );
+        }
+        catch (IllegalArgumentException e) {
+            vertexRejected = true;
+        }
+        boolean connectRejected = false;
+        try {
+            parentVertexes[ prefixCount - 1 ].connectToEndVertex( 1 );
+        }
+        catch (IllegalStateException e) {
+            connectRejected = true;
+        }
+        if (!vertexRejected || !connectRejected) {
+            throw new IllegalStateException( "shared prefix vertexes must be used through an explicitly specified graph" );
+        }
+
+        parent.complete( parentGraph, parentVertexes, prefixCount );
+        String parentResult = NMShortPathTestSupport.toCanonicalString( parentGraph.calculateNMShortPath() );
+        int parentVertexCount = parentGraph.getGraphVertexCount();
+        NMShortPathTestSupport.checkEqual( parent.buildFromScratch( aNShortPathCount, aMVertexPathCount ), parentResult, "parent differs from graph built from scratch" );
+
+        //分支图共享前缀，接上另外的后缀
+        NMShortPathGraph<Integer> forkGraph = snapshot.fork();
+        NMShortPathVertex<Integer> [] forkVertexes = new NMShortPathVertex [ fork.size() ];
+        for (int v = 0; v < prefixCount; ++v) {
+            forkVertexes[ v ] = snapshot.getVertexAt( v );
+        }
+        fork.complete( forkGraph, forkVertexes, prefixCount );
+        NMShortPathTestSupport.checkEqual( fork.buildFromScratch( aNShortPathCount, aMVertexPathCount ), NMShortPathTestSupport.toCanonicalString( forkGraph.calculateNMShortPath() ), "fork differs from graph built from scratch" );
+
+        //原图不受分支图影响
+        NMShortPathTestSupport.checkEqual( parentResult, NMShortPathTestSupport.toCanonicalString( parentGraph.calculateNMShortPath() ), "parent after fork differs from graph built from scratch" );
+        if (parentGraph.getGraphVertexCount() != parentVertexCount) {
+            throw new IllegalStateException( "fork vertexes must not join the parent graph" );
+        }
+    }
+
+    /**
+     * 图结构：第v个顶点的各前向顶点及距离，没有后向顶点的都连到终止顶点。距离是小整数，相同累计距离很多
+     */
+    private static final class Structure {
+        List<int []> mPreviousOfVertexes = new ArrayList<int []>();
+        List<double []> mDistancesOfVertexes = new ArrayList<double []>();
+
+        Structure() {
+            this.mPreviousOfVertexes.add( new int [ 0 ] );
+            this.mDistancesOfVertexes.add( new double [ 0 ] );
+        }
+
+        Structure copy() {
+            Structure copy = new Structure();
+            copy.mPreviousOfVertexes = new ArrayList<int []>( this.mPreviousOfVertexes );
+            copy.mDistancesOfVertexes = new ArrayList<double []>( this.mDistancesOfVertexes );
+            return copy;
+        }
+
+        int size() {
+            return this.mPreviousOfVertexes.size();
+        }
+
+        //添加 [aFrom, aTo) 的顶点，前向顶点在前面8个之内(可以跨越前缀)
+        void grow(int aFrom, int aTo, Random aRandom) {
+            for (int v = aFrom; v < aTo; ++v) {
+                int [] previous = new int [ 1 + aRandom.nextInt( 3 ) ];
+                double [] distances = new double [ previous.length ];
+                for (int k = 0; k < previous.length; ++k) {
+                    previous[ k ] = Math.max( 0, v - 1 - aRandom.nextInt( 8 ) );
+                    distances[ k ] = 1 + aRandom.nextInt( 4 );
+                }
+                this.mPreviousOfVertexes.add( previous );
+                this.mDistancesOfVertexes.add( distances );
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        NMShortPathEdge<Integer> [] previousEdges(int aVertex, NMShortPathVertex<Integer> [] aVertexes) {
+            int [] previous = this.mPreviousOfVertexes.get( aVertex );
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ previous.length ];
+            for (int k = 0; k < previous.length; ++k) {
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( aVertexes[ previous[ k ] ], this.mDistancesOfVertexes.get( aVertex )[ k ] );
+            }
+            return previousEdges;
+        }
+
+        //在 aGraph 中创建 aFrom 之后的顶点(明确指定所属的图)，再把没有后向顶点的顶点都连到终止顶点
+        void complete(NMShortPathGraph<Integer> aGraph, NMShortPathVertex<Integer> [] aVertexes, int aFrom) {
+            for (int v = aFrom; v < this.size(); ++v) {
+                aVertexes[ v ] = new NMShortPathVertex<Integer>( aGraph, v, this.previousEdges( v, aVertexes ) );
+            }
+            boolean [] hasPostVertex = new boolean [ this.size() ];
+            for (int [] previous : this.mPreviousOfVertexes) {
+                for (int p : previous) {
+                    hasPostVertex[ p ] = true;
+                }
+            }
+            for (int v = 0; v < this.size(); ++v) {
+                if (!hasPostVertex[ v ]) {
+                    aGraph.connectToEndVertex( aVertexes[ v ], 1 + v % 3 );
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        String buildFromScratch(int aNShortPathCount, int aMVertexPathCount) {
+            NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+            NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ this.size() ];
+            vertexes[ 0 ] = graphModel.getStartVertex();
+            this.complete( graphModel, vertexes, 1 );
+            return NMShortPathTestSupport.toCanonicalString( graphModel.calculateNMShortPath() );
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * 线性链收缩的测试：同一个图分别创建两份，一份收缩线性链，求解结果必须同不收缩的完全一致，包括VertexPath的顺序、
+ * 逐个顶点及相邻顶点之间距离的正反向遍历、写出器的输出以及按调用指定N和M的求解。
+ * 除了随机图(大多数顶点只有一条前向边，距离取自很小的集合，相同累计距离很多)，还有从起始顶点开始的链、连到终止顶点的链以及整个图就是一条链的情形。
+ */
+public class TestLinearChainContraction {
+    public static void main(String [] args) {
+        NMShortPathWriter<Integer> writer = new NMShortPathWriter<Integer>( NMShortPathWriter.Format.BINARY, (aVertex, aBuffer) -> aBuffer.putInt( aVertex ) );
+        int contractedCount = 0;
+        for (int t = 0; t < 400; ++t) {
+            int n = 1 + t % 5;
+            int m = Math.max( 2, n + (t * 7) % 40 );//N == M == 1 走单独的最短路径求解，不收缩
+            contractedCount += TestLinearChainContraction.checkEqual( TestLinearChainContraction.createRandom( t, n, m ), TestLinearChainContraction.createRandom( t, n, m ), writer );
+        }
+        System.err.println( "[400]个随机图共收缩[" + contractedCount + "]个顶点，求解结果同不收缩时完全一致" );
+
+        int headTailCount = TestLinearChainContraction.checkEqual( TestLinearChainContraction.createHeadTailChains(), TestLinearChainContraction.createHeadTailChains(), writer );
+        NMShortPathTestSupport.check( headTailCount == 8, "chains from start vertex and to end vertex must be contracted: " + headTailCount );
+        int wholeCount = TestLinearChainContraction.checkEqual( TestLinearChainContraction.createWholeChain(), TestLinearChainContraction.createWholeChain(), writer );
+        NMShortPathTestSupport.check( wholeCount == 21, "whole chain graph must be contracted: " + wholeCount );
+        System.err.println( "从起始顶点开始、连到终止顶点的链收缩[" + headTailCount + "]个顶点，整个图是一条链时收缩[" + wholeCount + "]个顶点，求解结果同不收缩时完全一致" );
+    }
+
+    /**
+     * aContracted 收缩线性链后求解，同 aPlain 比较
+     * @return 收缩的顶点数目
+     */
+    private static int checkEqual(NMShortPathGraph<Integer> aPlain, NMShortPathGraph<Integer> aContracted, NMShortPathWriter<Integer> aWriter) {
+        int contractedCount = aContracted.contractLinearChains();
+        NMShortPath<Integer> plainResult = aPlain.calculateNMShortPath();
+        NMShortPath<Integer> contractedResult = aContracted.calculateNMShortPath();
+        //先写出(写出器直接沿前向指针回溯展开)，再做其他遍历
+        ByteBuffer contractedBytes = ByteBuffer.allocate( 1 << 22 );
+        aWriter.writeTo( contractedResult, contractedBytes );
+        ByteBuffer plainBytes = ByteBuffer.allocate( 1 << 22 );
+        aWriter.writeTo( plainResult, plainBytes );
+        contractedBytes.flip();
+        plainBytes.flip();
+        NMShortPathTestSupport.check( plainBytes.equals( contractedBytes ), "writer output differs" );
+        NMShortPathTestSupport.checkEqual( TestLinearChainContraction.forward( plainResult ), TestLinearChainContraction.forward( contractedResult ), "contracted solve differs" );
+        NMShortPathTestSupport.checkEqual( TestLinearChainContraction.reverse( plainResult ), TestLinearChainContraction.reverse( contractedResult ), "contracted solve differs" );
+        NMShortPathTestSupport.check( plainResult.isApproximate() == contractedResult.isApproximate(), "approximate flag differs" );
+        int n = Math.max( 1, aPlain.getNShortPathCount() - 1 );
+        int m = Math.max( n, aPlain.getMVertexPathCount() - 3 );
+        NMShortPathTestSupport.checkEqual( TestLinearChainContraction.forward( aPlain.calculateNMShortPath( n, m ) ), TestLinearChainContraction.forward( aContracted.calculateNMShortPath( n, m ) ), "contracted solve differs" );
+        return contractedCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NMShortPathGraph<Integer> createRandom(long aSeed, int aNShortPathCount, int aMVertexPathCount) {
+        Random random = new Random( aSeed );
+        int vertexCount = 20 + random.nextInt( 200 );
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            //三分之二的顶点只有一条前向边，来自前一个顶点，容易形成线性链
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ random.nextInt( 3 ) == 0 ? 1 + random.nextInt( 3 ) : 1 ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = k == 0 ? v - 1 : Math.max( 0, v - 1 - random.nextInt( 6 ) );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], random.nextInt( 4 ) == 0 ? 0.5 * random.nextInt( 3 ) : 1 + random.nextInt( 3 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ] || random.nextInt( 10 ) == 0) {
+                graphModel.connectToEndVertex( vertexes[ v ], random.nextInt( 3 ) );
+            }
+        }
+        return graphModel;
+    }
+
+    /**
+     * 起点-->1-->2-->3-->4，4-->5，4-->6，5-->7，6-->7，起点-->10-->7，7-->8-->9-->终点，所有距离都为1(相同累计距离)：
+     * 1,2,3 在从起始顶点开始的链上，8,9 在连到终止顶点的链上，5,6,10 各自单独成链，4 有两个后向顶点不收缩
+     */
+    private static NMShortPathGraph<Integer> createHeadTailChains() {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 3, 10, 0, -1 );
+        NMShortPathVertex<Integer> vertex1 = new NMShortPathVertex<Integer>( 1, graphModel.getStartVertex(), 1 );
+        NMShortPathVertex<Integer> vertex2 = new NMShortPathVertex<Integer>( 2, vertex1, 1 );
+        NMShortPathVertex<Integer> vertex3 = new NMShortPathVertex<Integer>( 3, vertex2, 1 );
+        NMShortPathVertex<Integer> vertex4 = new NMShortPathVertex<Integer>( 4, vertex3, 1 );
+        NMShortPathVertex<Integer> vertex5 = new NMShortPathVertex<Integer>( 5, vertex4, 1 );
+        NMShortPathVertex<Integer> vertex6 = new NMShortPathVertex<Integer>( 6, vertex4, 1 );
+        NMShortPathVertex<Integer> vertex10 = new NMShortPathVertex<Integer>( 10, graphModel.getStartVertex(), 3 );
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<Integer> vertex7 = new NMShortPathVertex<Integer>( 7, new NMShortPathEdge<Integer>( vertex5, 1 ), new NMShortPathEdge<Integer>( vertex6, 1 ), new NMShortPathEdge<Integer>( vertex10, 3 ) );
+        NMShortPathVertex<Integer> vertex8 = new NMShortPathVertex<Integer>( 8, vertex7, 1 );
+        NMShortPathVertex<Integer> vertex9 = new NMShortPathVertex<Integer>( 9, vertex8, 1 );
+        vertex9.connectToEndVertex( 1 );
+        return graphModel;
+    }
+
+    /**
+     * 整个图就是一条链：起点-->1-->...-->21-->终点，21个顶点全部收缩，距离有0(相同累计距离)
+     */
+    private static NMShortPathGraph<Integer> createWholeChain() {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 2, 4, 0, -1 );
+        NMShortPathVertex<Integer> vertex = graphModel.getStartVertex();
+        for (int v = 1; v <= 21; ++v) {
+            vertex = new NMShortPathVertex<Integer>( v, vertex, v % 3 );
+        }
+        vertex.connectToEndVertex( 1 );
+        return graphModel;
+    }
+
+    //逐个顶点正向遍历，带相邻顶点之间的距离
+    private static String forward(NMShortPath<Integer> aResult) {
+        StringBuilder result = new StringBuilder();
+        aResult.forEach( (aShortPath) -> {
+            result.append( aShortPath.getTotalDistance() ).append( '[' );
+            aShortPath.forEach( (aVertexPath) -> {
+                TestLinearChainContraction.appendVertexes( result, aVertexPath );
+                result.append( ';' );
+            } );
+            result.append( "]\n" );
+        } );
+        return result.toString();
+    }
+
+    private static void appendVertexes(StringBuilder aResult, VertexPath<Integer> aVertexPath) {
+        for (int k = 0, kcount = aVertexPath.getVertexCount(); k < kcount; ++k) {
+            aResult.append( aVertexPath.getVertexAt( k ).getAttachment() );
+            if (k + 1 < kcount) {
+                aResult.append( '(' ).append( aVertexPath.getDistanceBetween( k, k + 1 ) ).append( ')' );
+            }
+        }
+    }
+
+    private static String reverse(NMShortPath<Integer> aResult) {
+        StringBuilder result = new StringBuilder();
+        aResult.forEach( (aShortPath) -> aShortPath.forEach( (aVertexPath) -> {
+            aVertexPath.forEachVertexReverse( (aVertex) -> result.append( aVertex.getAttachment() ).append( ',' ) );
+            result.append( ';' );
+        } ) );
+        return result.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package org.langzhaozhi.nmshortpath;
+
+/**
+ * 求解结果缓存测试：相同结构的图命中，只差一条边距离的图指纹不同不会误命中，超出容量时淘汰最久未访问的，按源图规模计权重。
+ */
+public class TestNMShortPathCache {
+    private static final int N = 3;
+    private static final int M = 10;
+
+    public static void main(String [] args) {
+        NMShortPathCache<String> cache = new NMShortPathCache<String>( 2 );
+
+        NMShortPathGraph<String> graphOne = TestNMShortPathCache.createGraph( "甲", 1 );
+        NMShortPath<String> resultOne = cache.calculateNMShortPath( graphOne );
+        NMShortPathTestSupport.check( cache.getMissCount() == 1 && cache.getHitCount() == 0, "first query must miss" );
+
+        //相同结构、相同绑定数据的另外一个图：命中，返回的就是 graphOne 的结果本身
+        NMShortPathGraph<String> graphSame = TestNMShortPathCache.createGraph( "甲", 1 );
+        NMShortPath<String> resultSame = cache.calculateNMShortPath( graphSame );
+        NMShortPathTestSupport.check( cache.getHitCount() == 1 && resultSame == resultOne, "same structure must hit" );
+        NMShortPathTestSupport.check( resultSame.getMostShortPath().getVertexPathAt( 0 ).getVertexAt( 1 ).getOwnerContext() == graphOne, "hit must return the vertexes of the first graph" );
+
+        //只差一条边的距离：指纹不同，不能误命中
+        NMShortPathGraph<String> graphOtherDistance = TestNMShortPathCache.createGraph( "甲", 1.5 );
+        NMShortPathTestSupport.check( !graphOtherDistance.fingerprint( cache.getAttachmentHasher() ).equals( graphOne.fingerprint( cache.getAttachmentHasher() ) ), "graphs differ only in an edge distance must have different fingerprints" );
+        NMShortPath<String> resultOtherDistance = cache.calculateNMShortPath( graphOtherDistance );
+        NMShortPathTestSupport.check( cache.getMissCount() == 2 && resultOtherDistance != resultOne && resultOtherDistance.getMostShortPath().getTotalDistance() != resultOne.getMostShortPath().getTotalDistance(), "edge distance change must miss" );
+
+        //第三个不同的图：容量为2，淘汰最久未访问的 graphOne 的结果
+        NMShortPathGraph<String> graphOtherAttachment = TestNMShortPathCache.createGraph( "乙", 1 );
+        cache.calculateNMShortPath( graphOtherAttachment );
+        NMShortPathTestSupport.check( cache.getEvictionCount() == 1 && cache.size() == 2, "least recently used must be evicted" );
+        cache.calculateNMShortPath( graphSame );
+        NMShortPathTestSupport.check( cache.getMissCount() == 4, "evicted result must miss again" );
+        System.err.println( "按条数: 命中[" + cache.getHitCount() + "]次, 未命中[" + cache.getMissCount() + "]次, 淘汰[" + cache.getEvictionCount() + "]次, 命中率[" + cache.getHitRate() + "]" );
+
+        //按源图规模计权重：每个图 6 个顶点(含起点终点)加上 7 条边，权重为13，容量30只能容纳2个
+        NMShortPathCache<String> sizedCache = new NMShortPathCache<String>( 30, NMShortPathCache.graphSizeWeigher(), String::hashCode );
+        sizedCache.calculateNMShortPath( graphOne );
+        sizedCache.calculateNMShortPath( graphOtherDistance );
+        sizedCache.calculateNMShortPath( graphOtherAttachment );
+        NMShortPathTestSupport.check( sizedCache.getTotalWeight() == 26 && sizedCache.size() == 2 && sizedCache.getEvictionCount() == 1, "graph size weigher must bound the cache" );
+        System.err.println( "按源图规模: 总权重[" + sizedCache.getTotalWeight() + "], 条数[" + sizedCache.size() + "], 淘汰[" + sizedCache.getEvictionCount() + "]次" );
+    }
+
+    /**
+     * 起点-->A-->B-->D-->终点，起点-->C-->D，A-->D：各顶点绑定数据以 aPrefix 开头，A-->B 的距离为 aDistanceAB
+     */
+    @SuppressWarnings("unchecked")
+    private static NMShortPathGraph<String> createGraph(String aPrefix, double aDistanceAB) {
+        NMShortPathGraph<String> graphModel = new NMShortPathGraph<String>( N, M, aPrefix + "起点", aPrefix + "终点" );
+        NMShortPathVertex<String> vertexA = new NMShortPathVertex<String>( aPrefix + "A", new NMShortPathEdge<String>( graphModel.getStartVertex(), 1 ) );
+        NMShortPathVertex<String> vertexB = new NMShortPathVertex<String>( aPrefix + "B", new NMShortPathEdge<String>( vertexA, aDistanceAB ) );
+        NMShortPathVertex<String> vertexC = new NMShortPathVertex<String>( aPrefix + "C", new NMShortPathEdge<String>( graphModel.getStartVertex(), 2 ) );
+        NMShortPathVertex<String> vertexD = new NMShortPathVertex<String>( aPrefix + "D", new NMShortPathEdge<String>( vertexB, 1 ), new NMShortPathEdge<String>( vertexC, 2 ), new NMShortPathEdge<String>( vertexA, 3 ) );
+        vertexD.connectToEndVertex( 1 );
+        return graphModel;
+    }
+}
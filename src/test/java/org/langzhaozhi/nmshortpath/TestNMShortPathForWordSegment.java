@@ -9,6 +9,8 @@ import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
  *     但代码编写起来比较复杂，看起来稍微不那么直观。</li>
  *     <li>包装方式，使用NShortPathGraphWrapper先创建所有的顶点（包括起点和终点），接着再逐步创建顶点之间边的关系，代码看起来简单一些，
  *     </li>
+ *     <li>二元语法代价模型方式，只给出各候选词的位置和词ID，边的距离由 NMShortPathBigramCostModel 按二元代价(没有的按一元回退)给出。
+ *     </li>
  * </ol>
  */
 public class TestNMShortPathForWordSegment {
@@ -21,6 +23,9 @@ public class TestNMShortPathForWordSegment {
 
         System.err.println( "\n\n\n再对比看下包装方式创建图模型：" );
         TestNMShortPathForWordSegment.wrapperCreateGraphModel();
+
+        System.err.println( "\n\n\n再对比看下二元语法代价模型创建词图：" );
+        TestNMShortPathForWordSegment.bigramCreateGraphModel();
     }
 
     @SuppressWarnings("unchecked")
@@ -70,6 +75,46 @@ public class TestNMShortPathForWordSegment {
         TestNMShortPathForWordSegment.outputNShortPath( graphModelWrapper.calculateNShortPath() );
     }
 
+    private static void bigramCreateGraphModel() {
+        //词ID: 0 <#起点#>, 1 <#终点#>, 2 商, 3 商品, 4 品, 5 和, 6 和服, 7 服, 8 服务, 9 务
+        //"品"之后的两个转移没有二元统计，按一元回退: 6.22 + 6.22 = 12.44
+        double [] unigramCosts = {
+            0, 0, 0, 0, 0, 6.22, 6.22, 0, 0, 0
+        };
+        double [] backoffCosts = {
+            0, 0, 0, 0, 6.22, 0, 0, 0, 0, 0
+        };
+        NMShortPathBigramCostModel costModel = new NMShortPathBigramCostModel( unigramCosts, backoffCosts, 0, 1 );
+        costModel.putBigram( 0, 2, 4.18 );
+        costModel.putBigram( 0, 3, 4.18 );
+        costModel.putBigram( 2, 4, 12.06 );
+        costModel.putBigram( 3, 5, 3.59 );
+        costModel.putBigram( 3, 6, 9.63 );
+        costModel.putBigram( 5, 7, 5.70 );
+        costModel.putBigram( 5, 8, 5.14 );
+        costModel.putBigram( 6, 9, 14.22 );
+        costModel.putBigram( 7, 9, 12.54 );
+        costModel.putBigram( 8, 1, 4.95 );
+        costModel.putBigram( 9, 1, 13.66 );
+
+        //"商品和服务"中的各候选词
+        int [] wordStarts = {
+            0, 0, 1, 2, 2, 3, 3, 4
+        };
+        int [] wordEnds = {
+            1, 2, 2, 3, 4, 4, 5, 5
+        };
+        int [] wordIds = {
+            2, 3, 4, 5, 6, 7, 8, 9
+        };
+        String [] attachments = {
+            "<商>", "<商品>", "<品>", "<和>", "<和服>", "<服>", "<服务>", "<务>"
+        };
+        NMShortPathGraph<String> graphModel = costModel.buildLattice( N, M, "<#起点#>", "<#终点#>", 5, wordStarts, wordEnds, wordIds, attachments );
+
+        TestNMShortPathForWordSegment.outputNShortPath( graphModel.calculateNMShortPath() );
+    }
+
     private static void outputNShortPath(NMShortPath<String> aResultNMShortPath) {
         System.err.println( "NM-最短路径(N==" + N + ", M=" + M + "):" );
         System.err.println( "    实际ShortPath个数(N)为[" + aResultNMShortPath.getShortPathCount() + "]个" );
@@ -0,0 +1,175 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * 结果写出器测试：顶点绑定数据含有空格、换行、制表符、回车、反斜杠、中文，还有一个比写出缓冲区还大的。
+ * TEXT 和 BINARY 两种格式写到通道和写到 ByteBuffer 的字节必须完全相同，按格式解析回来必须同结果本身一致；目标 ByteBuffer 不够大时抛出 BufferOverflowException。
+ * 同一个文本编码器由多个线程中各自的写出器共用时，输出同单线程的完全相同。
+ */
+public class TestNMShortPathWriter {
+    private static final int N = 3;
+    private static final int M = 5;
+
+    public static void main(String [] args) throws IOException, InterruptedException, ExecutionException {
+        char [] hugeChars = new char [ 100_000 ];//比写出器内部64K的缓冲区还大
+        for (int i = 0; i < hugeChars.length; ++i) {
+            hugeChars[ i ] = i % 7 == 0 ? ' ' : (char) ('a' + i % 26);
+        }
+        String huge = new String( hugeChars );
+
+        @SuppressWarnings("unchecked")
+        NMShortPathGraph<String> graphModel = new NMShortPathGraph<String>( N, M, "起 点", "终\n点" );
+        NMShortPathVertex<String> vertexA = new NMShortPathVertex<String>( "A B", graphModel.getStartVertex(), 1 );
+        NMShortPathVertex<String> vertexB = new NMShortPathVertex<String>( "C\nD", graphModel.getStartVertex(), 2 );
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<String> vertexC = new NMShortPathVertex<String>( "E\\F\\s", new NMShortPathEdge<String>( vertexA, 2 ), new NMShortPathEdge<String>( vertexB, 1 ) );
+        NMShortPathVertex<String> vertexD = new NMShortPathVertex<String>( "G\tH\r", vertexA, 3 );
+        NMShortPathVertex<String> vertexE = new NMShortPathVertex<String>( huge, vertexC, 1 );
+        NMShortPathVertex<String> vertexF = new NMShortPathVertex<String>( "中 文", vertexD, 1 );
+        vertexE.connectToEndVertex( 1 );
+        vertexF.connectToEndVertex( 1 );
+        vertexC.connectToEndVertex( 3 );
+        NMShortPath<String> result = graphModel.calculateNMShortPath();
+        List<String> expected = TestNMShortPathWriter.describe( result, true );
+
+        NMShortPathWriter<String> textWriter = new NMShortPathWriter<String>( NMShortPathWriter.Format.TEXT, NMShortPathWriter.textEncoder() );
+        byte [] text = TestNMShortPathWriter.writeBoth( textWriter, result );
+        NMShortPathTestSupport.check( TestNMShortPathWriter.describe( result, false ).equals( TestNMShortPathWriter.parseText( text ) ), "text output must parse back to the result" );
+
+        NMShortPathWriter<String> binaryWriter = new NMShortPathWriter<String>( NMShortPathWriter.Format.BINARY, NMShortPathWriter.textEncoder() );
+        byte [] binary = TestNMShortPathWriter.writeBoth( binaryWriter, result );
+        NMShortPathTestSupport.check( expected.equals( TestNMShortPathWriter.parseBinary( binary ) ), "binary output must parse back to the result" );
+
+        try {
+            textWriter.writeTo( result, ByteBuffer.allocate( 64 ) );
+            throw new IllegalStateException( "small target buffer must overflow" );
+        }
+        catch (BufferOverflowException e) {
+            System.err.println( "目标 ByteBuffer 不够大: BufferOverflowException" );
+        }
+        //4个线程各用各的写出器，共用同一个文本编码器
+        NMShortPathWriter.AttachmentEncoder<String> sharedEncoder = NMShortPathWriter.textEncoder();
+        ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        try {
+            List<Future<Boolean>> sames = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; ++t) {
+                NMShortPathWriter.Format format = t % 2 == 0 ? NMShortPathWriter.Format.TEXT : NMShortPathWriter.Format.BINARY;
+                byte [] expectedBytes = t % 2 == 0 ? text : binary;
+                sames.add( executor.submit( () -> {
+                    NMShortPathWriter<String> writer = new NMShortPathWriter<String>( format, sharedEncoder );
+                    for (int k = 0; k < 50; ++k) {
+                        ByteBuffer buffer = ByteBuffer.allocate( expectedBytes.length );
+                        writer.writeTo( result, buffer );
+                        if (buffer.hasRemaining() || !Arrays.equals( buffer.array(), expectedBytes )) {
+                            return false;
+                        }
+                    }
+                    return true;
+                } ) );
+            }
+            for (Future<Boolean> same : sames) {
+                NMShortPathTestSupport.check( same.get(), "shared text encoder must give the same output on every thread" );
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        System.err.println( "TEXT[" + text.length + "]字节、BINARY[" + binary.length + "]字节，写到通道同写到 ByteBuffer 完全相同，解析回来同结果一致，共[" + expected.size() + "]条VertexPath" );
+    }
+
+    //写到通道和写到足够大的 ByteBuffer 各一次，两者必须完全相同
+    private static byte [] writeBoth(NMShortPathWriter<String> aWriter, NMShortPath<String> aResult) throws IOException {
+        ByteArrayOutputStream channelOutput = new ByteArrayOutputStream();
+        aWriter.writeTo( aResult, Channels.newChannel( channelOutput ) );
+        ByteBuffer buffer = ByteBuffer.allocate( 4 * 1024 * 1024 );
+        aWriter.writeTo( aResult, buffer );
+        byte [] bufferOutput = Arrays.copyOf( buffer.array(), buffer.position() );
+        NMShortPathTestSupport.check( Arrays.equals( channelOutput.toByteArray(), bufferOutput ), "channel output must equal buffer output" );
+        return bufferOutput;
+    }
+
+    //每条VertexPath描述为 "ShortPath序号|累计距离|顶点下标:绑定数据|..."，TEXT 格式没有顶点下标，以 '#' 代替
+    private static List<String> describe(NMShortPath<String> aResult, boolean aWithGraphVertexIndex) {
+        List<String> vertexPaths = new ArrayList<String>();
+        for (int i = 0; i < aResult.getShortPathCount(); ++i) {
+            ShortPath<String> shortPath = aResult.getShortPathAt( i );
+            for (int j = 0; j < shortPath.getVertexPathCount(); ++j) {
+                VertexPath<String> vertexPath = shortPath.getVertexPathAt( j );
+                StringBuilder description = new StringBuilder().append( i ).append( '|' ).append( shortPath.getTotalDistance() );
+                vertexPath.forEach( (aVertex) -> description.append( '|' ).append( aWithGraphVertexIndex ? String.valueOf( aVertex.getGraphVertexIndex() ) : "#" ).append( ':' ).append( aVertex.getAttachment() ) );
+                vertexPaths.add( description.toString() );
+            }
+        }
+        return vertexPaths;
+    }
+
+    private static List<String> parseText(byte [] aText) {
+        List<String> vertexPaths = new ArrayList<String>();
+        String [] lines = new String( aText, StandardCharsets.UTF_8 ).split( "\n" );
+        for (String line : lines) {
+            String [] fields = line.split( "\t" );
+            NMShortPathTestSupport.check( fields.length == 3, "text line must have three tab separated fields" );
+            StringBuilder description = new StringBuilder().append( fields[ 0 ] ).append( '|' ).append( fields[ 1 ] );
+            for (String vertex : fields[ 2 ].split( " " )) {
+                description.append( '|' ).append( '#' ).append( ':' ).append( TestNMShortPathWriter.unescape( vertex ) );
+            }
+            vertexPaths.add( description.toString() );
+        }
+        return vertexPaths;
+    }
+
+    private static List<String> parseBinary(byte [] aBinary) {
+        List<String> vertexPaths = new ArrayList<String>();
+        ByteBuffer buffer = ByteBuffer.wrap( aBinary );
+        for (int i = 0, shortPathCount = buffer.getInt(); i < shortPathCount; ++i) {
+            double totalDistance = buffer.getDouble();
+            for (int j = 0, vertexPathCount = buffer.getInt(); j < vertexPathCount; ++j) {
+                StringBuilder description = new StringBuilder().append( i ).append( '|' ).append( totalDistance );
+                double distance = 0;
+                for (int k = 0, vertexCount = buffer.getInt(); k < vertexCount; ++k) {
+                    int graphVertexIndex = buffer.getInt();
+                    distance += buffer.getDouble();
+                    byte [] attachment = new byte [ buffer.getInt() ];
+                    buffer.get( attachment );
+                    description.append( '|' ).append( graphVertexIndex ).append( ':' ).append( new String( attachment, StandardCharsets.UTF_8 ) );
+                }
+                NMShortPathTestSupport.check( distance == totalDistance, "vertex distances must add up to the total distance" );
+                vertexPaths.add( description.toString() );
+            }
+        }
+        NMShortPathTestSupport.check( !buffer.hasRemaining(), "binary output must be fully consumed" );
+        return vertexPaths;
+    }
+
+    private static String unescape(String aVertex) {
+        StringBuilder vertex = new StringBuilder();
+        for (int i = 0; i < aVertex.length(); ++i) {
+            char c = aVertex.charAt( i );
+            if (c == '\\') {
+                char escape = aVertex.charAt( ++i );
+                vertex.append( escape == 's' ? ' ' : escape == 't' ? '\t' : escape == 'n' ? '\n' : escape == 'r' ? '\r' : escape );
+            }
+            else {
+                vertex.append( c );
+            }
+        }
+        return vertex.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 边创建边求解的测试：随机图(流水线在创建了若干顶点之后才开始，队列容量随机)流水求解的结果必须同图创建完毕后
+ * calculateNMShortPath() 的结果完全一致(包括VertexPath的顺序)；终止顶点求解出错时 finish() 必须抛出而不是一直等待；
+ * 创建顶点的线程因队列满而阻塞时取消流水求解，该线程必须随即返回。
+ */
+public class TestPipelinedNMShortPath {
+    public static void main(String [] args) throws InterruptedException {
+        for (int t = 0; t < 200; ++t) {
+            TestPipelinedNMShortPath.checkFinish( t );
+        }
+        System.err.println( "[200]个随机图流水求解的结果同创建完毕后求解完全一致" );
+
+        //图还未准备就绪时不能结束，也不能再开始另一个流水线
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 2, 3, 0, -1 );
+        NMShortPathPipeline<Integer> pipeline = graphModel.startPipelinedSolve( 4 );
+        NMShortPathVertex<Integer> vertex = new NMShortPathVertex<Integer>( 1, graphModel.getStartVertex(), 1 );
+        TestPipelinedNMShortPath.checkRejected( () -> pipeline.finish(), "Graph Not Ready" );
+        TestPipelinedNMShortPath.checkRejected( () -> graphModel.startPipelinedSolve( 4 ), "Pipelined Solve Not Supported" );
+        pipeline.cancel();
+        vertex.connectToEndVertex( 1 );
+        TestPipelinedNMShortPath.checkRejected( () -> pipeline.finish(), "Pipelined Solve Cancelled" );
+
+        TestPipelinedNMShortPath.checkEndVertexFailure();
+        TestPipelinedNMShortPath.checkCancelBlocked();
+    }
+
+    private static void checkFinish(long aSeed) {
+        Random random = new Random( aSeed );
+        int n = 1 + random.nextInt( 5 );
+        int m = n + random.nextInt( 40 );
+        int queueCapacity = 1 + random.nextInt( 16 );
+        int vertexCount = 20 + random.nextInt( 300 );
+        int pipelineStart = random.nextInt( 5 );//在创建了这么多顶点之后开始流水求解，之前的顶点先交给求解线程
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( n, m, 0, -1 );
+        NMShortPathPipeline<Integer> pipeline = pipelineStart == 0 ? graphModel.startPipelinedSolve( queueCapacity ) : null;
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            if (v == pipelineStart) {
+                pipeline = graphModel.startPipelinedSolve( queueCapacity );
+            }
+            @SuppressWarnings("unchecked")
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ 1 + random.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = Math.max( 0, v - 1 - random.nextInt( 8 ) );
+                hasPostVertex[ previous ] = true;
+                //距离是小整数，相同累计距离很多，M的限制经常起作用
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], 1 + random.nextInt( 3 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ] || random.nextInt( 10 ) == 0) {
+                graphModel.connectToEndVertex( vertexes[ v ], random.nextInt( 3 ) );
+            }
+        }
+        String pipelined = NMShortPathTestSupport.toOrderedString( pipeline.finish() );
+        String expected = NMShortPathTestSupport.toOrderedString( graphModel.calculateNMShortPath() );
+        NMShortPathTestSupport.checkEqual( expected, pipelined, "pipelined solve differs" );
+    }
+
+    /**
+     * 终止顶点的前向边混入另一个图中下标超出求解表的顶点(直接改写包内可见的前向边数组)，前面的顶点照常求解，终止顶点求解时出错：
+     * finish() 必须抛出此错误，不能一直等待求解结果
+     */
+    @SuppressWarnings("unchecked")
+    private static void checkEndVertexFailure() throws InterruptedException {
+        NMShortPathGraph<Integer> otherGraph = new NMShortPathGraph<Integer>( 2, 3, 0, -1 );
+        NMShortPathVertex<Integer> otherVertex = otherGraph.getStartVertex();
+        for (int v = 1; v < 100; ++v) {
+            otherVertex = new NMShortPathVertex<Integer>( v, otherVertex, 1 );
+        }
+
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 2, 3, 0, -1 );
+        NMShortPathPipeline<Integer> pipeline = graphModel.startPipelinedSolve( 4 );
+        NMShortPathVertex<Integer> vertex1 = new NMShortPathVertex<Integer>( 1, graphModel.getStartVertex(), 1 );
+        NMShortPathVertex<Integer> vertex2 = new NMShortPathVertex<Integer>( 2, vertex1, 1 );
+        vertex2.connectToEndVertex( 1 );
+        NMShortPathVertex<Integer> endVertex = graphModel.getEndVertex();
+        endVertex.mPreviousEdges = new NMShortPathEdge [] {
+            endVertex.mPreviousEdges[ 0 ], new NMShortPathEdge<Integer>( otherVertex, 1 )
+        };
+
+        RuntimeException [] finishError = new RuntimeException [ 1 ];
+        Thread finisher = new Thread( () -> {
+            try {
+                pipeline.finish();
+            }
+            catch (RuntimeException e) {
+                finishError[ 0 ] = e;
+            }
+        }, "Finisher" );
+        finisher.setDaemon( true );//一直等待时不妨碍测试结束
+        finisher.start();
+        finisher.join( 10000 );
+        if (finisher.isAlive()) {
+            throw new IllegalStateException( "finish() must not wait forever when the end vertex solve fails" );
+        }
+        if (!(finishError[ 0 ] instanceof ArrayIndexOutOfBoundsException)) {
+            throw new IllegalStateException( "finish() must throw the end vertex solve failure: " + finishError[ 0 ] );
+        }
+        System.err.println( "终止顶点求解出错时 finish() 抛出: " + finishError[ 0 ] );
+    }
+
+    /**
+     * 容量为1的队列，篱笆型图(所有距离都为1，M很大)十几列之后每个顶点的求解都远慢于创建：创建顶点的线程因队列满而阻塞，此时在主线程中取消，
+     * 该线程必须随即返回并继续创建剩下的顶点(不再交给求解线程)，之后图可以像普通的图一样求解
+     */
+    @SuppressWarnings("unchecked")
+    private static void checkCancelBlocked() throws InterruptedException {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 3, 20000, 0, -1 );
+        NMShortPathPipeline<Integer> pipeline = graphModel.startPipelinedSolve( 1 );
+        AtomicInteger createdColumnCount = new AtomicInteger();
+        RuntimeException [] producerError = new RuntimeException [ 1 ];
+        Thread producer = new Thread( () -> {
+            try {
+                NMShortPathVertex<Integer> [] previousColumn = new NMShortPathVertex [] {
+                    graphModel.getStartVertex()
+                };
+                int attachment = 1;
+                for (int c = 0; c < 60; ++c) {
+                    NMShortPathVertex<Integer> [] column = new NMShortPathVertex [ 2 ];
+                    for (int r = 0; r < column.length; ++r) {
+                        NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ previousColumn.length ];
+                        for (int k = 0; k < previousColumn.length; ++k) {
+                            previousEdges[ k ] = new NMShortPathEdge<Integer>( previousColumn[ k ], 1 );
+                        }
+                        column[ r ] = new NMShortPathVertex<Integer>( attachment++, previousEdges );
+                    }
+                    previousColumn = column;
+                    createdColumnCount.incrementAndGet();
+                }
+                for (NMShortPathVertex<Integer> vertex : previousColumn) {
+                    vertex.connectToEndVertex( 1 );
+                }
+            }
+            catch (RuntimeException e) {
+                producerError[ 0 ] = e;
+            }
+        }, "Producer" );
+        producer.setDaemon( true );//未能返回时不妨碍测试结束
+        producer.start();
+
+        //创建顶点的线程只有在队列满时才会持续等待(争用锁的等待很短暂)。前面几列的顶点求解很快，等到后面求解线程忙于求解时再取消
+        long deadline = System.currentTimeMillis() + 10000;
+        int blockedCount = 0;
+        while (blockedCount < 2) {
+            if (System.currentTimeMillis() > deadline || !producer.isAlive()) {
+                throw new IllegalStateException( "producer never blocked on the full queue: " + producer.getState() );
+            }
+            Thread.State state = producer.getState();
+            blockedCount = createdColumnCount.get() >= 20 && (state == Thread.State.TIMED_WAITING || state == Thread.State.WAITING) ? blockedCount + 1 : 0;
+            Thread.sleep( 1 );
+        }
+        pipeline.cancel();
+        producer.join( 10000 );
+        if (producer.isAlive()) {
+            throw new IllegalStateException( "producer blocked on the full queue must be released by cancel()" );
+        }
+        if (producerError[ 0 ] != null) {
+            throw producerError[ 0 ];
+        }
+        TestPipelinedNMShortPath.checkRejected( () -> pipeline.finish(), "Pipelined Solve Cancelled" );
+        NMShortPath<Integer> result = graphModel.calculateNMShortPath();
+        if (result.getMostShortPath().getTotalDistance() != 61) {
+            throw new IllegalStateException( "graph must be solved normally after cancel: " + result.getMostShortPath().getTotalDistance() );
+        }
+        System.err.println( "创建顶点的线程因队列满阻塞时取消流水求解，该线程随即返回，之后图照常求解" );
+    }
+
+    private static void checkRejected(Runnable aAction, String aMessagePrefix) {
+        try {
+            aAction.run();
+        }
+        catch (IllegalStateException e) {
+            if (e.getMessage().startsWith( aMessagePrefix )) {
+                return;
+            }
+            throw e;
+        }
+        throw new IllegalStateException( "must be rejected: " + aMessagePrefix );
+    }
+}
@@ -0,0 +1,73 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Random;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.VertexPath;
+
+/**
+ * N==M==1 专用求解测试：随机DAG上同一般求解过程对比结果和速度。M的大小不影响第一个ShortPath的第一条VertexPath，
+ * 因此用 N==1,M==2 走一般求解过程作为对照，两者的最短距离和顶点序列必须完全一致。
+ */
+public class TestSingleShortPath {
+    private static final int VertexCount = 300000;
+    private static final int MaxFanIn = 8;
+    private static final int Rounds = 5;
+
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        NMShortPathGraph<Integer> singleGraphModel = new NMShortPathGraph<Integer>( 1, 1, 0, -1 );
+        NMShortPathGraph<Integer> generalGraphModel = new NMShortPathGraph<Integer>( 1, 2, 0, -1 );
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<Integer> [] singleVertexes = new NMShortPathVertex [ VertexCount ];
+        @SuppressWarnings("unchecked")
+        NMShortPathVertex<Integer> [] generalVertexes = new NMShortPathVertex [ VertexCount ];
+        boolean [] hasPostVertex = new boolean [ VertexCount ];
+        singleVertexes[ 0 ] = singleGraphModel.getStartVertex();
+        generalVertexes[ 0 ] = generalGraphModel.getStartVertex();
+        for (int i = 1; i < VertexCount; ++i) {
+            int fanIn = Math.min( i, 1 + random.nextInt( MaxFanIn ) );
+            @SuppressWarnings("unchecked")
+            NMShortPathEdge<Integer> [] singleEdges = new NMShortPathEdge [ fanIn ];
+            @SuppressWarnings("unchecked")
+            NMShortPathEdge<Integer> [] generalEdges = new NMShortPathEdge [ fanIn ];
+            for (int k = 0; k < fanIn; ++k) {
+                int previous = Math.max( 0, i - 1 - random.nextInt( 100 ) );
+                hasPostVertex[ previous ] = true;
+                double distance = random.nextInt( 20 );//距离取值很少，大量相同距离来检验相同距离时的选择
+                singleEdges[ k ] = new NMShortPathEdge<Integer>( singleVertexes[ previous ], distance );
+                generalEdges[ k ] = new NMShortPathEdge<Integer>( generalVertexes[ previous ], distance );
+            }
+            singleVertexes[ i ] = new NMShortPathVertex<Integer>( i, singleEdges );
+            generalVertexes[ i ] = new NMShortPathVertex<Integer>( i, generalEdges );
+        }
+        for (int i = 0; i < VertexCount; ++i) {
+            if (!hasPostVertex[ i ] || i >= VertexCount - 100) {
+                //保证每个顶点都有后向顶点，越靠前的顶点直接连接到终止顶点的距离越长
+                singleVertexes[ i ].connectToEndVertex( (VertexCount - i) * 10.0 );
+                generalVertexes[ i ].connectToEndVertex( (VertexCount - i) * 10.0 );
+            }
+        }
+        NMShortPath<Integer> singleNMShortPath = null, generalNMShortPath = null;
+        long singleTime = 0, generalTime = 0;
+        for (int r = 0; r < Rounds; ++r) {
+            long t1 = System.nanoTime();
+            singleNMShortPath = singleGraphModel.calculateNMShortPath();
+            long t2 = System.nanoTime();
+            generalNMShortPath = generalGraphModel.calculateNMShortPath();
+            long t3 = System.nanoTime();
+            singleTime += t2 - t1;
+            generalTime += t3 - t2;
+        }
+        VertexPath<Integer> singleVertexPath = singleNMShortPath.getMostShortPath().getVertexPathAt( 0 );
+        VertexPath<Integer> generalVertexPath = generalNMShortPath.getMostShortPath().getVertexPathAt( 0 );
+        boolean same = singleNMShortPath.getMostShortPath().getTotalDistance() == generalNMShortPath.getMostShortPath().getTotalDistance() && singleVertexPath.getVertexCount() == generalVertexPath.getVertexCount();
+        for (int k = 0; same && k < singleVertexPath.getVertexCount(); ++k) {
+            same = singleVertexPath.getVertexAt( k ).getAttachment().equals( generalVertexPath.getVertexAt( k ).getAttachment() );
+        }
+        System.err.println( "N==M==1 专用求解 spend: " + singleTime / Rounds / 1000000 + " ms, 一般求解 spend: " + generalTime / Rounds / 1000000 + " ms" );
+        System.err.println( "最短距离[" + singleNMShortPath.getMostShortPath().getTotalDistance() + "], 顶点数[" + singleVertexPath.getVertexCount() + "], 结果一致: " + same );
+        if (!same) {
+            throw new IllegalStateException( "single short path result not equal to general result" );
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Random;
+
+/**
+ * 按调用指定N和M求解的测试：同一个图上以随机顺序请求各种(N, M)，无论是截取记忆的结果还是重新求解，
+ * 都必须同按该(N, M)单独求解的结果完全一致(包括VertexPath的顺序)；图结构改变后记忆的结果作废。
+ */
+public class TestSolveMemoNMShortPath {
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        int queryCount = 0;
+        for (int t = 0; t < 200; ++t) {
+            queryCount += TestSolveMemoNMShortPath.checkQueries( random );
+        }
+        System.err.println( "[200]个随机图上[" + queryCount + "]次按(N, M)求解的结果同单独求解完全一致" );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int checkQueries(Random aRandom) {
+        //随机DAG，距离是小整数，相同累计距离很多，M的限制经常起作用
+        int vertexCount = 3 + aRandom.nextInt( 40 );
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( 1, 1, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ 1 + aRandom.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = Math.max( 0, v - 1 - aRandom.nextInt( 5 ) );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], 1 + aRandom.nextInt( 3 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ]) {
+                vertexes[ v ].connectToEndVertex( 1 + aRandom.nextInt( 3 ) );
+            }
+        }
+
+        int queryCount = 0;
+        for (int q = 0; q < 10; ++q) {
+            TestSolveMemoNMShortPath.checkQuery( graphModel, aRandom );
+            ++queryCount;
+        }
+        //图结构改变：新顶点接在最后一个顶点之后并连到终止顶点，图仍然准备就绪，之前记忆的结果不能再用
+        NMShortPathVertex<Integer> newVertex = new NMShortPathVertex<Integer>( vertexCount, vertexes[ vertexCount - 1 ], 1 );
+        newVertex.connectToEndVertex( 1 );
+        for (int q = 0; q < 5; ++q) {
+            TestSolveMemoNMShortPath.checkQuery( graphModel, aRandom );
+            ++queryCount;
+        }
+        return queryCount;
+    }
+
+    private static void checkQuery(NMShortPathGraph<Integer> aGraph, Random aRandom) {
+        int n = 1 + aRandom.nextInt( 6 );
+        int m = n + aRandom.nextInt( 3 ) * aRandom.nextInt( 10 );//经常 m == n
+        String expected = NMShortPathTestSupport.toOrderedString( new NMShortPathSolver<Integer>( n, m, null ).solve( aGraph ) );
+        String actual = NMShortPathTestSupport.toOrderedString( aGraph.calculateNMShortPath( n, m ) );
+        NMShortPathTestSupport.checkEqual( expected, actual, "(" + n + ", " + m + ") differs from separate solve" );
+    }
+}
@@ -0,0 +1,158 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.langzhaozhi.nmshortpath.NMShortPath.ShortPath;
+
+/**
+ * 子图查询测试：同 TestSimpleNMShortPath 一样的图上查询任意两顶点之间的NM-最短路径；再在随机DAG上任取两顶点查询，
+ * 同单独为这两顶点之间的子图(以from为起始顶点、to为终止顶点)重新创建的图的求解结果比较，必须一致。
+ */
+public class TestSpanNMShortPath {
+    private static final int N = 1000;
+    private static final int M = 1000;
+
+    @SuppressWarnings("unchecked")
+    public static void main(String [] args) {
+        NMShortPathGraph<String> graphModel = new NMShortPathGraph<String>( N, M, "<#起点#>", "<#终点#>" );
+        NMShortPathVertex<String> vertexA = new NMShortPathVertex<String>( "<顶点A>", new NMShortPathEdge<String>( graphModel.getStartVertex(), 1 ) );
+        NMShortPathVertex<String> vertexB = new NMShortPathVertex<String>( "<顶点B>", new NMShortPathEdge<String>( vertexA, 1 ) );
+        NMShortPathVertex<String> vertexC = new NMShortPathVertex<String>( "<顶点C>", new NMShortPathEdge<String>( vertexA, 2 ), new NMShortPathEdge<String>( vertexB, 1 ) );
+        NMShortPathVertex<String> vertexD = new NMShortPathVertex<String>( "<顶点D>", new NMShortPathEdge<String>( vertexB, 1 ), new NMShortPathEdge<String>( vertexC, 1 ) );
+        NMShortPathVertex<String> vertexE = new NMShortPathVertex<String>( "<顶点E>", new NMShortPathEdge<String>( vertexD, 1 ) );
+        vertexE.connectToEndVertex( 1 );
+        vertexD.connectToEndVertex( 3 );
+        vertexC.connectToEndVertex( 2 );
+
+        TestSpanNMShortPath.print( "顶点A到顶点D", graphModel.calculateNMShortPath( vertexA, vertexD, N, M ) );
+        TestSpanNMShortPath.print( "顶点B到终点", graphModel.calculateNMShortPath( vertexB, graphModel.getEndVertex(), 2, 2 ) );
+        try {
+            graphModel.calculateNMShortPath( vertexC, vertexB, N, M );
+            throw new IllegalStateException( "reversed span must be rejected" );
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println( "顶点C到顶点B: " + e.getMessage() );
+        }
+
+        Random random = new Random( 20150123 );
+        int spanCount = 0;
+        for (int t = 0; t < 300; ++t) {
+            spanCount += TestSpanNMShortPath.checkRandomSpans( random );
+        }
+        System.err.println( "随机DAG上[" + spanCount + "]个子图查询的结果同单独创建子图的求解结果完全一致" );
+    }
+
+    /**
+     * 随机DAG上任取几对顶点查询，同单独创建的子图比较，返回比较的次数。距离是小整数，相同累计距离的ShortPath很多
+     */
+    @SuppressWarnings("unchecked")
+    private static int checkRandomSpans(Random aRandom) {
+        int n = 1 + aRandom.nextInt( 4 );
+        int m = M;//不截断VertexPath：相同累计距离的路径在截断时保留哪些同前向边的顺序有关，子图的前向边顺序同原图不一定一致
+        int vertexCount = 3 + aRandom.nextInt( 40 );//不包括终止顶点
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( n, m, 0, -1 );
+        List<NMShortPathVertex<Integer>> vertexes = new ArrayList<NMShortPathVertex<Integer>>();
+        List<int []> previousOfVertexes = new ArrayList<int []>();//各顶点的前向顶点标识
+        List<double []> distancesOfVertexes = new ArrayList<double []>();
+        vertexes.add( graphModel.getStartVertex() );
+        previousOfVertexes.add( new int [ 0 ] );
+        distancesOfVertexes.add( new double [ 0 ] );
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        for (int v = 1; v < vertexCount; ++v) {
+            int [] previous = new int [ 1 + aRandom.nextInt( 3 ) ];
+            double [] distances = new double [ previous.length ];
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ previous.length ];
+            for (int k = 0; k < previous.length; ++k) {
+                previous[ k ] = Math.max( 0, v - 1 - aRandom.nextInt( 6 ) );
+                distances[ k ] = 1 + aRandom.nextInt( 4 );//小整数距离，相同累计距离很多
+                hasPostVertex[ previous[ k ] ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes.get( previous[ k ] ), distances[ k ] );
+            }
+            vertexes.add( new NMShortPathVertex<Integer>( v, previousEdges ) );
+            previousOfVertexes.add( previous );
+            distancesOfVertexes.add( distances );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ]) {
+                vertexes.get( v ).connectToEndVertex( 1 );
+            }
+        }
+        //整个图的子图查询就是整个图的求解
+        TestSpanNMShortPath.checkEqual( graphModel.calculateNMShortPath(), graphModel.calculateNMShortPath( graphModel.getStartVertex(), graphModel.getEndVertex(), n, m ) );
+
+        int spanCount = 1;
+        for (int q = 0; q < 5; ++q) {
+            int from = aRandom.nextInt( vertexCount - 1 );
+            int to = from + 1 + aRandom.nextInt( vertexCount - 1 - from );
+            //反向求出能到达 to 的顶点，再正向只保留同时也能从 from 到达的
+            boolean [] active = new boolean [ vertexCount ];
+            active[ to ] = true;
+            for (int v = to; v > from; --v) {
+                if (active[ v ]) {
+                    for (int previous : previousOfVertexes.get( v )) {
+                        if (previous >= from) {
+                            active[ previous ] = true;
+                        }
+                    }
+                }
+            }
+            boolean [] reachable = new boolean [ vertexCount ];
+            reachable[ from ] = active[ from ];
+            for (int v = from + 1; v <= to; ++v) {
+                for (int previous : previousOfVertexes.get( v )) {
+                    reachable[ v ] |= active[ v ] && previous >= from && reachable[ previous ];
+                }
+            }
+            if (!reachable[ to ]) {
+                try {
+                    graphModel.calculateNMShortPath( vertexes.get( from ), vertexes.get( to ), n, m );
+                    throw new IllegalStateException( "unreachable span must be rejected" );
+                }
+                catch (IllegalArgumentException e) {
+                    continue;
+                }
+            }
+            //单独创建 from 到 to 的子图：from 为起始顶点，to 的前向边连到终止顶点
+            NMShortPathGraph<Integer> spanGraph = new NMShortPathGraph<Integer>( n, m, from, to );
+            NMShortPathVertex<Integer> [] spanVertexes = new NMShortPathVertex [ vertexCount ];
+            spanVertexes[ from ] = spanGraph.getStartVertex();
+            for (int v = from + 1; v <= to; ++v) {
+                if (reachable[ v ]) {
+                    List<NMShortPathEdge<Integer>> previousEdges = new ArrayList<NMShortPathEdge<Integer>>();
+                    int [] previous = previousOfVertexes.get( v );
+                    for (int k = 0; k < previous.length; ++k) {
+                        if (previous[ k ] >= from && reachable[ previous[ k ] ]) {
+                            previousEdges.add( new NMShortPathEdge<Integer>( spanVertexes[ previous[ k ] ], distancesOfVertexes.get( v )[ k ] ) );
+                        }
+                    }
+                    if (v < to) {
+                        spanVertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges.toArray( new NMShortPathEdge [ previousEdges.size() ] ) );
+                    }
+                    else {
+                        previousEdges.forEach( (aEdge) -> spanGraph.connectToEndVertex( aEdge.getPreviousVertex(), aEdge.getDistance() ) );
+                    }
+                }
+            }
+            TestSpanNMShortPath.checkEqual( spanGraph.calculateNMShortPath(), graphModel.calculateNMShortPath( vertexes.get( from ), vertexes.get( to ), n, m ) );
+            ++spanCount;
+        }
+        return spanCount;
+    }
+
+    private static void checkEqual(NMShortPath<Integer> aExpected, NMShortPath<Integer> aActual) {
+        String expected = NMShortPathTestSupport.toCanonicalString( aExpected );
+        String actual = NMShortPathTestSupport.toCanonicalString( aActual );
+        NMShortPathTestSupport.checkEqual( expected, actual, "span query differs from separately built graph" );
+    }
+
+    private static void print(String aSpan, NMShortPath<String> aResult) {
+        System.err.println( aSpan + ": 实际ShortPath个数(N)为[" + aResult.getShortPathCount() + "]个, VertexPath个数(M)为[" + aResult.getVertexPathCount() + "]个" );
+        aResult.forEach( (aShortPath) -> aShortPath.forEach( (aVertexPath) -> {
+            StringBuilder vertexes = new StringBuilder();
+            aVertexPath.forEach( (aVertex) -> vertexes.append( vertexes.length() == 0 ? "" : "-->" ).append( aVertex.getAttachment() ) );
+            System.err.println( "    路径长度[" + aShortPath.getTotalDistance() + "]: " + vertexes );
+        } ) );
+    }
+}
@@ -0,0 +1,81 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 限定内存预算求解的测试：预算极小，几乎每个顶点表求解完毕就写入溢出文件，前向顶点的表都要读回来，
+ * 求解结果必须同一般的精确求解完全一致，并且求解完毕后溢出文件已经删除。
+ */
+public class TestSpillNMShortPath {
+    private static final int N = 4;
+    private static final int M = 12;
+
+    public static void main(String [] args) throws IOException {
+        Path spillDirectory = Files.createTempDirectory( "nmshortpath-spill-test-" );
+        try {
+            Random random = new Random( 20150123 );
+            long reloadCount = 0;
+            for (int t = 0; t < 100; ++t) {
+                reloadCount += TestSpillNMShortPath.checkEqual( 20 + random.nextInt( 300 ), 1L + random.nextInt( 512 ), random, spillDirectory );
+            }
+            System.err.println( "极小内存预算下[100]个图的求解结果同一般求解完全一致，共读回顶点表[" + reloadCount + "]次" );
+
+            //公开接口同样在求解完毕后删除溢出文件
+            NMShortPathGraph<Integer> graphModel = TestSpillNMShortPath.createGraph( 1000, random );
+            NMShortPathTestSupport.check( NMShortPathTestSupport.toCanonicalString( graphModel.calculateNMShortPath() ).equals( NMShortPathTestSupport.toCanonicalString( graphModel.calculateNMShortPath( 1, spillDirectory ) ) ), "spill solve must equal in memory solve" );
+            TestSpillNMShortPath.checkNoSpillFileLeft( spillDirectory );
+        }
+        finally {
+            Files.delete( spillDirectory );
+        }
+    }
+
+    private static long checkEqual(int aVertexCount, long aMemoryBudget, Random aRandom, Path aSpillDirectory) throws IOException {
+        NMShortPathGraph<Integer> graphModel = TestSpillNMShortPath.createGraph( aVertexCount, aRandom );
+        NMShortPathSpillSolver<Integer> spillSolver = new NMShortPathSpillSolver<Integer>( N, M, aMemoryBudget, aSpillDirectory );
+        NMShortPath<Integer> spillResult = spillSolver.solve( graphModel );
+        String expected = NMShortPathTestSupport.toCanonicalString( graphModel.calculateNMShortPath() );
+        String actual = NMShortPathTestSupport.toCanonicalString( spillResult );
+        NMShortPathTestSupport.checkEqual( expected, actual, "spill solve differs from in memory solve" );
+        //有远距离的前向边，预算又极小，前向顶点的表一定有写出后又读回的
+        NMShortPathTestSupport.check( spillSolver.getSpillFileSize() > 0 && spillSolver.getReloadCount() > 0, "tables must be spilled and reloaded" );
+        TestSpillNMShortPath.checkNoSpillFileLeft( aSpillDirectory );
+        return spillSolver.getReloadCount();
+    }
+
+    /**
+     * 随机DAG：每个顶点有1到3条前向边，前向顶点多数是最近的，也有任意远的；距离是小整数，相同累计距离很多
+     */
+    @SuppressWarnings("unchecked")
+    private static NMShortPathGraph<Integer> createGraph(int aVertexCount, Random aRandom) {
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( N, M, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ aVertexCount ];
+        boolean [] hasPostVertex = new boolean [ aVertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < aVertexCount; ++v) {
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ 1 + aRandom.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = k == 0 ? v - 1 : aRandom.nextInt( v );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], 1 + aRandom.nextInt( 4 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < aVertexCount; ++v) {
+            if (!hasPostVertex[ v ] || aRandom.nextInt( 20 ) == 0) {
+                vertexes[ v ].connectToEndVertex( 1 + aRandom.nextInt( 4 ) );
+            }
+        }
+        return graphModel;
+    }
+
+    private static void checkNoSpillFileLeft(Path aSpillDirectory) throws IOException {
+        try (Stream<Path> files = Files.list( aSpillDirectory )) {
+            NMShortPathTestSupport.check( files.count() == 0, "spill file must be deleted after solving" );
+        }
+    }
+}
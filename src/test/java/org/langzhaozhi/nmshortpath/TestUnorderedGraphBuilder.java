@@ -0,0 +1,102 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 任意顺序边列表创建图的测试：按拓扑顺序直接创建的随机分层DAG，把顶点标识和边的顺序都打乱后交给 NMShortPathUnorderedGraphBuilder 重新创建，
+ * 两者求解结果必须一致(按绑定数据比较)。宽层的图每层顶点数目超过并行阈值，走并行拓扑排序；另外检测环。
+ */
+public class TestUnorderedGraphBuilder {
+    private static final int N = 5;
+    private static final int M = 50;
+
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        int graphCount = 0;
+        for (int t = 0; t < 200; ++t) {
+            TestUnorderedGraphBuilder.checkEqual( 2 + random.nextInt( 20 ), 1 + random.nextInt( 20 ), random );
+            ++graphCount;
+        }
+        //每层5000个顶点，超过并行阈值
+        TestUnorderedGraphBuilder.checkEqual( 6, 5000, random );
+        ++graphCount;
+        System.err.println( "打乱顺序重新创建的[" + graphCount + "]个图，求解结果同按拓扑顺序直接创建的完全一致" );
+
+        //0-->1-->2-->1 有环
+        NMShortPathUnorderedGraphBuilder<Integer> cyclicBuilder = new NMShortPathUnorderedGraphBuilder<Integer>( 4, 4 );
+        cyclicBuilder.addEdge( 0, 1, 1 ).addEdge( 1, 2, 1 ).addEdge( 2, 1, 1 ).addEdge( 2, 3, 1 );
+        try {
+            cyclicBuilder.build( N, M, new Integer [] { 0, 1, 2, 3 }, 0, 3 );
+            throw new IllegalStateException( "cycle must be detected" );
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println( "有环的图: " + e.getMessage() );
+        }
+    }
+
+    /**
+     * 分层随机DAG：每个顶点有1到3条来自前面各层的前向边，距离是随机小数(几乎不会有相同的累计距离，因此结果同前向边的顺序无关)
+     */
+    @SuppressWarnings("unchecked")
+    private static void checkEqual(int aLevelCount, int aVertexCountOfEveryLevel, Random aRandom) {
+        int vertexCount = aLevelCount * aVertexCountOfEveryLevel + 2;
+        int endVertex = vertexCount - 1;
+        List<int []> edges = new ArrayList<int []>();
+        List<Double> distances = new ArrayList<Double>();
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+
+        //边按顶点标识顺序生成，顶点标识本身就是拓扑顺序，同时直接创建出图
+        NMShortPathGraph<Integer> orderedGraph = new NMShortPathGraph<Integer>( N, M, 0, endVertex );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        vertexes[ 0 ] = orderedGraph.getStartVertex();
+        for (int v = 1; v < endVertex; ++v) {
+            int level = (v - 1) / aVertexCountOfEveryLevel;
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ level == 0 ? 1 : 1 + aRandom.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = level == 0 ? 0 : 1 + aRandom.nextInt( level * aVertexCountOfEveryLevel );//前面各层中的任意一个顶点
+                double distance = aRandom.nextDouble();
+                edges.add( new int [] { previous, v } );
+                distances.add( distance );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], distance );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 1; v < endVertex; ++v) {
+            if (!hasPostVertex[ v ] || aRandom.nextInt( 10 ) == 0) {
+                double distance = aRandom.nextDouble();
+                edges.add( new int [] { v, endVertex } );
+                distances.add( distance );
+                vertexes[ v ].connectToEndVertex( distance );
+            }
+        }
+
+        //打乱顶点标识(起始顶点同终止顶点也打乱)和边的顺序后重新创建
+        List<Integer> permutation = new ArrayList<Integer>( vertexCount );
+        for (int v = 0; v < vertexCount; ++v) {
+            permutation.add( v );
+        }
+        Collections.shuffle( permutation, aRandom );
+        List<Integer> edgeOrder = new ArrayList<Integer>( edges.size() );
+        for (int e = 0; e < edges.size(); ++e) {
+            edgeOrder.add( e );
+        }
+        Collections.shuffle( edgeOrder, aRandom );
+        NMShortPathUnorderedGraphBuilder<Integer> builder = new NMShortPathUnorderedGraphBuilder<Integer>( vertexCount, edges.size() );
+        for (int e : edgeOrder) {
+            builder.addEdge( permutation.get( edges.get( e )[ 0 ] ), permutation.get( edges.get( e )[ 1 ] ), distances.get( e ) );
+        }
+        Integer [] attachments = new Integer [ vertexCount ];
+        for (int v = 0; v < vertexCount; ++v) {
+            attachments[ permutation.get( v ) ] = v;//绑定数据仍然是原来的顶点标识
+        }
+        NMShortPathGraph<Integer> unorderedGraph = builder.build( N, M, attachments, permutation.get( 0 ), permutation.get( endVertex ) );
+
+        String expected = NMShortPathTestSupport.toCanonicalString( orderedGraph.calculateNMShortPath() );
+        String actual = NMShortPathTestSupport.toCanonicalString( unorderedGraph.calculateNMShortPath() );
+        NMShortPathTestSupport.checkEqual( expected, actual, "unordered build differs from ordered build" );
+    }
+}
@@ -0,0 +1,83 @@
+package org.langzhaozhi.nmshortpath;
+
+import java.util.Random;
+
+/**
+ * 多权重批量求解测试：随机DAG按K列权重矩阵批量求解，第k个结果必须同以第k列权重为边距离单独创建的同结构图的求解结果一致。
+ * N==M==1 走共享遍历的专门路径，其他N和M走K个求解器交错归并的路径，两者都要测试。
+ * 权重是随机小数(几乎不会有相同的累计距离)，因此结果同前向边的顺序无关。
+ */
+public class TestWeightProfilesNMShortPath {
+    public static void main(String [] args) {
+        Random random = new Random( 20150123 );
+        int profileCount = 0;
+        for (int t = 0; t < 200; ++t) {
+            boolean single = t % 2 == 0;
+            int n = single ? 1 : 1 + random.nextInt( 4 );
+            int m = single ? 1 : n + random.nextInt( 8 );
+            profileCount += TestWeightProfilesNMShortPath.checkEqual( n, m, 1 + random.nextInt( 6 ), random );
+        }
+        System.err.println( "[200]个随机图共[" + profileCount + "]组权重的批量求解结果同按各组权重单独创建的图的求解结果完全一致" );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int checkEqual(int aNShortPathCount, int aMVertexPathCount, int aWeightProfileCount, Random aRandom) {
+        //随机DAG结构，边本身的距离同各列权重无关
+        int vertexCount = 3 + aRandom.nextInt( 60 );//包括起始顶点，不包括终止顶点
+        NMShortPathGraph<Integer> graphModel = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+        NMShortPathVertex<Integer> [] vertexes = new NMShortPathVertex [ vertexCount ];
+        boolean [] hasPostVertex = new boolean [ vertexCount ];
+        vertexes[ 0 ] = graphModel.getStartVertex();
+        for (int v = 1; v < vertexCount; ++v) {
+            NMShortPathEdge<Integer> [] previousEdges = new NMShortPathEdge [ 1 + aRandom.nextInt( 3 ) ];
+            for (int k = 0; k < previousEdges.length; ++k) {
+                int previous = Math.max( 0, v - 1 - aRandom.nextInt( 5 ) );
+                hasPostVertex[ previous ] = true;
+                previousEdges[ k ] = new NMShortPathEdge<Integer>( vertexes[ previous ], 1 + aRandom.nextInt( 3 ) );
+            }
+            vertexes[ v ] = new NMShortPathVertex<Integer>( v, previousEdges );
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            if (!hasPostVertex[ v ] || aRandom.nextInt( 8 ) == 0) {
+                vertexes[ v ].connectToEndVertex( 1 + aRandom.nextInt( 3 ) );
+            }
+        }
+
+        //权重矩阵按图边下标对齐：各顶点的前向边依次编号，终止顶点的在最后
+        int edgeCount = graphModel.getEdgeCount();
+        double [] edgeWeights = new double [ edgeCount * aWeightProfileCount ];
+        for (int e = 0; e < edgeWeights.length; ++e) {
+            edgeWeights[ e ] = aRandom.nextDouble();
+        }
+        NMShortPath<Integer> [] results = graphModel.calculateNMShortPath( edgeWeights, aWeightProfileCount );
+
+        for (int k = 0; k < aWeightProfileCount; ++k) {
+            //以第k列权重为边距离重新创建同结构的图
+            NMShortPathGraph<Integer> profileGraph = new NMShortPathGraph<Integer>( aNShortPathCount, aMVertexPathCount, 0, -1 );
+            NMShortPathVertex<Integer> [] profileVertexes = new NMShortPathVertex [ vertexCount ];
+            profileVertexes[ 0 ] = profileGraph.getStartVertex();
+            for (int v = 1; v < vertexCount; ++v) {
+                profileVertexes[ v ] = new NMShortPathVertex<Integer>( v, TestWeightProfilesNMShortPath.profileEdges( graphModel, vertexes[ v ], profileVertexes, edgeWeights, aWeightProfileCount, k ) );
+            }
+            for (NMShortPathEdge<Integer> profileEdge : TestWeightProfilesNMShortPath.profileEdges( graphModel, graphModel.getEndVertex(), profileVertexes, edgeWeights, aWeightProfileCount, k )) {
+                profileGraph.connectToEndVertex( profileEdge.getPreviousVertex(), profileEdge.getDistance() );
+            }
+            String expected = NMShortPathTestSupport.toCanonicalString( profileGraph.calculateNMShortPath() );
+            String actual = NMShortPathTestSupport.toCanonicalString( results[ k ] );
+            NMShortPathTestSupport.checkEqual( expected, actual, "weight profile[" + k + "] differs from separately built graph" );
+        }
+        return aWeightProfileCount;
+    }
+
+    //aVertex 的各前向边换成新图中的前向顶点，距离取第k列权重
+    @SuppressWarnings("unchecked")
+    private static NMShortPathEdge<Integer> [] profileEdges(NMShortPathGraph<Integer> aGraph, NMShortPathVertex<Integer> aVertex, NMShortPathVertex<Integer> [] aProfileVertexes, double [] aEdgeWeights, int aWeightProfileCount, int aWeightProfile) {
+        NMShortPathEdge<Integer> [] previousEdges = aVertex.mPreviousEdges;
+        NMShortPathEdge<Integer> [] profileEdges = new NMShortPathEdge [ previousEdges.length ];
+        for (int j = 0; j < previousEdges.length; ++j) {
+            int edgeIndex = aGraph.getEdgeIndex( aVertex, previousEdges[ j ] );
+            profileEdges[ j ] = new NMShortPathEdge<Integer>( aProfileVertexes[ previousEdges[ j ].getPreviousVertex().getAttachment() ], aEdgeWeights[ edgeIndex * aWeightProfileCount + aWeightProfile ] );
+        }
+        return profileEdges;
+    }
+}
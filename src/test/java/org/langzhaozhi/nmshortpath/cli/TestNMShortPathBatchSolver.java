@@ -0,0 +1,66 @@
+package org.langzhaozhi.nmshortpath.cli;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * 命令行批量求解测试：同样的三个图(其中一个有环)分别以TEXT和BINARY格式存放在 edges.txt 和 edges.bin 中，
+ * 两者求解的输出(TEXT和BINARY输出各自比较)必须完全相同，有环的图写出失败记录。输入格式错误时之前的图照常写出，出错的图写出失败记录。
+ */
+public class TestNMShortPathBatchSolver {
+    public static void main(String [] args) throws IOException, InterruptedException, URISyntaxException {
+        Path textInput = Paths.get( TestNMShortPathBatchSolver.class.getResource( "edges.txt" ).toURI() );
+        Path binaryInput = Paths.get( TestNMShortPathBatchSolver.class.getResource( "edges.bin" ).toURI() );
+
+        byte [] textOutput = TestNMShortPathBatchSolver.run( textInput, "text", "text" );
+        TestNMShortPathBatchSolver.check( Arrays.equals( textOutput, TestNMShortPathBatchSolver.run( binaryInput, "binary", "text" ) ), "text and binary input must produce identical text output" );
+        TestNMShortPathBatchSolver.check( Arrays.equals( TestNMShortPathBatchSolver.run( textInput, "text", "binary" ), TestNMShortPathBatchSolver.run( binaryInput, "binary", "binary" ) ), "text and binary input must produce identical binary output" );
+        String text = new String( textOutput, StandardCharsets.UTF_8 );
+        TestNMShortPathBatchSolver.check( text.startsWith( "#0\n" ) && text.contains( "\n#1\n" ) && text.contains( "\n#2\tERROR\t" ), "every graph must have its record, the cyclic one an error" );
+        System.err.print( text );
+
+        //第二个图格式错误(TEXT为非法记号，BINARY为非法的顶点数目)：第一个图照常写出，第二个图写出失败记录，之后不再读取
+        String firstGraph = text.substring( 0, text.indexOf( "#1\n" ) );
+        Path malformed = Files.createTempFile( "nmshortpath-malformed-", ".txt" );
+        try {
+            Files.write( malformed, "3 2\n0 1 1\n1 2 1\n4 1\n0 x 1\n3 2\n0 1 1\n1 2 1\n".getBytes( StandardCharsets.US_ASCII ) );
+            String malformedOutput = new String( TestNMShortPathBatchSolver.run( malformed, "text", "text" ), StandardCharsets.UTF_8 );
+            TestNMShortPathBatchSolver.check( malformedOutput.equals( "#0\n0\t2.0\t0 1 2\n#1\tERROR\tMalformed Input: Invalid Token: x\n" ), "malformed text input must end with an error record:\n" + malformedOutput );
+
+            ByteBuffer binary = ByteBuffer.allocate( (int) Files.size( binaryInput ) + 8 );
+            binary.put( Files.readAllBytes( binaryInput ), 0, 8 + 9 * 16 ).putInt( 2 ).putInt( 1 );//第一个图之后接一个顶点数目非法的图
+            Files.write( malformed, Arrays.copyOf( binary.array(), binary.position() ) );
+            malformedOutput = new String( TestNMShortPathBatchSolver.run( malformed, "binary", "text" ), StandardCharsets.UTF_8 );
+            TestNMShortPathBatchSolver.check( malformedOutput.startsWith( firstGraph + "#1\tERROR\tMalformed Input: " ) && malformedOutput.indexOf( '\n', firstGraph.length() ) == malformedOutput.length() - 1, "malformed binary input must end with an error record:\n" + malformedOutput );
+            System.err.print( malformedOutput );
+        }
+        finally {
+            Files.delete( malformed );
+        }
+    }
+
+    private static byte [] run(Path aInput, String aFormat, String aOutputFormat) throws IOException, InterruptedException {
+        Path output = Files.createTempFile( "nmshortpath-batch-", ".out" );
+        try {
+            NMShortPathBatchSolver.main( new String [] {
+                "input=" + aInput, "output=" + output, "format=" + aFormat, "outputFormat=" + aOutputFormat, "n=3", "m=5", "threads=2"
+            } );
+            return Files.readAllBytes( output );
+        }
+        finally {
+            Files.delete( output );
+        }
+    }
+
+    private static void check(boolean aCondition, String aMessage) {
+        if (!aCondition) {
+            throw new IllegalStateException( aMessage );
+        }
+    }
+}